@@ -0,0 +1,266 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Comprueba que el paso del juego no reserva memoria, para que una partida
+ * larga no genere basura ni pausas del recolector. Mide con el contador de
+ * memoria reservada por hilo de ThreadMXBean los bytes de dos caminos, ya
+ * calentados, con gravedad de los niveles 0, 10 y 20:
+ *
+ * - el Grid: gravedad, movimientos, giros, caídas, aparición y fijación de
+ *   piezas, líneas y suma de comprobación deben reservar 0 bytes;
+ * - un fotograma de GameEngine: solo puede reservar la GameSnapshot nueva
+ *   cuando cambia algo visible, y las celdas de la copia solo si han
+ *   cambiado las del tablero; cualquier otro byte es un fallo.
+ *
+ * Termina con código 1 si algún caso reserva más de lo permitido, así que
+ * puede usarse como prueba de regresión en el proceso de compilación.
+ *
+ * Uso: java AllocationCheck [pasos medidos por caso]
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class AllocationCheck
+{
+    // niveles de gravedad de cada caso
+    private static final int[] LEVELS = {0, 10, 20};
+    // pasos mínimos de calentamiento antes de medir
+    private static final int WARM_UP = 16384;
+    // repeticiones de cada medida; se toma la menor, porque la compilación
+    // en marcha puede reservar alguna vez pero una regresión reserva en todas
+    private static final int REPEATS = 3;
+
+    // contador de memoria reservada por hilo
+    private final com.sun.management.ThreadMXBean threads;
+    // bytes que se cuentan al leer dos veces seguidas el contador
+    private final long overhead;
+    // bytes de una copia que comparte las celdas y de una con celdas nuevas
+    private long sharedSnapshotBytes, newSnapshotBytes;
+    // última copia publicada y copias publicadas por el motor medido
+    private GameSnapshot published;
+    private int publishedCount;
+    // si la pila del motor medido llegó arriba
+    private boolean toppedOut;
+    // copias de calibración, guardadas para que no se eliminen al compilar
+    private GameSnapshot calibration;
+
+    /**
+     * Prepara el contador de memoria reservada
+     */
+    public AllocationCheck()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)
+           || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("Esta máquina virtual no mide la memoria reservada por hilo");
+        }
+        threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long min = Long.MAX_VALUE;
+        for(int i = 0; i < 1000; i++) {
+            long start = allocated();
+            min = Math.min(min, allocated() - start);
+        }
+        overhead = min;
+    }
+
+    /**
+     * @return Los bytes reservados hasta ahora por este hilo
+     */
+    private long allocated()
+    {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Genera la secuencia de entradas de un caso: sobre todo gravedad, con
+     * movimientos, giros y alguna caída como los de un jugador
+     * @param count El número de entradas
+     * @param seed La semilla
+     * @return Las entradas
+     */
+    private static int[] inputs(int count, long seed)
+    {
+        Random random = new Random(seed);
+        int[] inputs = new int[count];
+        for(int i = 0; i < count; i++) {
+            int dice = random.nextInt(100);
+            if(dice < 60) {
+                inputs[i] = InputLog.GRAVITY;
+            } else if(dice < 63) {
+                inputs[i] = InputLog.HARD_DROP;
+            } else {
+                inputs[i] = random.nextInt(4);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Mide los bytes que reserva el Grid al aplicar las entradas de un caso
+     * @param level El nivel de gravedad
+     * @param steps Los pasos medidos
+     * @return Los bytes reservados en los pasos medidos
+     */
+    public long measureGrid(int level, int steps)
+    {
+        Grid grid = new Grid(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, level);
+        grid.setStartLevel(level);
+        grid.createTetrimino();
+        int[] warmUp = inputs(warmUpSteps(steps), level);
+        int[] measured = inputs(steps, level + 1);
+        long checksum = 0;
+        for(int i = 0; i < warmUp.length; i++) {
+            checksum ^= gridStep(grid, warmUp[i]);
+        }
+        long start = allocated();
+        for(int i = 0; i < measured.length; i++) {
+            checksum ^= gridStep(grid, measured[i]);
+        }
+        long bytes = allocated() - start - overhead;
+        // la suma se usa para que el compilador no descarte los pasos
+        if(checksum == 42) {
+            System.out.print("");
+        }
+        return bytes;
+    }
+
+    /**
+     * Calcula los pasos de calentamiento. El registro de entradas del motor
+     * dobla su capacidad cuando se llena, así que se calienta hasta justo
+     * después de una duplicación que deja sitio para todos los pasos medidos.
+     * @param steps Los pasos medidos
+     * @return Los pasos de calentamiento
+     */
+    private static int warmUpSteps(int steps)
+    {
+        int capacity = 256;
+        while(capacity < WARM_UP || capacity <= steps) {
+            capacity *= 2;
+        }
+        return capacity + 1;
+    }
+
+    /**
+     * Aplica una entrada al grid, vaciándolo si la pila llega arriba
+     * @return La suma de comprobación resultante
+     */
+    private static long gridStep(Grid grid, int input)
+    {
+        InputLog.apply(grid, input);
+        if(grid.isTopOut()) {
+            grid.clear();
+        }
+        return grid.getChecksum();
+    }
+
+    /**
+     * Mide los bytes que reserva de más un motor al calcular los fotogramas
+     * de un caso: cada fotograma se mide por separado y se le descuenta la
+     * copia que haya publicado
+     * @param level El nivel de gravedad
+     * @param steps Los fotogramas medidos
+     * @return Los bytes reservados que no corresponden a copias publicadas
+     */
+    public long measureEngine(int level, int steps)
+    {
+        Grid grid = new Grid(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, level);
+        grid.setStartLevel(level);
+        grid.createTetrimino();
+        calibrate(grid);
+        GameEngine engine = new GameEngine(grid, new InputLog(level, grid.getHeight(), grid.getWidth()),
+                                           new GameEngine.Listener() {
+            public void snapshotPublished(GameSnapshot snapshot) {
+                published = snapshot;
+                publishedCount++;
+            }
+            public void gameOver() {
+                toppedOut = true;
+            }
+        }, null);
+        int[] warmUp = inputs(warmUpSteps(steps), level);
+        int[] measured = inputs(steps, level + 1);
+        for(int i = 0; i < warmUp.length; i++) {
+            engineStep(engine, grid, warmUp[i]);
+        }
+        long extra = 0;
+        for(int i = 0; i < measured.length; i++) {
+            extra += engineStep(engine, grid, measured[i]);
+        }
+        return extra;
+    }
+
+    /**
+     * Encola una entrada y mide el fotograma que la aplica
+     * @return Los bytes reservados por el fotograma que no son de la copia publicada
+     */
+    private long engineStep(GameEngine engine, Grid grid, int input)
+    {
+        // encolar reserva el nodo de la cola en el hilo que pulsa la tecla, no en el motor
+        engine.input(toppedOut ? InputLog.RESET : input);
+        toppedOut = false;
+        GameSnapshot before = published;
+        int count = publishedCount;
+        long hash = grid.getCellHash();
+        long start = allocated();
+        engine.step();
+        long bytes = allocated() - start - overhead;
+        if(grid.isTopOut()) {
+            toppedOut = true;
+        }
+        if(publishedCount != count) {
+            boolean sharedCells = before != null && grid.getCellHash() == hash;
+            bytes -= sharedCells ? sharedSnapshotBytes : newSnapshotBytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Mide lo que ocupa una copia con celdas propias y una que comparte las
+     * de la anterior
+     */
+    private void calibrate(Grid grid)
+    {
+        newSnapshotBytes = Long.MAX_VALUE;
+        sharedSnapshotBytes = Long.MAX_VALUE;
+        for(int i = 0; i < 1000; i++) {
+            long start = allocated();
+            GameSnapshot first = new GameSnapshot(grid, null, i, 0);
+            long middle = allocated();
+            calibration = new GameSnapshot(grid, first, i, 0);
+            long end = allocated();
+            newSnapshotBytes = Math.min(newSnapshotBytes, middle - start - overhead);
+            sharedSnapshotBytes = Math.min(sharedSnapshotBytes, end - middle - overhead);
+        }
+    }
+
+    /**
+     * Rutina main que mide todos los casos y termina con error si alguno reserva memoria
+     */
+    public static void main(String[] args)
+    {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        AllocationCheck check = new AllocationCheck();
+        boolean failed = false;
+        System.out.println("nivel   camino    pasos     bytes  bytes/paso");
+        for(int level : LEVELS) {
+            long gridBytes = Long.MAX_VALUE, engineBytes = Long.MAX_VALUE;
+            for(int i = 0; i < REPEATS; i++) {
+                gridBytes = Math.min(gridBytes, check.measureGrid(level, steps));
+                engineBytes = Math.min(engineBytes, check.measureEngine(level, steps));
+            }
+            System.out.printf("%5d %8s %8d %9d %11.2f%n", level, "Grid", steps, gridBytes, (double) gridBytes / steps);
+            System.out.printf("%5d %8s %8d %9d %11.2f%n", level, "motor", steps, engineBytes, (double) engineBytes / steps);
+            failed |= gridBytes > 0 || engineBytes > 0;
+        }
+        System.out.println("copia publicada: " + check.newSnapshotBytes + " bytes, "
+                           + check.sharedSnapshotBytes + " si comparte las celdas");
+        if(failed) {
+            System.out.println("FALLO: el paso del juego reserva memoria");
+            System.exit(1);
+        }
+        System.out.println("Correcto: el paso del juego no reserva memoria");
+    }
+}
@@ -0,0 +1,126 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Vista de solo lectura de una repetición guardada en un ReplayArchive.
+ * Todos los datos se leen directamente del segmento proyectado en memoria,
+ * sin copiarlos al heap. Para saltar a un paso se parte del fotograma
+ * clave anterior y solo se vuelven a colocar las piezas que faltan.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class ArchivedReplay
+{
+    // posiciones de los campos en la cabecera del registro
+    private static final int ID = 4, SEED = 12, DATE = 20, SCORE = 28;
+    private static final int TICKS = 32, INTERVAL = 36, ROWS = 40;
+
+    // el registro de la repetición dentro del segmento
+    private final ByteBuffer record;
+    // datos de la cabecera que se usan al buscar
+    private final int ticks, interval, rows, keyframes;
+
+    /**
+     * Construye la vista sobre el registro de una repetición
+     * @param record Los bytes del registro, empezando en su cabecera
+     */
+    ArchivedReplay(ByteBuffer record)
+    {
+        this.record = record;
+        ticks = record.getInt(TICKS);
+        interval = record.getInt(INTERVAL);
+        rows = record.getInt(ROWS);
+        keyframes = ticks == 0 ? 0 : (ticks - 1) / interval + 1;
+    }
+
+    /**
+     * @return El identificador de la partida
+     */
+    public long getGameId()
+    {
+        return record.getLong(ID);
+    }
+
+    /**
+     * @return La semilla de la partida
+     */
+    public long getSeed()
+    {
+        return record.getLong(SEED);
+    }
+
+    /**
+     * @return La fecha de la partida en milisegundos
+     */
+    public long getDate()
+    {
+        return record.getLong(DATE);
+    }
+
+    /**
+     * @return La puntuación de la partida
+     */
+    public int getScore()
+    {
+        return record.getInt(SCORE);
+    }
+
+    /**
+     * @return El número de pasos (piezas colocadas) de la partida
+     */
+    public int getTicks()
+    {
+        return ticks;
+    }
+
+    /**
+     * @return Las filas del tablero de la partida
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * @param tick El paso
+     * @return La pieza colocada en ese paso
+     */
+    public int getType(int tick)
+    {
+        return record.getInt(ReplayArchive.RECORD_HEADER + 4 * tick) >>> 24;
+    }
+
+    /**
+     * @param tick El paso
+     * @return La jugada elegida en ese paso, codificada con Placement
+     */
+    public int getPlacement(int tick)
+    {
+        return record.getInt(ReplayArchive.RECORD_HEADER + 4 * tick) & 0xFFFFFF;
+    }
+
+    /**
+     * Reconstruye el tablero tal y como estaba antes de un paso
+     * @param tick El paso, entre 0 y getTicks() (este último es el final)
+     * @param out El tablero donde se reconstruye
+     */
+    public void seek(int tick, Board out)
+    {
+        if(tick < 0 || tick > ticks) {
+            throw new IndexOutOfBoundsException("Paso fuera de la partida: " + tick);
+        }
+        out.clear();
+        int start = 0;
+        if(keyframes > 0) {
+            int key = Math.min(tick / interval, keyframes - 1);
+            int base = ReplayArchive.RECORD_HEADER + 4 * ticks + 4 * rows * key;
+            for(int row = 0; row < rows; row++) {
+                out.setRowMask(row, record.getInt(base + 4 * row));
+            }
+            start = key * interval;
+        }
+        for(int t = start; t < tick; t++) {
+            out.place(getType(t), getPlacement(t));
+        }
+    }
+}
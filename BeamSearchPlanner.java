@@ -0,0 +1,465 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Bot que planifica varias piezas por adelantado usando la cola de piezas
+ * siguientes. Hace una búsqueda en haz: en cada profundidad genera todas
+ * las jugadas alcanzables desde los tableros del haz (en paralelo, un
+ * tablero por tarea), puntúa los hijos de cada tablero en un solo lote
+ * y se queda con los mejores según la función de evaluación.
+ *
+ * La búsqueda se profundiza pieza a pieza hasta agotar la cola o el tiempo
+ * disponible, y se decide con la última profundidad completa, por lo que
+ * responde antes del plazo salvo en la primera profundidad, que se completa
+ * siempre para tener una respuesta (una generación y un lote de
+ * puntuaciones, muy por debajo de medio fotograma). Con el tiempo por
+ * defecto la decisión cabe en un fotograma del motor, que con la gravedad
+ * 20G es lo que tarda la pieza en caer. Tras cada decisión se guardan los nodos
+ * del haz que empiezan por la jugada elegida; si en la siguiente llamada el
+ * tablero y las piezas coinciden con lo previsto, la búsqueda continúa desde
+ * ellos en lugar de empezar de cero.
+ *
+ * El planificador no admite llamadas simultáneas desde varios hilos.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class BeamSearchPlanner implements Bot
+{
+    // anchura del haz por defecto
+    public static final int DEFAULT_WIDTH = 32;
+    // tiempo por decisión por defecto: medio fotograma del motor, que deja la
+    // otra mitad para la primera profundidad y para el propio fotograma
+    public static final long DEFAULT_BUDGET_NANOS = GameEngine.FRAME_NANOS / 2;
+    // profundidad máxima de búsqueda (pieza actual más la cola)
+    public static final int MAX_DEPTH = 8;
+
+    // la función que valora los tableros
+    private final BoardEvaluator evaluator;
+    // número de tableros que se conservan en cada profundidad
+    private final int width;
+    // tiempo disponible por decisión
+    private final long budgetNanos;
+    // el pool de hilos que expande el haz
+    private final ForkJoinPool pool;
+    // lote de candidatas de trabajo de cada hilo
+    private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    // el haz actual y el siguiente, que se intercambian en cada profundidad
+    private Beam beam, next;
+    // los nodos conservados de la decisión anterior
+    private final Beam kept;
+    // el tablero que se espera tras la jugada elegida y las piezas previstas
+    private final Board expected;
+    private final int[] expectedPieces = new int[MAX_DEPTH];
+    private int expectedCount;
+
+    // hijos de cada tablero del haz: jugada, líneas acumuladas y puntuación
+    private final int[] childMove, childLines, childCount;
+    private final double[] childScore;
+    // montículo con los mejores hijos de la profundidad actual
+    private final int[] heap;
+    // las tareas de expansión y la que las lanza, reutilizadas en cada profundidad
+    private final ExpandTask[] tasks;
+    private final ExpandAll expandAll;
+    // la secuencia de piezas de la decisión en curso
+    private final int[] pieces = new int[MAX_DEPTH];
+    // plazo de la decisión en curso
+    private volatile long deadline;
+
+    /**
+     * Construye un planificador con los valores por defecto
+     * @param evaluator La función que valora los tableros
+     */
+    public BeamSearchPlanner(BoardEvaluator evaluator)
+    {
+        this(evaluator, DEFAULT_WIDTH, DEFAULT_BUDGET_NANOS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construye un planificador
+     * @param evaluator La función que valora los tableros
+     * @param width El número de tableros que se conservan en cada profundidad
+     * @param budgetNanos El tiempo máximo por decisión en nanosegundos
+     * @param parallelism El número de hilos que expanden el haz
+     */
+    public BeamSearchPlanner(BoardEvaluator evaluator, int width, long budgetNanos, int parallelism)
+    {
+        this.evaluator = evaluator;
+        this.width = width;
+        this.budgetNanos = budgetNanos;
+        pool = new ForkJoinPool(parallelism);
+        beam = new Beam(width);
+        next = new Beam(width);
+        kept = new Beam(width);
+        expected = new Board();
+        childMove = new int[width * Placement.MAX];
+        childLines = new int[width * Placement.MAX];
+        childScore = new double[width * Placement.MAX];
+        childCount = new int[width];
+        heap = new int[width];
+        tasks = new ExpandTask[width];
+        for(int i = 0; i < width; i++) {
+            tasks[i] = new ExpandTask(i);
+        }
+        expandAll = new ExpandAll(tasks);
+    }
+
+    /**
+     * Elige la jugada de la pieza actual con el tiempo por defecto
+     */
+    public int choose(Board board, int type, int[] preview, int previewCount)
+    {
+        return choose(board, type, preview, previewCount, System.nanoTime() + budgetNanos);
+    }
+
+    /**
+     * Elige la jugada de la pieza actual antes de un plazo
+     * @param board El tablero actual, que no se modifica
+     * @param type El tipo de la pieza que hay que colocar
+     * @param preview Los tipos de las siguientes piezas
+     * @param previewCount Cuántas posiciones de preview son válidas
+     * @param deadlineNanos El instante límite según System.nanoTime
+     * @return La mejor jugada, o Placement.NONE si la pieza no cabe
+     */
+    public int choose(Board board, int type, int[] preview, int previewCount, long deadlineNanos)
+    {
+        deadline = deadlineNanos;
+        int total = Math.min(MAX_DEPTH, previewCount + 1);
+        pieces[0] = type;
+        for(int i = 1; i < total; i++) {
+            pieces[i] = preview[i - 1];
+        }
+
+        int depth;
+        if(canReuse(board, total)) {
+            // continuamos desde los nodos conservados, que ya colocaron varias piezas
+            beam.copyFrom(kept);
+            depth = kept.depth;
+        } else {
+            depth = 0;
+            beam.size = 1;
+            beam.depth = 0;
+            beam.boards[0].copyFrom(board);
+            beam.lines[0] = 0;
+            beam.scores[0] = 0;
+        }
+        kept.size = 0;
+
+        int best = beam.depth > 0 ? beam.best() : Placement.NONE;
+        int bestMove = best >= 0 ? beam.paths[best][0] : Placement.NONE;
+        while(depth < total) {
+            // la primera profundidad se completa siempre para tener una respuesta
+            if(!expand(pieces[depth], depth == 0) || next.size == 0) {
+                break;
+            }
+            Beam done = beam;
+            beam = next;
+            next = done;
+            depth++;
+            bestMove = beam.paths[beam.best()][0];
+        }
+        if(bestMove != Placement.NONE) {
+            keep(board, type, bestMove, total);
+        }
+        return bestMove;
+    }
+
+    /**
+     * Detiene los hilos del planificador
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Expande todos los tableros del haz con una pieza y elige los mejores hijos
+     * @param type La pieza que se coloca en esta profundidad
+     * @param force True para ignorar el plazo
+     * @return True si la profundidad se completó antes del plazo
+     */
+    private boolean expand(int type, boolean force)
+    {
+        for(int i = 0; i < beam.size; i++) {
+            tasks[i].prepare(type, force);
+        }
+        expandAll.prepare(beam.size);
+        pool.invoke(expandAll);
+        for(int i = 0; i < beam.size; i++) {
+            if(childCount[i] < 0) {
+                return false;
+            }
+        }
+
+        // seleccionamos los mejores hijos con un montículo de mínimos
+        int heapSize = 0;
+        for(int parent = 0; parent < beam.size; parent++) {
+            int base = parent * Placement.MAX;
+            for(int i = base; i < base + childCount[parent]; i++) {
+                if(heapSize < width) {
+                    heap[heapSize] = i;
+                    siftUp(heapSize++);
+                } else if(childScore[i] > childScore[heap[0]]) {
+                    heap[0] = i;
+                    siftDown(0, heapSize);
+                }
+            }
+        }
+
+        // construimos el siguiente haz con los tableros elegidos
+        next.size = heapSize;
+        next.depth = beam.depth + 1;
+        for(int n = 0; n < heapSize; n++) {
+            int child = heap[n];
+            int parent = child / Placement.MAX;
+            next.boards[n].copyFrom(beam.boards[parent]);
+            next.boards[n].place(type, childMove[child]);
+            next.lines[n] = childLines[child];
+            next.scores[n] = childScore[child];
+            System.arraycopy(beam.paths[parent], 0, next.paths[n], 0, beam.depth);
+            next.paths[n][beam.depth] = childMove[child];
+        }
+        return true;
+    }
+
+    /**
+     * Guarda los nodos del haz que empiezan por la jugada elegida para
+     * poder continuar la búsqueda en la siguiente decisión
+     */
+    private void keep(Board board, int type, int move, int total)
+    {
+        expected.copyFrom(board);
+        expected.place(type, move);
+        expectedCount = total - 1;
+        System.arraycopy(pieces, 1, expectedPieces, 0, expectedCount);
+        kept.size = 0;
+        kept.depth = beam.depth - 1;
+        if(kept.depth < 1) {
+            return;
+        }
+        for(int i = 0; i < beam.size; i++) {
+            if(beam.paths[i][0] == move) {
+                int k = kept.size++;
+                kept.boards[k].copyFrom(beam.boards[i]);
+                kept.lines[k] = beam.lines[i];
+                kept.scores[k] = beam.scores[i];
+                System.arraycopy(beam.paths[i], 1, kept.paths[k], 0, kept.depth);
+            }
+        }
+    }
+
+    /**
+     * Comprueba si los nodos conservados siguen siendo válidos: el tablero
+     * es el previsto, las piezas coinciden y quedan suficientes nodos
+     */
+    private boolean canReuse(Board board, int total)
+    {
+        if(kept.size < Math.max(1, width / 2) || kept.depth > total || !board.sameAs(expected)) {
+            return false;
+        }
+        for(int i = 0; i < Math.min(kept.depth, expectedCount); i++) {
+            if(pieces[i] != expectedPieces[i]) {
+                return false;
+            }
+        }
+        return kept.depth <= expectedCount;
+    }
+
+    /**
+     * Sube un elemento del montículo de mínimos hasta su posición
+     */
+    private void siftUp(int i)
+    {
+        while(i > 0) {
+            int parent = (i - 1) / 2;
+            if(childScore[heap[i]] >= childScore[heap[parent]]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Baja un elemento del montículo de mínimos hasta su posición
+     */
+    private void siftDown(int i, int size)
+    {
+        while(true) {
+            int smallest = i;
+            int left = 2 * i + 1, right = left + 1;
+            if(left < size && childScore[heap[left]] < childScore[heap[smallest]]) {
+                smallest = left;
+            }
+            if(right < size && childScore[heap[right]] < childScore[heap[smallest]]) {
+                smallest = right;
+            }
+            if(smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    /**
+     * Intercambia dos posiciones del montículo
+     */
+    private void swap(int a, int b)
+    {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    /**
+     * Los nodos de una profundidad de la búsqueda: tablero, líneas
+     * acumuladas, puntuación y jugadas desde la raíz
+     */
+    private static class Beam
+    {
+        private final Board[] boards;
+        private final int[] lines;
+        private final double[] scores;
+        private final int[][] paths;
+        private int size, depth;
+
+        public Beam(int width)
+        {
+            boards = new Board[width];
+            lines = new int[width];
+            scores = new double[width];
+            paths = new int[width][MAX_DEPTH];
+            for(int i = 0; i < width; i++) {
+                boards[i] = new Board();
+            }
+        }
+
+        /**
+         * Copia los nodos de otro haz de la misma anchura
+         */
+        public void copyFrom(Beam other)
+        {
+            size = other.size;
+            depth = other.depth;
+            for(int i = 0; i < size; i++) {
+                boards[i].copyFrom(other.boards[i]);
+                lines[i] = other.lines[i];
+                scores[i] = other.scores[i];
+                System.arraycopy(other.paths[i], 0, paths[i], 0, depth);
+            }
+        }
+
+        /**
+         * @return El índice del nodo con mayor puntuación
+         */
+        public int best()
+        {
+            int best = 0;
+            for(int i = 1; i < size; i++) {
+                if(scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Datos de trabajo propios de cada hilo
+     */
+    private static class Workspace
+    {
+        private final CandidateBatch batch = new CandidateBatch();
+    }
+
+    /**
+     * Tarea que lanza la expansión de todos los tableros del haz
+     */
+    private static class ExpandAll extends RecursiveAction
+    {
+        private final ExpandTask[] tasks;
+        private int count;
+
+        public ExpandAll(ExpandTask[] tasks)
+        {
+            this.tasks = tasks;
+        }
+
+        /**
+         * Prepara la tarea para una nueva profundidad
+         * @param count El número de tableros del haz que se expanden
+         */
+        public void prepare(int count)
+        {
+            this.count = count;
+            reinitialize();
+        }
+
+        protected void compute()
+        {
+            for(int i = 0; i < count; i++) {
+                tasks[i].fork();
+            }
+            for(int i = count - 1; i >= 0; i--) {
+                tasks[i].join();
+            }
+        }
+    }
+
+    /**
+     * Tarea que genera y puntúa los hijos de un tablero del haz. Escribe
+     * solo en su propia parte de los arrays de hijos; si se agota el plazo
+     * marca su cuenta de hijos con -1.
+     */
+    private class ExpandTask extends RecursiveAction
+    {
+        private final int parent;
+        private int type;
+        private boolean force;
+
+        public ExpandTask(int parent)
+        {
+            this.parent = parent;
+        }
+
+        /**
+         * Prepara la tarea para una nueva profundidad
+         */
+        public void prepare(int type, boolean force)
+        {
+            this.type = type;
+            this.force = force;
+            reinitialize();
+        }
+
+        protected void compute()
+        {
+            if(!force && System.nanoTime() > deadline) {
+                childCount[parent] = -1;
+                return;
+            }
+            CandidateBatch batch = workspace.get().batch;
+            int count = batch.fill(beam.boards[parent], type, beam.lines[parent]);
+            batch.score(evaluator);
+            int base = parent * Placement.MAX;
+            int n = 0;
+            for(int i = 0; i < count; i++) {
+                // las jugadas que acaban la partida no se consideran
+                if(batch.getBoard(i).isTopOut()) {
+                    continue;
+                }
+                childMove[base + n] = batch.getPlacement(i);
+                childLines[base + n] = batch.getLines(i);
+                childScore[base + n] = batch.getScore(i);
+                n++;
+            }
+            childCount[parent] = n;
+        }
+    }
+}
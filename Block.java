@@ -4,14 +4,14 @@ import java.awt.Color;
  * Representa cada uno de los 4 bloques individuales que conforman cada
  * pieza del juego o tetrimino
  * 
- * @author Octavio Martnez
+ * @author Octavio Martínez
  * @version 16.05.2011
  */
 public class Block
 {
-    // cada bloque almacena su posicin en fila y columna
+    // cada bloque almacena su posición en fila y columna
     private int row, col;
-    // Cada bloque individual debe contener informacin sobre su color
+    // Cada bloque individual debe contener información sobre su color
     private Color blockColor;
     // Determina si el bloque ha tocado el fondo de la matriz de juego y no se debe mover
     private boolean stacked;
@@ -28,7 +28,7 @@ public class Block
         
     /**
      * Constructor de los bloques que formas las piezas, que establece 
-     * un color definido por parmetro
+     * un color definido por parámetro
      * @param color El color que establecemos para este bloque
      */
     public Block(Color color)
@@ -38,7 +38,7 @@ public class Block
     }
     
     /**
-     * Construye un bloque con un color y una posicin determinadas
+     * Construye un bloque con un color y una posición determinadas
      * @param color El color que asignamos a este bloque
      * @param row La fila que asignamos a este bloque
      * @param col La columna que asignamos a este bloque
@@ -52,7 +52,7 @@ public class Block
     }
     
     /**
-     * Establece una posicin para este bloque en forma de coordenada
+     * Establece una posición para este bloque en forma de coordenada
      * fila-columna
      * @param row La fila que queremos establecer
      * @param col La columna que queremos establecer
@@ -64,7 +64,7 @@ public class Block
     }
     
     /**
-     * Acceso a la posicin fila del bloque
+     * Acceso a la posición fila del bloque
      * @return La fila que almacena internamente el bloque
      */
     public int getRow()
@@ -73,7 +73,7 @@ public class Block
     }
     
     /**
-     * Acceso a la posicin columna del bloque
+     * Acceso a la posición columna del bloque
      * @return La columna que almacena internamente el bloque
      */
     public int getCol()
@@ -102,7 +102,7 @@ public class Block
     
     /**
      * Indica que el bloque ha sido apilado en el fondo del grid
-     * y no se puede mover (excepto en caso de hacer lnea)
+     * y no se puede mover (excepto en caso de hacer línea)
      */
     public void setStacked()
     {
@@ -110,8 +110,8 @@ public class Block
     }
     
     /**
-     * Verifica si el bloque est o no apilado al fondo
-     * @return True si est apilado al fondo, false si no lo est.
+     * Verifica si el bloque está o no apilado al fondo
+     * @return True si está apilado al fondo, false si no lo está.
      */
     public boolean isStacked()
     {
@@ -0,0 +1,337 @@
+/**
+ * Versión compacta y sin interfaz de la matriz de juego, pensada para
+ * las simulaciones de los bots. Cada fila se guarda como una máscara de
+ * bits (el bit c representa la columna c) con los bloques apilados, de modo
+ * que comprobar colisiones, colocar piezas o hacer "linea" son operaciones
+ * sobre enteros que no crean ningún objeto.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class Board
+{
+    // Las dimensiones del tablero
+    private final int rows, cols;
+    // máscara de una fila completa
+    private final int fullRow;
+    // las filas del tablero, de arriba (0) a abajo
+    private final int[] cells;
+    // alturas de las columnas calculadas en la última llamada a computeHeights
+    private final int[] heights;
+
+    /**
+     * Construye un tablero vacío de las dimensiones por defecto del juego
+     */
+    public Board()
+    {
+        this(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS);
+    }
+
+    /**
+     * Construye un tablero vacío
+     * @param rows Las filas del tablero
+     * @param cols Las columnas del tablero (como máximo 31)
+     */
+    public Board(int rows, int cols)
+    {
+        this.rows = rows;
+        this.cols = cols;
+        fullRow = (1 << cols) - 1;
+        cells = new int[rows];
+        heights = new int[cols];
+    }
+
+    /**
+     * Copia el contenido de otro tablero de las mismas dimensiones
+     * @param other El tablero que copiamos
+     */
+    public void copyFrom(Board other)
+    {
+        System.arraycopy(other.cells, 0, cells, 0, rows);
+    }
+
+    /**
+     * Vacía el tablero
+     */
+    public void clear()
+    {
+        for(int row = 0; row < rows; row++) {
+            cells[row] = 0;
+        }
+    }
+
+    /**
+     * @return El número de filas del tablero
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * @return El número de columnas del tablero
+     */
+    public int getCols()
+    {
+        return cols;
+    }
+
+    /**
+     * Acceso a la máscara de una fila
+     * @param row La fila
+     * @return Los bits de las columnas ocupadas en esa fila
+     */
+    public int getRowMask(int row)
+    {
+        return cells[row];
+    }
+
+    /**
+     * Establece la máscara de una fila
+     * @param row La fila
+     * @param mask Los bits de las columnas ocupadas
+     */
+    public void setRowMask(int row, int mask)
+    {
+        cells[row] = mask & fullRow;
+    }
+
+    /**
+     * Comprueba si una celda está ocupada
+     * @param row La fila
+     * @param col La columna
+     * @return True si hay un bloque en esa celda
+     */
+    public boolean isOccupied(int row, int col)
+    {
+        return (cells[row] & (1 << col)) != 0;
+    }
+
+    /**
+     * Comprueba si dos tableros tienen exactamente los mismos bloques
+     * @param other El tablero con el que comparamos
+     * @return True si son iguales
+     */
+    public boolean sameAs(Board other)
+    {
+        for(int row = 0; row < rows; row++) {
+            if(cells[row] != other.cells[row]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifica si una pieza cabe en una posición del tablero
+     * @param type El tipo de tetrimino
+     * @param rot El giro de la pieza
+     * @param x La columna de la caja de la pieza
+     * @param y La fila de la caja de la pieza
+     * @return True si todos sus bloques quedan dentro y en celdas libres
+     */
+    public boolean fits(int type, int rot, int x, int y)
+    {
+        if(x + PieceTable.minCol(type, rot) < 0 || x + PieceTable.maxCol(type, rot) >= cols
+           || y + PieceTable.minRow(type, rot) < 0 || y + PieceTable.maxRow(type, rot) >= rows) {
+            return false;
+        }
+        int last = PieceTable.maxRow(type, rot);
+        for(int i = PieceTable.minRow(type, rot); i <= last; i++) {
+            if((cells[y + i] & shift(PieceTable.rowMask(type, rot, i), x)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gira una pieza con las mismas reglas que Grid.turnPiece: prueba en
+     * orden los empujes del giro y se queda con el primero en que la región
+     * que exige la regla de giro está libre y la pieza girada cabe
+     * @param type El tipo de pieza
+     * @param rot El giro actual
+     * @param x La columna de la caja de la pieza
+     * @param y La fila de la caja de la pieza
+     * @return La jugada codificada con Placement tras el giro, o
+     *         Placement.NONE si no puede girar
+     */
+    public int turn(int type, int rot, int x, int y)
+    {
+        int turns = PieceTable.rotations(type);
+        if(turns == 1) {
+            return Placement.NONE;
+        }
+        int next = rot + 1 == turns ? 0 : rot + 1;
+        int kicks = PieceTable.kicks(type, rot);
+        for(int k = 0; k < kicks; k++) {
+            int kx = x + PieceTable.kickX(type, rot, k), ky = y + PieceTable.kickY(type, rot, k);
+            if(clearForTurn(type, rot, kx, ky) && fits(type, next, kx, ky)) {
+                return Placement.pack(next, kx, ky);
+            }
+        }
+        return Placement.NONE;
+    }
+
+    /**
+     * Comprueba si la región que debe estar libre para girar una pieza está
+     * dentro del tablero y sin bloques
+     * @param type El tipo de pieza
+     * @param rot El giro desde el que se gira
+     * @param x La columna de la caja tras el empuje
+     * @param y La fila de la caja tras el empuje
+     * @return True si la región está libre
+     */
+    private boolean clearForTurn(int type, int rot, int x, int y)
+    {
+        if(x + PieceTable.clearMinCol(type, rot) < 0 || x + PieceTable.clearMaxCol(type, rot) >= cols
+           || y + PieceTable.clearMinRow(type, rot) < 0 || y + PieceTable.clearMaxRow(type, rot) >= rows) {
+            return false;
+        }
+        int last = PieceTable.clearMaxRow(type, rot);
+        for(int i = PieceTable.clearMinRow(type, rot); i <= last; i++) {
+            if((cells[y + i] & shift(PieceTable.clearanceMask(type, rot, i), x)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calcula la fila en la que se detiene una pieza dejada caer desde
+     * la parte superior del tablero
+     * @param type El tipo de tetrimino
+     * @param rot El giro de la pieza
+     * @param x La columna de la caja de la pieza
+     * @return La fila final de la caja, o -1 si la pieza no cabe arriba
+     */
+    public int dropRow(int type, int rot, int x)
+    {
+        if(!fits(type, rot, x, 0)) {
+            return -1;
+        }
+        int y = 0;
+        while(fits(type, rot, x, y + 1)) {
+            y++;
+        }
+        return y;
+    }
+
+    /**
+     * Apila una pieza en el tablero y elimina las filas completas
+     * @param type El tipo de tetrimino
+     * @param rot El giro de la pieza
+     * @param x La columna de la caja de la pieza
+     * @param y La fila de la caja de la pieza
+     * @return El número de líneas hechas al colocar la pieza
+     */
+    public int place(int type, int rot, int x, int y)
+    {
+        int last = PieceTable.maxRow(type, rot);
+        for(int i = PieceTable.minRow(type, rot); i <= last; i++) {
+            cells[y + i] |= shift(PieceTable.rowMask(type, rot, i), x);
+        }
+        return clearLines();
+    }
+
+    /**
+     * Apila una jugada codificada con Placement
+     * @param type El tipo de tetrimino
+     * @param placement La jugada
+     * @return El número de líneas hechas al colocar la pieza
+     */
+    public int place(int type, int placement)
+    {
+        return place(type, Placement.rot(placement), Placement.x(placement), Placement.y(placement));
+    }
+
+    /**
+     * Elimina las filas completas y baja las superiores
+     * @return El número de líneas eliminadas
+     */
+    public int clearLines()
+    {
+        int target = rows - 1;
+        for(int row = rows - 1; row >= 0; row--) {
+            if(cells[row] != fullRow) {
+                cells[target--] = cells[row];
+            }
+        }
+        int lines = target + 1;
+        while(target >= 0) {
+            cells[target--] = 0;
+        }
+        return lines;
+    }
+
+    /**
+     * Busca la fila más alta que tiene algún bloque
+     * @return La primera fila ocupada, o el número de filas si el tablero está vacío
+     */
+    public int topRow()
+    {
+        int row = 0;
+        while(row < rows && cells[row] == 0) {
+            row++;
+        }
+        return row;
+    }
+
+    /**
+     * Comprueba si los bloques han llegado a la fila superior, que es
+     * la condición de fin de juego de Tetris
+     * @return True si hay algún bloque en la fila 0
+     */
+    public boolean isTopOut()
+    {
+        return cells[0] != 0;
+    }
+
+    /**
+     * Calcula la altura de cada columna (0 si está vacía)
+     * @return Un array interno con las alturas, válido hasta la siguiente llamada
+     */
+    public int[] computeHeights()
+    {
+        int seen = 0;
+        for(int col = 0; col < cols; col++) {
+            heights[col] = 0;
+        }
+        for(int row = 0; row < rows && seen != fullRow; row++) {
+            int fresh = cells[row] & ~seen;
+            while(fresh != 0) {
+                int col = Integer.numberOfTrailingZeros(fresh);
+                heights[col] = rows - row;
+                fresh &= fresh - 1;
+            }
+            seen |= cells[row];
+        }
+        return heights;
+    }
+
+    /**
+     * Cuenta los huecos, es decir, celdas vacías con algún bloque encima
+     * @return El número de huecos del tablero
+     */
+    public int countHoles()
+    {
+        int holes = 0;
+        int covered = 0;
+        for(int row = 0; row < rows; row++) {
+            holes += Integer.bitCount(covered & ~cells[row]);
+            covered |= cells[row];
+        }
+        return holes;
+    }
+
+    /**
+     * Desplaza una máscara de la caja de la pieza a su columna en el tablero
+     * @param mask La máscara relativa a la caja
+     * @param x La columna de la caja, que puede ser negativa
+     * @return La máscara en coordenadas del tablero
+     */
+    private static int shift(int mask, int x)
+    {
+        return x >= 0 ? mask << x : mask >>> -x;
+    }
+}
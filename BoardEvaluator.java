@@ -0,0 +1,28 @@
+/**
+ * Interfaz común de las funciones que puntúan tableros para los bots.
+ * Además de puntuar un tablero suelto permite puntuar un lote de tableros
+ * de una vez, lo que aprovechan los evaluadores que, como la red neuronal,
+ * son más rápidos procesando muchos candidatos juntos.
+ * 
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public interface BoardEvaluator
+{
+    /**
+     * Puntúa un tablero tras colocar una pieza
+     * @param board El tablero resultante
+     * @param lines Las líneas hechas hasta llegar a él
+     * @return La puntuación, mayor cuanto mejor es el tablero
+     */
+    double evaluate(Board board, int lines);
+
+    /**
+     * Puntúa un lote de tableros
+     * @param boards Los tableros
+     * @param lines Las líneas hechas hasta llegar a cada tablero
+     * @param count El número de tableros del lote
+     * @param out El array donde se guarda la puntuación de cada tablero
+     */
+    void evaluateBatch(Board[] boards, int[] lines, int count, double[] out);
+}
@@ -0,0 +1,20 @@
+/**
+ * Interfaz común de los jugadores automáticos. Un bot recibe el tablero
+ * con los bloques apilados, la pieza que hay que colocar y las siguientes
+ * piezas, y devuelve la jugada elegida codificada con Placement.
+ * 
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public interface Bot
+{
+    /**
+     * Elige la jugada de la pieza actual
+     * @param board El tablero actual, que el bot no debe modificar
+     * @param type El tipo de la pieza que hay que colocar
+     * @param preview Los tipos de las siguientes piezas
+     * @param previewCount Cuántas posiciones de preview son válidas
+     * @return La jugada elegida, o Placement.NONE si la pieza no cabe
+     */
+    int choose(Board board, int type, int[] preview, int previewCount);
+}
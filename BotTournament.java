@@ -0,0 +1,595 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Torneo entre bots para decidir con datos cuál conviene usar. Cada match
+ * enfrenta a dos bots en varias partidas sin interfaz (HeadlessGame): los
+ * dos juegan cada partida con la misma semilla, y por tanto con la misma
+ * secuencia de piezas, y gana la partida el que hace más líneas (o, si
+ * empatan, el que coloca más piezas antes de perder).
+ *
+ * Los emparejamientos pueden ser de todos contra todos o por sistema
+ * suizo (cada ronda enfrenta a bots con puntos parecidos que aún no se han
+ * enfrentado). Los matches de una misma ronda se juegan en paralelo con un
+ * ForkJoinPool; como cada match tiene sus propias semillas, derivadas de
+ * la semilla del torneo, el resultado no depende del orden en que acaben.
+ *
+ * Las puntuaciones son de Glicko (Glickman, 1999): cada ronda es un
+ * periodo de puntuación, al principio de cada periodo la desviación (RD)
+ * de todos los bots crece con la constante c, y la desviación da el
+ * intervalo de confianza del 95% (puntuación +- 1,96 RD). También se mide el rendimiento de cada
+ * bot: decisiones por segundo de tiempo de pensar y percentiles del tiempo
+ * de cada decisión. Los bots con un tiempo límite por decisión piensan
+ * menos si hay más matches en paralelo que procesadores.
+ *
+ * Uso: java BotTournament [todos|suizo] [partidas por match] [piezas por partida] [rondas] [semilla]
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class BotTournament
+{
+    // puntuación y desviación de un bot que aún no ha jugado
+    public static final double INITIAL_RATING = 1500, INITIAL_DEVIATION = 350;
+    // constante q de Glicko
+    private static final double Q = Math.log(10) / 400;
+    // constante c de Glicko, lo que crece la desviación en cada periodo: una
+    // desviación de 50 vuelve a la inicial en 100 periodos sin jugar
+    private static final double C = Math.sqrt((INITIAL_DEVIATION * INITIAL_DEVIATION - 50 * 50) / 100);
+    // valor de la normal para un intervalo del 95%
+    private static final double Z95 = 1.96;
+
+    /**
+     * Crea los bots de un participante. Cada match crea los suyos, porque
+     * los bots no se pueden compartir entre hilos, y los suelta al acabar.
+     */
+    public interface BotFactory
+    {
+        /**
+         * @return Un bot nuevo
+         */
+        Bot create();
+
+        /**
+         * Libera los recursos de un bot creado con create
+         * @param bot El bot
+         */
+        void dispose(Bot bot);
+    }
+
+    // semilla de la que se derivan las partidas de todos los matches
+    private final long seed;
+    // partidas de cada match y límite de piezas de cada partida
+    private final int gamesPerMatch, maxPieces;
+    // pool de hilos para jugar los matches
+    private final ForkJoinPool pool;
+
+    // los participantes
+    private final List<String> names = new ArrayList<String>();
+    private final List<BotFactory> factories = new ArrayList<BotFactory>();
+    // puntuación y desviación de Glicko de cada bot
+    private double[] rating = new double[0], deviation = new double[0];
+    // puntos (1 por partida ganada, 0,5 por empate) y partidas ganadas, empatadas y perdidas
+    private double[] points = new double[0];
+    private int[] wins = new int[0], draws = new int[0], losses = new int[0];
+    // líneas hechas en total
+    private long[] lines = new long[0];
+    // tiempos de cada decisión de cada bot, en nanosegundos
+    private long[][] thinkTimes = new long[0][];
+    private int[] decisions = new int[0];
+    // matches ya jugados entre cada par y descansos de cada bot (sistema suizo)
+    private boolean[][] met = new boolean[0][];
+    private int[] byes = new int[0];
+    // rondas jugadas
+    private int round;
+
+    /**
+     * Construye un torneo sin participantes
+     * @param seed La semilla del torneo
+     * @param gamesPerMatch Las partidas de cada match
+     * @param maxPieces El límite de piezas de cada partida
+     * @param parallelism Los matches que se juegan a la vez
+     */
+    public BotTournament(long seed, int gamesPerMatch, int maxPieces, int parallelism)
+    {
+        this.seed = seed;
+        this.gamesPerMatch = gamesPerMatch;
+        this.maxPieces = maxPieces;
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Añade un participante antes de la primera ronda
+     * @param name El nombre del bot
+     * @param factory La forma de crear sus bots
+     */
+    public void addBot(String name, BotFactory factory)
+    {
+        if(round > 0) {
+            throw new IllegalStateException("El torneo ya ha empezado");
+        }
+        names.add(name);
+        factories.add(factory);
+        int n = names.size();
+        rating = Arrays.copyOf(rating, n);
+        deviation = Arrays.copyOf(deviation, n);
+        rating[n - 1] = INITIAL_RATING;
+        deviation[n - 1] = INITIAL_DEVIATION;
+        points = Arrays.copyOf(points, n);
+        wins = Arrays.copyOf(wins, n);
+        draws = Arrays.copyOf(draws, n);
+        losses = Arrays.copyOf(losses, n);
+        lines = Arrays.copyOf(lines, n);
+        thinkTimes = Arrays.copyOf(thinkTimes, n);
+        thinkTimes[n - 1] = new long[1024];
+        decisions = Arrays.copyOf(decisions, n);
+        byes = Arrays.copyOf(byes, n);
+        met = new boolean[n][n];
+    }
+
+    /**
+     * Juega un torneo de todos contra todos: un match entre cada par de
+     * bots. Todos los matches se juegan a la vez y después se puntúan en
+     * las rondas del sistema de Berger, cada una un periodo de Glicko.
+     */
+    public void playRoundRobin()
+    {
+        int n = names.size();
+        // con un número impar de bots se añade uno ficticio que descansa
+        int slots = n + n % 2;
+        List<MatchTask> matches = new ArrayList<MatchTask>();
+        List<Integer> rounds = new ArrayList<Integer>();
+        for(int r = 0; r < slots - 1; r++) {
+            for(int i = 0; i < slots / 2; i++) {
+                int a = berger(r, i, slots), b = berger(r, slots - 1 - i, slots);
+                if(a < n && b < n) {
+                    matches.add(new MatchTask(Math.min(a, b), Math.max(a, b), round + r));
+                    rounds.add(r);
+                }
+            }
+        }
+        play(matches);
+        for(int r = 0; r < slots - 1; r++) {
+            List<MatchTask> period = new ArrayList<MatchTask>();
+            for(int m = 0; m < matches.size(); m++) {
+                if(rounds.get(m) == r) {
+                    period.add(matches.get(m));
+                }
+            }
+            rate(period);
+        }
+        round += slots - 1;
+    }
+
+    /**
+     * Bot en una posición de una ronda del sistema de Berger (el primero
+     * fijo y los demás girando)
+     */
+    private static int berger(int round, int position, int slots)
+    {
+        return position == 0 ? 0 : 1 + (position - 1 + round) % (slots - 1);
+    }
+
+    /**
+     * Juega una ronda por sistema suizo: se ordenan los bots por puntos y
+     * puntuación y cada uno se enfrenta al siguiente con el que aún no ha
+     * jugado. Con un número impar de bots, descansa el peor clasificado
+     * de los que menos han descansado y se lleva los puntos de un match
+     * ganado.
+     */
+    public void playSwissRound()
+    {
+        int n = names.size();
+        Integer[] order = new Integer[n];
+        for(int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer x, Integer y) {
+                if(points[x] != points[y]) {
+                    return Double.compare(points[y], points[x]);
+                }
+                if(rating[x] != rating[y]) {
+                    return Double.compare(rating[y], rating[x]);
+                }
+                return x - y;
+            }
+        });
+        boolean[] paired = new boolean[n];
+        if(n % 2 == 1) {
+            int bye = n - 1;
+            for(int i = n - 2; i >= 0; i--) {
+                if(byes[order[i]] < byes[order[bye]]) {
+                    bye = i;
+                }
+            }
+            paired[order[bye]] = true;
+            byes[order[bye]]++;
+            points[order[bye]] += gamesPerMatch;
+        }
+        List<MatchTask> matches = new ArrayList<MatchTask>();
+        for(int i = 0; i < n; i++) {
+            int a = order[i];
+            if(paired[a]) {
+                continue;
+            }
+            // el siguiente libre con el que no ha jugado, o el siguiente libre si ya ha jugado con todos
+            int opponent = -1;
+            for(int j = i + 1; j < n; j++) {
+                int b = order[j];
+                if(!paired[b] && (opponent < 0 || !met[a][b] && met[a][opponent])) {
+                    opponent = b;
+                    if(!met[a][b]) {
+                        break;
+                    }
+                }
+            }
+            if(opponent >= 0) {
+                paired[a] = true;
+                paired[opponent] = true;
+                matches.add(new MatchTask(Math.min(a, opponent), Math.max(a, opponent), round));
+            }
+        }
+        play(matches);
+        rate(matches);
+        round++;
+    }
+
+    /**
+     * Juega unos matches en paralelo y suma sus resultados
+     */
+    private void play(List<MatchTask> matches)
+    {
+        pool.invoke(new BatchTask(matches.toArray(new MatchTask[matches.size()])));
+        for(MatchTask match : matches) {
+            met[match.a][match.b] = true;
+            met[match.b][match.a] = true;
+            for(int g = 0; g < gamesPerMatch; g++) {
+                double score = match.score[g];
+                points[match.a] += score;
+                points[match.b] += 1 - score;
+                if(score == 1) {
+                    wins[match.a]++;
+                    losses[match.b]++;
+                } else if(score == 0) {
+                    losses[match.a]++;
+                    wins[match.b]++;
+                } else {
+                    draws[match.a]++;
+                    draws[match.b]++;
+                }
+                lines[match.a] += match.linesA[g];
+                lines[match.b] += match.linesB[g];
+            }
+            addThinkTimes(match.a, match.timesA);
+            addThinkTimes(match.b, match.timesB);
+        }
+    }
+
+    /**
+     * Añade los tiempos de decisión de un match a los de un bot
+     */
+    private void addThinkTimes(int bot, TimedBot timed)
+    {
+        int needed = decisions[bot] + timed.count;
+        if(needed > thinkTimes[bot].length) {
+            thinkTimes[bot] = Arrays.copyOf(thinkTimes[bot], Math.max(needed, thinkTimes[bot].length * 2));
+        }
+        System.arraycopy(timed.times, 0, thinkTimes[bot], decisions[bot], timed.count);
+        decisions[bot] = needed;
+    }
+
+    /**
+     * Actualiza las puntuaciones de Glicko con las partidas de un periodo.
+     * Primero crece la desviación de todos los bots, jueguen o no, por el
+     * tiempo pasado desde el periodo anterior; después todos se actualizan
+     * con las puntuaciones de antes del periodo.
+     */
+    private void rate(List<MatchTask> period)
+    {
+        int n = names.size();
+        for(int i = 0; i < n; i++) {
+            deviation[i] = Math.min(Math.sqrt(deviation[i] * deviation[i] + C * C), INITIAL_DEVIATION);
+        }
+        double[] variance = new double[n], change = new double[n];
+        for(MatchTask match : period) {
+            for(int g = 0; g < gamesPerMatch; g++) {
+                accumulate(match.a, match.b, match.score[g], variance, change);
+                accumulate(match.b, match.a, 1 - match.score[g], variance, change);
+            }
+        }
+        double[] newRating = rating.clone();
+        for(int i = 0; i < n; i++) {
+            if(variance[i] > 0) {
+                // 1 / d^2 = q^2 * suma de g(RDj)^2 E (1 - E)
+                double precision = 1 / (deviation[i] * deviation[i]) + Q * Q * variance[i];
+                newRating[i] = rating[i] + Q / precision * change[i];
+                deviation[i] = Math.sqrt(1 / precision);
+            }
+        }
+        rating = newRating;
+    }
+
+    /**
+     * Suma la aportación de una partida de un bot contra otro a su periodo
+     */
+    private void accumulate(int bot, int opponent, double score, double[] variance, double[] change)
+    {
+        double g = 1 / Math.sqrt(1 + 3 * Q * Q * deviation[opponent] * deviation[opponent] / (Math.PI * Math.PI));
+        double expected = 1 / (1 + Math.pow(10, -g * (rating[bot] - rating[opponent]) / 400));
+        variance[bot] += g * g * expected * (1 - expected);
+        change[bot] += g * (score - expected);
+    }
+
+    /**
+     * @return El número de participantes
+     */
+    public int size()
+    {
+        return names.size();
+    }
+
+    /**
+     * @return Las rondas jugadas
+     */
+    public int getRound()
+    {
+        return round;
+    }
+
+    /**
+     * @param bot La posición del bot
+     * @return Su nombre
+     */
+    public String getName(int bot)
+    {
+        return names.get(bot);
+    }
+
+    /**
+     * @param bot La posición del bot
+     * @return Su puntuación de Glicko
+     */
+    public double getRating(int bot)
+    {
+        return rating[bot];
+    }
+
+    /**
+     * @param bot La posición del bot
+     * @return La desviación (RD) de su puntuación
+     */
+    public double getDeviation(int bot)
+    {
+        return deviation[bot];
+    }
+
+    /**
+     * @param bot La posición del bot
+     * @return Sus puntos en el torneo
+     */
+    public double getPoints(int bot)
+    {
+        return points[bot];
+    }
+
+    /**
+     * @param bot La posición del bot
+     * @return Sus decisiones por segundo de tiempo de pensar
+     */
+    public double getDecisionsPerSecond(int bot)
+    {
+        long total = 0;
+        for(int i = 0; i < decisions[bot]; i++) {
+            total += thinkTimes[bot][i];
+        }
+        return total == 0 ? 0 : decisions[bot] * 1e9 / total;
+    }
+
+    /**
+     * @param bot La posición del bot
+     * @param p El percentil, entre 0 y 100
+     * @return Ese percentil del tiempo de sus decisiones, en nanosegundos
+     */
+    public long getThinkPercentile(int bot, double p)
+    {
+        if(decisions[bot] == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(thinkTimes[bot], decisions[bot]);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Escribe la clasificación, de mayor a menor puntuación
+     * @param out Donde se escribe
+     */
+    public void printStandings(PrintStream out)
+    {
+        Integer[] order = new Integer[names.size()];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer x, Integer y) {
+                return Double.compare(rating[y], rating[x]);
+            }
+        });
+        out.println("bot                 glicko  (95%)      puntos   G-E-P          líneas/p  dec/s     p50 µs   p90 µs   p99 µs");
+        for(int i : order) {
+            int played = wins[i] + draws[i] + losses[i];
+            out.printf("%-18s %7.0f %5.0f-%-5.0f %7.1f  %-14s %8.1f %8.0f %8.1f %8.1f %8.1f%n",
+                       names.get(i), rating[i], rating[i] - Z95 * deviation[i], rating[i] + Z95 * deviation[i],
+                       points[i], wins[i] + "-" + draws[i] + "-" + losses[i],
+                       played == 0 ? 0.0 : (double) lines[i] / played,
+                       getDecisionsPerSecond(i), getThinkPercentile(i, 50) / 1e3,
+                       getThinkPercentile(i, 90) / 1e3, getThinkPercentile(i, 99) / 1e3);
+        }
+    }
+
+    /**
+     * Detiene los hilos del torneo
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Bot que mide el tiempo de cada decisión de otro
+     */
+    private static class TimedBot implements Bot
+    {
+        private final Bot bot;
+        private long[] times;
+        private int count;
+
+        public TimedBot(Bot bot, int capacity)
+        {
+            this.bot = bot;
+            times = new long[capacity];
+        }
+
+        public int choose(Board board, int type, int[] preview, int previewCount)
+        {
+            long start = System.nanoTime();
+            int placement = bot.choose(board, type, preview, previewCount);
+            long elapsed = System.nanoTime() - start;
+            if(count == times.length) {
+                times = Arrays.copyOf(times, times.length * 2 + 1);
+            }
+            times[count++] = elapsed;
+            return placement;
+        }
+    }
+
+    /**
+     * Tarea que lanza todos los matches de una ronda dentro del pool
+     */
+    private static class BatchTask extends RecursiveAction
+    {
+        private final MatchTask[] tasks;
+
+        public BatchTask(MatchTask[] tasks)
+        {
+            this.tasks = tasks;
+        }
+
+        protected void compute()
+        {
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Tarea que juega un match entre dos bots y guarda el resultado de
+     * cada partida para el primero (1 gana, 0,5 empata, 0 pierde)
+     */
+    private class MatchTask extends RecursiveAction
+    {
+        private final int a, b, matchRound;
+        private final double[] score = new double[gamesPerMatch];
+        private final int[] linesA = new int[gamesPerMatch], linesB = new int[gamesPerMatch];
+        private TimedBot timesA, timesB;
+
+        public MatchTask(int a, int b, int matchRound)
+        {
+            this.a = a;
+            this.b = b;
+            this.matchRound = matchRound;
+        }
+
+        protected void compute()
+        {
+            // las semillas solo dependen del torneo, la ronda y la pareja
+            Random random = new Random(((seed * 31 + matchRound) * 31 + a) * 31 + b);
+            Bot botA = factories.get(a).create();
+            Bot botB = factories.get(b).create();
+            try {
+                timesA = new TimedBot(botA, gamesPerMatch * maxPieces);
+                timesB = new TimedBot(botB, gamesPerMatch * maxPieces);
+                for(int g = 0; g < gamesPerMatch; g++) {
+                    long gameSeed = random.nextLong();
+                    HeadlessGame gameA = new HeadlessGame(gameSeed);
+                    HeadlessGame gameB = new HeadlessGame(gameSeed);
+                    linesA[g] = gameA.play(timesA, maxPieces);
+                    linesB[g] = gameB.play(timesB, maxPieces);
+                    int compare = linesA[g] != linesB[g] ? Integer.compare(linesA[g], linesB[g])
+                                                         : Integer.compare(gameA.getPieces(), gameB.getPieces());
+                    score[g] = compare > 0 ? 1 : compare < 0 ? 0 : 0.5;
+                }
+            } finally {
+                factories.get(a).dispose(botA);
+                factories.get(b).dispose(botB);
+            }
+        }
+    }
+
+    /**
+     * Crea un participante que juega con un bot voraz y unos pesos de la heurística
+     */
+    private static BotFactory greedy(final double[] weights)
+    {
+        return new BotFactory() {
+            public Bot create() {
+                return new GreedyBot(new Heuristic(weights));
+            }
+            public void dispose(Bot bot) {
+            }
+        };
+    }
+
+    /**
+     * Crea un participante que juega con búsqueda en haz en un solo hilo
+     */
+    private static BotFactory beam(final int width, final long budgetNanos)
+    {
+        return new BotFactory() {
+            public Bot create() {
+                return new BeamSearchPlanner(new Heuristic(), width, budgetNanos, 1);
+            }
+            public void dispose(Bot bot) {
+                ((BeamSearchPlanner) bot).shutdown();
+            }
+        };
+    }
+
+    /**
+     * Rutina main que enfrenta a los bots del juego y muestra la clasificación
+     */
+    public static void main(String[] args)
+    {
+        boolean swiss = args.length > 0 && args[0].equals("suizo");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int pieces = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        BotTournament tournament = new BotTournament(seed, games, pieces, Runtime.getRuntime().availableProcessors());
+        tournament.addBot("voraz", greedy(new double[] {-0.51, 0.76, -0.36, -0.18, -0.10}));
+        tournament.addBot("voraz-sin-pozos", greedy(new double[] {-0.51, 0.76, -0.36, -0.18, 0}));
+        tournament.addBot("voraz-huecos", greedy(new double[] {-0.51, 0.76, -0.90, -0.18, -0.10}));
+        tournament.addBot("voraz-plano", greedy(new double[] {-0.20, 0.76, -0.36, -0.50, -0.10}));
+        tournament.addBot("haz-4", beam(4, 5000000L));
+        long start = System.nanoTime();
+        if(swiss) {
+            for(int r = 0; r < rounds; r++) {
+                tournament.playSwissRound();
+            }
+        } else {
+            tournament.playRoundRobin();
+        }
+        System.out.printf("%s, %d rondas, %d partidas por match, %d piezas por partida: %.1f s%n",
+                          swiss ? "suizo" : "todos contra todos", tournament.getRound(), games, pieces,
+                          (System.nanoTime() - start) / 1e9);
+        tournament.printStandings(System.out);
+        tournament.shutdown();
+    }
+}
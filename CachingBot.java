@@ -0,0 +1,66 @@
+/**
+ * Bot que consulta una PlacementCache antes de buscar. Si la situación ya
+ * se vio y la jugada guardada sigue siendo una posición final alcanzable en
+ * este tablero se usa directamente; si no, se pide la jugada al bot interno
+ * y se guarda en la caché para la próxima vez.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class CachingBot implements Bot
+{
+    // el bot que hace la búsqueda completa
+    private final Bot searcher;
+    // la caché de jugadas, que se puede compartir entre bots
+    private final PlacementCache cache;
+    // generador y lista de trabajo para validar las jugadas guardadas
+    private final MoveGenerator generator = new MoveGenerator();
+    private final int[] placements = new int[Placement.MAX];
+
+    /**
+     * Construye un bot con caché
+     * @param searcher El bot que se usa cuando la caché no tiene la jugada
+     * @param cache La caché de jugadas
+     */
+    public CachingBot(Bot searcher, PlacementCache cache)
+    {
+        this.searcher = searcher;
+        this.cache = cache;
+    }
+
+    /**
+     * Elige la jugada guardada en la caché o, si no la hay, la del bot interno
+     */
+    public int choose(Board board, int type, int[] preview, int previewCount)
+    {
+        int next = previewCount > 0 ? preview[0] : PlacementCache.NO_PIECE;
+        int cached = cache.lookup(board, type, next);
+        if(cached != Placement.NONE && isReachable(board, type, cached)) {
+            return cached;
+        }
+        int placement = searcher.choose(board, type, preview, previewCount);
+        if(placement != Placement.NONE) {
+            cache.store(board, type, next, placement);
+        }
+        return placement;
+    }
+
+    /**
+     * Comprueba que una jugada está entre las posiciones finales alcanzables,
+     * ya que la clave solo describe la superficie y no los huecos
+     */
+    private boolean isReachable(Board board, int type, int placement)
+    {
+        int rot = Placement.rot(placement);
+        if(rot >= PieceTable.rotations(type)) {
+            return false;
+        }
+        int count = generator.generate(board, type, placements);
+        for(int i = 0; i < count; i++) {
+            if(placements[i] == placement) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Lote de jugadas candidatas de una pieza con el tablero que deja cada una,
+ * preparado para puntuarlas todas de una vez con un BoardEvaluator. Los
+ * tableros se crean la primera vez que hacen falta y se reutilizan después,
+ * por lo que cada hilo debe tener su propio lote.
+ * 
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class CandidateBatch
+{
+    // generador de las jugadas alcanzables
+    private final MoveGenerator generator = new MoveGenerator();
+    // las jugadas, los tableros que dejan, sus líneas y su puntuación
+    private final int[] placements = new int[Placement.MAX];
+    private final Board[] boards = new Board[Placement.MAX];
+    private final int[] lines = new int[Placement.MAX];
+    private final double[] scores = new double[Placement.MAX];
+    // el número de candidatas del lote
+    private int count;
+
+    /**
+     * Genera todas las jugadas alcanzables de una pieza y el tablero que
+     * deja cada una
+     * @param board El tablero de partida, que no se modifica
+     * @param type La pieza que se coloca
+     * @param baseLines Las líneas hechas antes de llegar a este tablero
+     * @return El número de candidatas
+     */
+    public int fill(Board board, int type, int baseLines)
+    {
+        count = generator.generate(board, type, placements);
+        for(int i = 0; i < count; i++) {
+            if(boards[i] == null) {
+                boards[i] = new Board(board.getRows(), board.getCols());
+            }
+            boards[i].copyFrom(board);
+            lines[i] = baseLines + boards[i].place(type, placements[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Puntúa todas las candidatas con un solo lote del evaluador
+     * @param evaluator La función de evaluación
+     */
+    public void score(BoardEvaluator evaluator)
+    {
+        evaluator.evaluateBatch(boards, lines, count, scores);
+    }
+
+    /**
+     * @return El índice de la candidata con mayor puntuación, o -1 si no hay
+     */
+    public int best()
+    {
+        int best = -1;
+        for(int i = 0; i < count; i++) {
+            if(best < 0 || scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return El número de candidatas
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param i El índice de la candidata
+     * @return Su jugada codificada con Placement
+     */
+    public int getPlacement(int i)
+    {
+        return placements[i];
+    }
+
+    /**
+     * @param i El índice de la candidata
+     * @return El tablero que deja
+     */
+    public Board getBoard(int i)
+    {
+        return boards[i];
+    }
+
+    /**
+     * @param i El índice de la candidata
+     * @return Las líneas acumuladas al colocarla
+     */
+    public int getLines(int i)
+    {
+        return lines[i];
+    }
+
+    /**
+     * @param i El índice de la candidata
+     * @return Su puntuación tras llamar a score
+     */
+    public double getScore(int i)
+    {
+        return scores[i];
+    }
+}
@@ -0,0 +1,172 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Forma de pintar las celdas de la matriz que comparten la vista del juego
+ * (GameView) y la exportación de fotogramas (FrameExporter): cada celda es
+ * un rectángulo de xScale x yScale píxeles con un píxel de separación,
+ * en relieve (3D) si tiene un bloque y plano y negro si está vacía.
+ *
+ * Cada celda de un color se pinta una sola vez en una imagen pequeña que
+ * después se copia, así que pintar una matriz entera son copias de
+ * imágenes. No es segura entre hilos: cada hilo que pinta usa la suya.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class CellRenderer
+{
+    // color de las celdas vacías
+    public static final Color EMPTY_COLOR = Color.black;
+
+    // las proporciones horizontales y verticales de los rectángulos
+    private final int xScale, yScale;
+    // configuración de la pantalla para crear las imágenes, o null fuera de pantalla
+    private final GraphicsConfiguration config;
+    // tipo de las imágenes de las celdas fuera de pantalla
+    private final int imageType;
+    // celdas ya pintadas, una por color en relieve (3D) y otra plana (2D)
+    private final Map<Color, Image> raisedSprites = new HashMap<Color, Image>();
+    private final Map<Color, Image> flatSprites = new HashMap<Color, Image>();
+
+    /**
+     * Construye el pintor de celdas de un componente en pantalla
+     * @param xScale La anchura de una celda en píxeles
+     * @param yScale La altura de una celda en píxeles
+     * @param config La configuración gráfica del componente, o null si aún no la tiene
+     */
+    public CellRenderer(int xScale, int yScale, GraphicsConfiguration config)
+    {
+        this.xScale = xScale;
+        this.yScale = yScale;
+        this.config = config;
+        imageType = BufferedImage.TYPE_INT_RGB;
+    }
+
+    /**
+     * Construye el pintor de celdas de imágenes fuera de pantalla
+     * @param xScale La anchura de una celda en píxeles
+     * @param yScale La altura de una celda en píxeles
+     * @param imageType El tipo de BufferedImage de las imágenes donde se pinta,
+     *        para que copiar las celdas no tenga que convertir los píxeles
+     */
+    public CellRenderer(int xScale, int yScale, int imageType)
+    {
+        this.xScale = xScale;
+        this.yScale = yScale;
+        this.config = null;
+        this.imageType = imageType;
+    }
+
+    /**
+     * @return La anchura de una celda en píxeles
+     */
+    public int getXScale()
+    {
+        return xScale;
+    }
+
+    /**
+     * @return La altura de una celda en píxeles
+     */
+    public int getYScale()
+    {
+        return yScale;
+    }
+
+    /**
+     * Pinta una celda con el formato del Grid: en relieve y del color de
+     * su índice de la Palette, o plana y negra si está vacía
+     * @param g El contexto gráfico donde se pinta
+     * @param col La columna de la celda
+     * @param row La fila de la celda
+     * @param cell El byte de la celda
+     */
+    public void drawCell(Graphics g, int col, int row, int cell)
+    {
+        Color color = Palette.color(cell);
+        if(color != null) {
+            drawRaised(g, col, row, color);
+        } else {
+            drawFlat(g, col, row, EMPTY_COLOR);
+        }
+    }
+
+    /**
+     * Pinta las filas de unas celdas con el formato del Grid
+     * @param g El contexto gráfico donde se pinta
+     * @param cells Las celdas fila a fila
+     * @param rows Las filas de la matriz
+     * @param cols Las columnas de la matriz
+     */
+    public void drawCells(Graphics g, byte[] cells, int rows, int cols)
+    {
+        for(int row = 0; row < rows; row++) {
+            for(int col = 0; col < cols; col++) {
+                drawCell(g, col, row, cells[row * cols + col]);
+            }
+        }
+    }
+
+    /**
+     * Pinta en 3D y de un determinado color una celda, copiando la celda
+     * ya pintada de ese color
+     * @param g El contexto gráfico donde se pinta
+     * @param col La columna de la celda
+     * @param row La fila de la celda
+     * @param color El color de la celda
+     */
+    public void drawRaised(Graphics g, int col, int row, Color color)
+    {
+        g.drawImage(sprite(color, true), col * xScale, row * yScale, null);
+    }
+
+    /**
+     * Pinta en 2D y de un determinado color una celda, copiando la celda
+     * ya pintada de ese color
+     * @param g El contexto gráfico donde se pinta
+     * @param col La columna de la celda
+     * @param row La fila de la celda
+     * @param color El color de la celda
+     */
+    public void drawFlat(Graphics g, int col, int row, Color color)
+    {
+        g.drawImage(sprite(color, false), col * xScale, row * yScale, null);
+    }
+
+    /**
+     * Obtiene la imagen de una celda de un color, pintándola la primera vez
+     * que se pide
+     * @param color El color de la celda
+     * @param raised True para la celda en relieve, false para la plana
+     * @return La imagen de la celda
+     */
+    private Image sprite(Color color, boolean raised)
+    {
+        Map<Color, Image> sprites = raised ? raisedSprites : flatSprites;
+        Image sprite = sprites.get(color);
+        if(sprite == null) {
+            int width = Math.max(1, xScale - 1), height = Math.max(1, yScale - 1);
+            if(config != null) {
+                sprite = config.createCompatibleImage(width, height);
+            } else {
+                sprite = new BufferedImage(width, height, imageType);
+            }
+            Graphics sg = sprite.getGraphics();
+            sg.setColor(color);
+            if(raised) {
+                sg.fill3DRect(0, 0, width, height, true);
+            } else {
+                sg.fillRect(0, 0, width, height);
+            }
+            sg.dispose();
+            sprites.put(color, sprite);
+        }
+        return sprite;
+    }
+}
@@ -0,0 +1,76 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Detecta en qué paso se separan dos partidas que deberían ir a la par,
+ * comparando las sumas de comprobación que acompañan a las entradas de un
+ * InputLog. Sirve tanto para comparar los registros de dos jugadores como
+ * para verificar una repetición volviendo a simularla desde su semilla.
+ *
+ * Uso: java DesyncDetector registro [otro registro]
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class DesyncDetector
+{
+    /**
+     * Compara dos registros entrada a entrada
+     * @param a Un registro
+     * @param b El otro registro
+     * @return La posición de la primera entrada distinta o con distinta suma,
+     *         o -1 si coinciden en toda la parte común
+     */
+    public static int firstDesync(InputLog a, InputLog b)
+    {
+        if(a.getSeed() != b.getSeed()) {
+            return 0;
+        }
+        int common = Math.min(a.size(), b.size());
+        for(int i = 0; i < common; i++) {
+            if(a.getInput(i) != b.getInput(i) || a.getChecksum(i) != b.getChecksum(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Vuelve a simular las entradas de un registro sobre una matriz nueva
+     * con la misma semilla y comprueba la suma después de cada una
+     * @param log El registro
+     * @return La posición de la primera entrada cuya suma no coincide, o -1
+     */
+    public static int verify(InputLog log)
+    {
+        Grid grid = new Grid(log.getRows(), log.getCols(), log.getSeed());
+        grid.createTetrimino();
+        for(int i = 0; i < log.size(); i++) {
+            InputLog.apply(grid, log.getInput(i));
+            if(grid.getChecksum() != log.getChecksum(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Rutina main que verifica un registro o compara dos
+     */
+    public static void main(String[] args) throws IOException
+    {
+        InputLog log = InputLog.load(new File(args[0]));
+        int desync;
+        if(args.length > 1) {
+            desync = firstDesync(log, InputLog.load(new File(args[1])));
+        } else {
+            desync = verify(log);
+        }
+        if(desync < 0) {
+            System.out.println("Sin desincronización en " + log.size() + " entradas");
+        } else {
+            System.out.println("Desincronización en la entrada " + desync
+                               + " (paso " + log.getTick(desync) + ")");
+        }
+    }
+}
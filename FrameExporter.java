@@ -0,0 +1,608 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * Exporta partidas a secuencias de imágenes sin pantalla, con las celdas
+ * pintadas igual que en la vista del juego (ver CellRenderer) y a
+ * cualquier escala, para hacer vídeos de las repeticiones.
+ *
+ * La exportación es una cadena de tres etapas con sus propios hilos:
+ *
+ * - simulación: cada hilo toma una partida entera y reproduce sus
+ *   entradas o jugadas, copiando las celdas de cada fotograma;
+ * - pintado: cada hilo pinta las celdas en la imagen del fotograma;
+ * - codificación: cada hilo escribe el fotograma como PNG, o sus píxeles
+ *   en crudo en el fichero de la partida para un codificador externo.
+ *
+ * Los fotogramas (celdas, imagen y contexto gráfico) se reservan una sola
+ * vez al construir el exportador y circulan entre las etapas por colas; la
+ * simulación espera a que vuelva un fotograma libre, así que la memoria
+ * está acotada y la etapa más lenta marca el ritmo sin que se acumule
+ * trabajo. Cada fotograma lleva su posición en la partida, de modo que
+ * pueden pintarse y escribirse en cualquier orden.
+ *
+ * Los fotogramas en crudo son bgr24, uno detrás de otro, y se convierten
+ * a vídeo por ejemplo con:
+ *
+ *   ffmpeg -f rawvideo -pix_fmt bgr24 -s ANCHOxALTO -r 60 -i partida.bgr partida.mp4
+ *
+ * Uso: java FrameExporter repeticiones salida [partidas] [png|raw] [escala] [hilos]
+ *
+ * donde repeticiones es el directorio de un ReplayArchive (se exportan sus
+ * mejores partidas) o el fichero de un InputLog.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class FrameExporter
+{
+    // formatos de salida: un PNG por fotograma o un fichero en crudo por partida
+    public static final int PNG = 0, RAW = 1;
+    // fotogramas en circulación por cada hilo
+    private static final int FRAMES_PER_THREAD = 2;
+    // marca que para a un hilo de pintado o de codificación
+    private static final Frame STOP = new Frame();
+
+    /**
+     * Partida que se exporta, fotograma a fotograma. Se usa desde un solo
+     * hilo de simulación.
+     */
+    public interface FrameSource
+    {
+        /**
+         * @return El nombre de la partida, que da nombre a su salida
+         */
+        String getName();
+
+        /**
+         * @return Las filas de la matriz
+         */
+        int getRows();
+
+        /**
+         * @return Las columnas de la matriz
+         */
+        int getCols();
+
+        /**
+         * Avanza al siguiente fotograma
+         * @param cells Donde se copian sus celdas, con el formato del Grid
+         * @return False si la partida ya no tiene más fotogramas
+         */
+        boolean next(byte[] cells);
+    }
+
+    // dimensiones de la matriz, escala y formato de salida
+    private final int rows, cols, scale, format;
+    // hilos de cada etapa
+    private final int simulators, renderers, encoders;
+    // los fotogramas reservados
+    private final Frame[] frames;
+
+    /**
+     * Construye un exportador
+     * @param rows Las filas de la matriz de las partidas
+     * @param cols Las columnas de la matriz de las partidas
+     * @param scale Los píxeles de cada celda
+     * @param format PNG o RAW
+     * @param threads Los hilos, que se reparten entre las etapas
+     */
+    public FrameExporter(int rows, int cols, int scale, int format, int threads)
+    {
+        if(format != PNG && format != RAW) {
+            throw new IllegalArgumentException("Formato de salida desconocido: " + format);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.scale = scale;
+        this.format = format;
+        // codificar un PNG cuesta bastante más que simular o pintar un fotograma
+        simulators = Math.max(1, threads / 4);
+        renderers = Math.max(1, threads / 4);
+        encoders = Math.max(1, threads - simulators - renderers);
+        frames = new Frame[FRAMES_PER_THREAD * (simulators + renderers + encoders)];
+        for(int i = 0; i < frames.length; i++) {
+            frames[i] = new Frame(rows * cols, getImageWidth(), getImageHeight());
+        }
+    }
+
+    /**
+     * @return La anchura de las imágenes en píxeles
+     */
+    public int getImageWidth()
+    {
+        return cols * scale;
+    }
+
+    /**
+     * @return La altura de las imágenes en píxeles
+     */
+    public int getImageHeight()
+    {
+        return rows * scale;
+    }
+
+    /**
+     * Exporta unas partidas: cada una a un directorio con sus PNG o a un
+     * fichero .bgr con sus fotogramas en crudo, con el nombre de la partida
+     * @param games Las partidas
+     * @param directory El directorio de salida
+     * @return El número de fotogramas exportados
+     * @throws IOException si falla alguna escritura; las demás partidas se exportan igualmente
+     */
+    public long export(final List<FrameSource> games, final File directory) throws IOException
+    {
+        for(FrameSource game : games) {
+            if(game.getRows() != rows || game.getCols() != cols) {
+                throw new IllegalArgumentException("La partida " + game.getName() + " no mide "
+                                                   + rows + "x" + cols);
+            }
+        }
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("No se puede crear el directorio " + directory);
+        }
+        final ArrayBlockingQueue<Frame> free = new ArrayBlockingQueue<Frame>(frames.length);
+        free.addAll(Arrays.asList(frames));
+        final ArrayBlockingQueue<Frame> toRender = new ArrayBlockingQueue<Frame>(frames.length + renderers);
+        final ArrayBlockingQueue<Frame> toEncode = new ArrayBlockingQueue<Frame>(frames.length + encoders);
+        final AtomicInteger nextGame = new AtomicInteger();
+        final AtomicLong exported = new AtomicLong();
+        final IOException[] failure = new IOException[1];
+
+        Thread[] simulating = new Thread[simulators];
+        for(int i = 0; i < simulators; i++) {
+            simulating[i] = start("FrameExporter-simulación-" + i, new Runnable() {
+                public void run() {
+                    int game;
+                    while((game = nextGame.getAndIncrement()) < games.size()) {
+                        try {
+                            simulate(games.get(game), directory, free, toRender);
+                        } catch(IOException e) {
+                            fail(failure, e);
+                        }
+                    }
+                }
+            });
+        }
+        Thread[] rendering = new Thread[renderers];
+        for(int i = 0; i < renderers; i++) {
+            rendering[i] = start("FrameExporter-pintado-" + i, new Runnable() {
+                public void run() {
+                    CellRenderer cells = new CellRenderer(scale, scale, BufferedImage.TYPE_3BYTE_BGR);
+                    Frame frame;
+                    while((frame = take(toRender)) != STOP) {
+                        cells.drawCells(frame.graphics, frame.cells, rows, cols);
+                        put(toEncode, frame);
+                    }
+                }
+            });
+        }
+        Thread[] encoding = new Thread[encoders];
+        for(int i = 0; i < encoders; i++) {
+            encoding[i] = start("FrameExporter-codificación-" + i, new Runnable() {
+                public void run() {
+                    Frame frame;
+                    while((frame = take(toEncode)) != STOP) {
+                        try {
+                            frame.output.write(frame);
+                            exported.incrementAndGet();
+                        } catch(IOException e) {
+                            fail(failure, e);
+                        }
+                        try {
+                            frame.output.release();
+                        } catch(IOException e) {
+                            fail(failure, e);
+                        }
+                        frame.output = null;
+                        put(free, frame);
+                    }
+                }
+            });
+        }
+        // cada etapa se para cuando la anterior ha terminado y ha vaciado su cola
+        join(simulating);
+        for(int i = 0; i < renderers; i++) {
+            put(toRender, STOP);
+        }
+        join(rendering);
+        for(int i = 0; i < encoders; i++) {
+            put(toEncode, STOP);
+        }
+        join(encoding);
+        synchronized(failure) {
+            if(failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        return exported.get();
+    }
+
+    /**
+     * Reproduce una partida en el hilo de simulación, pasando cada
+     * fotograma a la etapa de pintado
+     */
+    private void simulate(FrameSource game, File directory, ArrayBlockingQueue<Frame> free,
+                          ArrayBlockingQueue<Frame> toRender) throws IOException
+    {
+        Output output = new Output(directory, game.getName(), format);
+        int index = 0;
+        try {
+            while(true) {
+                Frame frame = take(free);
+                if(!game.next(frame.cells)) {
+                    put(free, frame);
+                    break;
+                }
+                frame.index = index++;
+                frame.output = output;
+                output.outstanding.incrementAndGet();
+                put(toRender, frame);
+            }
+        } finally {
+            // el último en soltar la salida la cierra: la simulación o la codificación
+            output.release();
+        }
+    }
+
+    /**
+     * Crea y arranca un hilo de una etapa
+     */
+    private static Thread start(String name, Runnable stage)
+    {
+        Thread thread = new Thread(stage, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Espera a que acaben los hilos de una etapa
+     */
+    private static void join(Thread[] threads)
+    {
+        for(Thread thread : threads) {
+            boolean interrupted = false;
+            while(thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Saca un fotograma de una cola, esperando si está vacía
+     */
+    private static Frame take(ArrayBlockingQueue<Frame> queue)
+    {
+        while(true) {
+            try {
+                return queue.take();
+            } catch(InterruptedException e) {
+                // los hilos de la exportación no se interrumpen; se sigue esperando
+            }
+        }
+    }
+
+    /**
+     * Mete un fotograma en una cola; nunca espera, porque todas las colas
+     * caben todos los fotogramas
+     */
+    private static void put(ArrayBlockingQueue<Frame> queue, Frame frame)
+    {
+        if(!queue.offer(frame)) {
+            throw new IllegalStateException("Cola de fotogramas llena");
+        }
+    }
+
+    /**
+     * Guarda el primer error de escritura
+     */
+    private static void fail(IOException[] failure, IOException e)
+    {
+        synchronized(failure) {
+            if(failure[0] == null) {
+                failure[0] = e;
+            }
+        }
+    }
+
+    /**
+     * Partida que reproduce un registro de entradas de una partida jugada,
+     * con un fotograma para el estado inicial y otro cada cierto número de
+     * entradas (cada entrada de gravedad es un fotograma del motor, así que
+     * con 1 el vídeo va a la velocidad del juego)
+     * @param name El nombre de la partida
+     * @param log El registro de entradas
+     * @param inputsPerFrame Las entradas entre dos fotogramas
+     * @return La partida
+     */
+    public static FrameSource replay(final String name, final InputLog log, final int inputsPerFrame)
+    {
+        return new FrameSource() {
+            // el grid se crea en el primer fotograma y se suelta en el último,
+            // para no tener miles a la vez
+            private Grid grid;
+            private int input;
+            private boolean done;
+
+            public String getName() {
+                return name;
+            }
+
+            public int getRows() {
+                return log.getRows();
+            }
+
+            public int getCols() {
+                return log.getCols();
+            }
+
+            public boolean next(byte[] cells) {
+                if(done) {
+                    return false;
+                } else if(grid == null) {
+                    grid = new Grid(log.getRows(), log.getCols(), log.getSeed());
+                    grid.createTetrimino();
+                } else if(input >= log.size()) {
+                    grid = null;
+                    done = true;
+                    return false;
+                } else {
+                    int end = Math.min(log.size(), input + inputsPerFrame);
+                    while(input < end) {
+                        InputLog.apply(grid, log.getInput(input++));
+                    }
+                }
+                grid.copyCells(cells);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Partida que reproduce una repetición de un ReplayArchive, con un
+     * fotograma para el tablero vacío y otro cada cierto número de piezas.
+     * Las repeticiones solo guardan la jugada de cada pieza, así que los
+     * bloques se colorean según la pieza de la que vienen al apilarlos.
+     * @param name El nombre de la partida
+     * @param replay La repetición
+     * @param cols Las columnas del tablero de la partida
+     * @param piecesPerFrame Las piezas entre dos fotogramas
+     * @return La partida
+     */
+    public static FrameSource replay(final String name, final ArchivedReplay replay, final int cols,
+                                     final int piecesPerFrame)
+    {
+        return new FrameSource() {
+            // las celdas de la partida, creadas en el primer fotograma y
+            // soltadas en el último
+            private byte[] stack;
+            private int tick;
+            private boolean done;
+
+            public String getName() {
+                return name;
+            }
+
+            public int getRows() {
+                return replay.getRows();
+            }
+
+            public int getCols() {
+                return cols;
+            }
+
+            public boolean next(byte[] cells) {
+                if(done) {
+                    return false;
+                } else if(stack == null) {
+                    stack = new byte[replay.getRows() * cols];
+                } else if(tick >= replay.getTicks()) {
+                    stack = null;
+                    done = true;
+                    return false;
+                } else {
+                    int end = Math.min(replay.getTicks(), tick + piecesPerFrame);
+                    for(; tick < end; tick++) {
+                        stack(stack, replay.getRows(), cols, replay.getType(tick), replay.getPlacement(tick));
+                    }
+                }
+                System.arraycopy(stack, 0, cells, 0, stack.length);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Apila una pieza en unas celdas con el formato del Grid, como
+     * Board.place, y elimina las filas completas
+     */
+    private static void stack(byte[] cells, int rows, int cols, int type, int placement)
+    {
+        int rot = Placement.rot(placement), x = Placement.x(placement), y = Placement.y(placement);
+        byte block = (byte) (Palette.pieceIndex(type) | Grid.STACKED);
+        for(int i = PieceTable.minRow(type, rot); i <= PieceTable.maxRow(type, rot); i++) {
+            int mask = PieceTable.rowMask(type, rot, i);
+            for(int bit = 0; mask >>> bit != 0; bit++) {
+                if((mask & (1 << bit)) != 0) {
+                    cells[(y + i) * cols + bit + x] = block;
+                }
+            }
+        }
+        int target = rows - 1;
+        for(int row = rows - 1; row >= 0; row--) {
+            boolean full = true;
+            for(int col = 0; col < cols && full; col++) {
+                full = cells[row * cols + col] != Palette.EMPTY;
+            }
+            if(!full) {
+                System.arraycopy(cells, row * cols, cells, target-- * cols, cols);
+            }
+        }
+        Arrays.fill(cells, 0, (target + 1) * cols, (byte) Palette.EMPTY);
+    }
+
+    /**
+     * Un fotograma reutilizable: las celdas que copia la simulación, la
+     * imagen donde se pintan con su contexto gráfico y sus píxeles
+     */
+    private static class Frame
+    {
+        // celdas con el formato del Grid
+        final byte[] cells;
+        // imagen, contexto gráfico para pintarla y sus píxeles bgr24
+        final BufferedImage image;
+        final Graphics graphics;
+        final byte[] pixels;
+        // posición en su partida y salida de la partida
+        int index;
+        Output output;
+
+        /**
+         * Construye la marca de parada
+         */
+        Frame()
+        {
+            cells = null;
+            image = null;
+            graphics = null;
+            pixels = null;
+        }
+
+        /**
+         * Reserva un fotograma
+         */
+        Frame(int cellCount, int width, int height)
+        {
+            cells = new byte[cellCount];
+            image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            graphics = image.getGraphics();
+            pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        }
+    }
+
+    /**
+     * La salida de una partida: un directorio de PNG o un fichero en crudo,
+     * que se cierra cuando se han escrito todos sus fotogramas
+     */
+    private static class Output
+    {
+        // directorio de los PNG, o null
+        private final File folder;
+        // fichero de los fotogramas en crudo, o null
+        private final FileChannel channel;
+        // fotogramas pendientes de escribir, más uno mientras se simula
+        final AtomicInteger outstanding = new AtomicInteger(1);
+
+        /**
+         * Crea la salida de una partida
+         */
+        Output(File directory, String name, int format) throws IOException
+        {
+            if(format == PNG) {
+                folder = new File(directory, name);
+                if(!folder.isDirectory() && !folder.mkdirs()) {
+                    throw new IOException("No se puede crear el directorio " + folder);
+                }
+                channel = null;
+            } else {
+                folder = null;
+                RandomAccessFile raf = new RandomAccessFile(new File(directory, name + ".bgr"), "rw");
+                channel = raf.getChannel();
+                channel.truncate(0);
+            }
+        }
+
+        /**
+         * Escribe un fotograma ya pintado en su sitio
+         */
+        void write(Frame frame) throws IOException
+        {
+            if(channel != null) {
+                ByteBuffer out = ByteBuffer.wrap(frame.pixels);
+                long position = (long) frame.index * frame.pixels.length;
+                while(out.hasRemaining()) {
+                    channel.write(out, position + out.position());
+                }
+            } else {
+                File file = new File(folder, String.format("frame-%06d.png", frame.index));
+                if(!ImageIO.write(frame.image, "png", file)) {
+                    throw new IOException("No hay codificador PNG");
+                }
+            }
+        }
+
+        /**
+         * Suelta la salida un fotograma o la simulación, cerrándola si ya no queda nada
+         */
+        void release() throws IOException
+        {
+            if(outstanding.decrementAndGet() == 0 && channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Rutina main que exporta las mejores partidas de un archivo de
+     * repeticiones, o un registro de entradas, y muestra el ritmo conseguido
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 2) {
+            System.err.println("Uso: java FrameExporter repeticiones salida [partidas] [png|raw] [escala] [hilos]");
+            System.exit(1);
+        }
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int format = args.length > 3 && args[3].equals("raw") ? RAW : PNG;
+        int scale = args.length > 4 ? Integer.parseInt(args[4]) : 15;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+        List<FrameSource> games = new ArrayList<FrameSource>();
+        int rows, cols;
+        if(input.isDirectory()) {
+            ReplayArchive archive = new ReplayArchive(input);
+            for(int entry : archive.topScores(count)) {
+                ArchivedReplay replay = archive.open(entry);
+                games.add(replay(String.format("partida-%d", replay.getGameId()), replay, Grid.DEFAULT_COLS, 1));
+            }
+            archive.close();
+            rows = games.isEmpty() ? Grid.DEFAULT_ROWS : games.get(0).getRows();
+            cols = Grid.DEFAULT_COLS;
+        } else {
+            InputLog log = InputLog.load(input);
+            games.add(replay(input.getName(), log, 1));
+            rows = log.getRows();
+            cols = log.getCols();
+        }
+        FrameExporter exporter = new FrameExporter(rows, cols, scale, format, threads);
+        long start = System.nanoTime();
+        long frames = exporter.export(games, output);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d partidas, %d fotogramas de %dx%d en %.2f s: %.0f fotogramas/s con %d hilos%n",
+                          games.size(), frames, exporter.getImageWidth(), exporter.getImageHeight(),
+                          seconds, frames / seconds, threads);
+    }
+}
@@ -0,0 +1,298 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Motor del juego en su propio hilo. Solo este hilo toca el Grid: las
+ * entradas del jugador llegan por una cola sin bloqueos, el motor las
+ * aplica al comienzo de cada fotograma, avanza la gravedad y entrega una
+ * GameSnapshot inmutable al oyente, que la deja en una única casilla (ver
+ * GameView.publish). El pintor siempre coge la última copia completa, así
+ * que un pintado lento no retrasa la lógica ni la lógica deja ver un
+ * tablero a medio mover.
+ *
+ * El motor puede ir más deprisa o más despacio que el reloj (setTimeScale):
+ * la lógica sigue avanzando de fotograma en fotograma, así que la partida
+ * es la misma a cualquier velocidad, y solo cambia cuánto dura cada uno.
+ * Por encima del tiempo real se publica como mucho una copia por
+ * fotograma de pantalla, con las filas cambiadas de los intermedios, y
+ * por debajo cada copia lleva lo necesario para que la vista interpole
+ * la caída de la pieza entre una y otra.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class GameEngine
+{
+    // duración de un fotograma (60 por segundo)
+    public static final long FRAME_NANOS = 1000000000L / 60;
+    // fotogramas de retraso a partir de los que no se intenta recuperar el ritmo
+    private static final int MAX_CATCH_UP = 5;
+    // velocidades mínima y máxima respecto al tiempo real, y la de sin límite
+    public static final double MIN_TIME_SCALE = 0.1, MAX_TIME_SCALE = 100;
+    public static final double UNBOUNDED = Double.POSITIVE_INFINITY;
+
+    // la matriz del juego, solo accesible desde el hilo del motor
+    private final Grid grid;
+    // las entradas de la partida con la suma de comprobación de cada una
+    private final InputLog inputLog;
+    // entradas pendientes y tareas que deben ejecutarse en el hilo del motor
+    private final ConcurrentLinkedQueue<Integer> inputs = new ConcurrentLinkedQueue<Integer>();
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    // entradas encoladas en total
+    private final AtomicInteger queued = new AtomicInteger();
+    // a quién se avisa de cada copia nueva y de que la partida acabó
+    private final Listener listener;
+    // medidas de rendimiento donde se registra cada paso, o null
+    private final PerformanceMonitor monitor;
+    // si la gravedad está en marcha y si la partida acabó
+    private volatile boolean running, over;
+    // velocidad respecto al tiempo real y duración real de un fotograma (0 sin límite)
+    private volatile double timeScale = 1;
+    private volatile long framePeriod = FRAME_NANOS;
+    // el hilo del motor, creado al arrancar por primera vez
+    private Thread thread;
+    // fotograma actual, entradas aplicadas y última copia (solo en el hilo del motor)
+    private long frame;
+    private int applied;
+    private GameSnapshot last;
+    // filas cambiadas desde la última copia, según los avisos del grid
+    private int changedRows;
+    // si hay cambios sin publicar y cuándo se publicó la última copia
+    private boolean pending;
+    private long publishedNanos;
+
+    /**
+     * Oyente de los sucesos del motor. Se llama desde el hilo del motor.
+     */
+    public interface Listener
+    {
+        /**
+         * Hay una copia nueva del estado
+         * @param snapshot La copia
+         */
+        void snapshotPublished(GameSnapshot snapshot);
+
+        /**
+         * La pila llegó arriba y la gravedad se ha detenido
+         */
+        void gameOver();
+    }
+
+    /**
+     * Crea el motor de una partida
+     * @param grid El grid, que a partir de ahora solo debe tocar el motor
+     * @param inputLog El registro de entradas de la partida
+     * @param listener El oyente de los sucesos del motor
+     * @param monitor Las medidas de rendimiento, o null
+     */
+    public GameEngine(Grid grid, InputLog inputLog, Listener listener, PerformanceMonitor monitor)
+    {
+        this.grid = grid;
+        this.inputLog = inputLog;
+        this.listener = listener;
+        this.monitor = monitor;
+        grid.addChangeListener(new Grid.ChangeListener() {
+            public void cellsChanged(int rows) {
+                changedRows |= rows;
+            }
+            public void linesCleared(int count) {
+            }
+            public void pieceSpawned(int type) {
+            }
+        });
+    }
+
+    /**
+     * Pone en marcha la gravedad, arrancando el hilo si hace falta
+     */
+    public synchronized void start()
+    {
+        running = true;
+        if(thread == null) {
+            thread = new Thread(new Runnable() {
+                public void run() {
+                    loop();
+                }
+            }, "tetris-engine");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Detiene la gravedad; las entradas del jugador se siguen aplicando
+     */
+    public void pause()
+    {
+        running = false;
+    }
+
+    /**
+     * Encola una entrada del jugador para el próximo fotograma
+     * @param input La entrada, una de las constantes de InputLog
+     * @return El número de entradas encoladas hasta ahora, incluida esta
+     */
+    public int input(int input)
+    {
+        inputs.add(input);
+        return queued.incrementAndGet();
+    }
+
+    /**
+     * Ejecuta una tarea en el hilo del motor al comienzo del próximo
+     * fotograma, para poder modificar el grid sin carreras
+     * @param task La tarea
+     */
+    public void execute(Runnable task)
+    {
+        tasks.add(task);
+    }
+
+    /**
+     * @return El número de entradas encoladas hasta ahora
+     */
+    public int getQueued()
+    {
+        return queued.get();
+    }
+
+    /**
+     * @return El fotograma actual; solo se puede leer desde el hilo del motor
+     */
+    public long getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * Cambia la velocidad del motor respecto al tiempo real. No cambia la
+     * partida, solo lo que dura cada fotograma: las entradas y la gravedad
+     * se aplican igual y el registro de entradas se repite igual.
+     * @param scale La velocidad, entre MIN_TIME_SCALE y MAX_TIME_SCALE
+     *        (se recorta a ese rango), o UNBOUNDED para calcular los
+     *        fotogramas sin esperas, como en las partidas entre bots
+     */
+    public void setTimeScale(double scale)
+    {
+        if(Double.isNaN(scale)) {
+            throw new IllegalArgumentException("Velocidad no válida: " + scale);
+        }
+        if(scale == UNBOUNDED) {
+            timeScale = UNBOUNDED;
+            framePeriod = 0;
+        } else {
+            timeScale = Math.max(MIN_TIME_SCALE, Math.min(MAX_TIME_SCALE, scale));
+            framePeriod = Math.round(FRAME_NANOS / timeScale);
+        }
+    }
+
+    /**
+     * @return La velocidad del motor respecto al tiempo real, o UNBOUNDED
+     */
+    public double getTimeScale()
+    {
+        return timeScale;
+    }
+
+    /**
+     * @return El registro de entradas de la partida
+     */
+    public InputLog getInputLog()
+    {
+        return inputLog;
+    }
+
+    /**
+     * Bucle del hilo del motor: un fotograma cada FRAME_NANOS dividido
+     * por la velocidad, o uno tras otro si no tiene límite
+     */
+    private void loop()
+    {
+        long next = System.nanoTime();
+        long period = FRAME_NANOS;
+        while(true) {
+            step();
+            // con la gravedad parada no tiene sentido girar sin esperas
+            long current = running ? framePeriod : FRAME_NANOS;
+            if(current != period) {
+                // el cambio de velocidad cuenta desde ahora y no desde el fotograma anterior
+                period = current;
+                next = System.nanoTime();
+            }
+            next += period;
+            long wait = next - System.nanoTime();
+            if(wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if(-wait > MAX_CATCH_UP * Math.max(period, FRAME_NANOS)) {
+                // tras una parada larga no se encadenan fotogramas para recuperar
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Calcula un fotograma y publica su copia si ha cambiado algo visible.
+     * Un fotograma sin cambios en el tablero no reserva memoria: la única
+     * reserva es la copia nueva (y sus celdas si han cambiado). Es visible
+     * en el paquete para que AllocationCheck lo mida sin el hilo del motor.
+     */
+    void step()
+    {
+        long start = System.nanoTime();
+        boolean changed = false;
+        Runnable task;
+        while((task = tasks.poll()) != null) {
+            task.run();
+            changed = true;
+        }
+        Integer input;
+        while((input = inputs.poll()) != null) {
+            apply(input);
+            applied++;
+            changed = true;
+        }
+        if(running && !over) {
+            frame++;
+            apply(InputLog.GRAVITY);
+            changed = true;
+            if(grid.isTopOut()) {
+                over = true;
+                running = false;
+                listener.gameOver();
+            }
+        }
+        // la copia lleva el ritmo del motor para que la vista interpole la caída
+        boolean advancing = running && !over;
+        long period = advancing ? framePeriod : 0;
+        // los fotogramas en que la pieza no llega a bajar una fila no generan copia
+        if(!pending && (changed || (last != null && last.getFrameNanos() != period))) {
+            pending = last == null || !last.shows(grid, applied, period);
+        }
+        // por encima del tiempo real se salta la copia de los fotogramas que no llegarían a
+        // pintarse: se publica cuando el siguiente ya caería en otro fotograma de pantalla
+        if(pending && (!advancing || period >= FRAME_NANOS
+                       || start - publishedNanos >= FRAME_NANOS - period)) {
+            last = new GameSnapshot(grid, last, frame, applied, changedRows, period);
+            changedRows = 0;
+            pending = false;
+            publishedNanos = start;
+            if(monitor != null) {
+                monitor.recordTick(System.nanoTime() - start);
+            }
+            listener.snapshotPublished(last);
+        }
+    }
+
+    /**
+     * Aplica una entrada al grid y la registra con la suma del estado resultante
+     */
+    private void apply(int input)
+    {
+        InputLog.apply(grid, input);
+        inputLog.record(input, grid.getChecksum());
+        if(input == InputLog.RESET) {
+            over = false;
+        }
+    }
+}
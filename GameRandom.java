@@ -0,0 +1,77 @@
+/**
+ * Generador de números aleatorios del juego (SplitMix64). A diferencia de
+ * java.util.Random su estado es un único long que se puede leer y
+ * restaurar, de modo que dos partidas con la misma semilla generan las
+ * mismas piezas y el estado del generador puede formar parte de la suma
+ * de comprobación de cada paso.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class GameRandom
+{
+    // incremento de la secuencia de Weyl de SplitMix64
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    // el estado del generador
+    private long state;
+
+    /**
+     * Crea un generador con una semilla dada
+     * @param seed La semilla
+     */
+    public GameRandom(long seed)
+    {
+        state = seed;
+    }
+
+    /**
+     * @return El siguiente long de la secuencia
+     */
+    public long nextLong()
+    {
+        state += GAMMA;
+        return mix(state);
+    }
+
+    /**
+     * Obtiene un entero en el intervalo [0, bound)
+     * @param bound El límite superior excluido, mayor que 0
+     * @return El entero obtenido
+     */
+    public int nextInt(int bound)
+    {
+        // los 31 bits altos son los de mejor calidad
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * @return El estado actual del generador
+     */
+    public long getState()
+    {
+        return state;
+    }
+
+    /**
+     * Restaura un estado leído antes con getState
+     * @param state El estado
+     */
+    public void setState(long state)
+    {
+        this.state = state;
+    }
+
+    /**
+     * Mezcla los bits de un valor (el finalizador de SplitMix64), útil
+     * también para obtener claves de hash bien repartidas
+     * @param z El valor
+     * @return El valor mezclado
+     */
+    public static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
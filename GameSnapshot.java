@@ -0,0 +1,234 @@
+import java.awt.Color;
+
+/**
+ * Copia inmutable del estado visible del juego en un fotograma, que el
+ * hilo del motor publica y la vista pinta sin tocar el Grid. Como nunca
+ * cambia, el pintor puede usarla sin bloqueos aunque el motor ya esté
+ * calculando el fotograma siguiente.
+ *
+ * Construirla es barato: las celdas se copian de una vez como los bytes
+ * del Grid (un índice de la Palette por celda), y si no han cambiado desde
+ * la copia anterior se comparte su array en lugar de volver a copiarlas.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class GameSnapshot
+{
+    // dimensiones de la matriz
+    private final int rows, cols;
+    // celdas fila a fila con el formato del Grid; compartidas entre copias
+    private final byte[] cells;
+    // suma de las celdas del Grid cuando se copiaron
+    private final long cellHash;
+    // fotograma del motor y entradas aplicadas hasta esta copia
+    private final long frame;
+    private final int inputs;
+    // nivel y líneas hechas
+    private final int level, lines;
+    // filas con celdas cambiadas desde la copia anterior (bit r = fila r)
+    private final int changedRows;
+    // lo que la pieza se ha acercado a la fila siguiente y las filas que baja por fotograma
+    private final float fallProgress, fallSpeed;
+    // duración real de un fotograma del motor, o 0 si la gravedad no avanza al ritmo del reloj
+    private final long frameNanos;
+    // momento en que se hizo la copia, de System.nanoTime
+    private final long nanoTime;
+
+    /**
+     * Copia el estado de un grid sin saber qué filas han cambiado
+     * @param grid El grid
+     * @param previous La copia anterior, cuyas celdas se reutilizan si no
+     *        han cambiado, o null
+     * @param frame El fotograma del motor
+     * @param inputs Las entradas aplicadas hasta ahora
+     */
+    public GameSnapshot(Grid grid, GameSnapshot previous, long frame, int inputs)
+    {
+        this(grid, previous, frame, inputs, -1);
+    }
+
+    /**
+     * Copia el estado de un grid
+     * @param grid El grid
+     * @param previous La copia anterior, cuyas celdas se reutilizan si no
+     *        han cambiado, o null
+     * @param frame El fotograma del motor
+     * @param inputs Las entradas aplicadas hasta ahora
+     * @param changedRows Las filas con celdas cambiadas desde la copia
+     *        anterior (bit r = fila r), según los avisos del grid
+     */
+    public GameSnapshot(Grid grid, GameSnapshot previous, long frame, int inputs, int changedRows)
+    {
+        this(grid, previous, frame, inputs, changedRows, 0);
+    }
+
+    /**
+     * Copia el estado de un grid con lo necesario para interpolar la caída
+     * de la pieza hasta la copia siguiente
+     * @param grid El grid
+     * @param previous La copia anterior, cuyas celdas se reutilizan si no
+     *        han cambiado, o null
+     * @param frame El fotograma del motor
+     * @param inputs Las entradas aplicadas hasta ahora
+     * @param changedRows Las filas con celdas cambiadas desde la copia
+     *        anterior (bit r = fila r), según los avisos del grid
+     * @param frameNanos La duración real de un fotograma del motor, o 0 si
+     *        la gravedad está parada o avanza sin límite de velocidad
+     */
+    public GameSnapshot(Grid grid, GameSnapshot previous, long frame, int inputs, int changedRows, long frameNanos)
+    {
+        rows = grid.getHeight();
+        cols = grid.getWidth();
+        cellHash = grid.getCellHash();
+        if(previous != null && previous.cellHash == cellHash
+           && previous.rows == rows && previous.cols == cols) {
+            cells = previous.cells;
+        } else {
+            cells = new byte[rows * cols];
+            grid.copyCells(cells);
+        }
+        this.frame = frame;
+        this.inputs = inputs;
+        level = grid.getLevel();
+        lines = grid.getLines();
+        this.changedRows = changedRows;
+        this.frameNanos = frameNanos;
+        if(frameNanos > 0) {
+            fallProgress = (float) grid.getFallProgress();
+            fallSpeed = (float) grid.getFallSpeed();
+        } else {
+            fallProgress = 0;
+            fallSpeed = 0;
+        }
+        nanoTime = System.nanoTime();
+    }
+
+    /**
+     * Comprueba si esta copia ya muestra el estado visible de un grid, para
+     * no crear otra igual en cada fotograma
+     * @param grid El grid
+     * @param inputs Las entradas aplicadas hasta ahora
+     * @param frameNanos La duración real de un fotograma del motor
+     * @return True si las celdas, el nivel, las líneas, las entradas y el
+     *         ritmo del motor coinciden
+     */
+    public boolean shows(Grid grid, int inputs, long frameNanos)
+    {
+        return cellHash == grid.getCellHash() && level == grid.getLevel()
+               && lines == grid.getLines() && this.inputs == inputs
+               && this.frameNanos == frameNanos
+               && rows == grid.getHeight() && cols == grid.getWidth();
+    }
+
+    /**
+     * @return Las filas de la matriz
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * @return Las columnas de la matriz
+     */
+    public int getCols()
+    {
+        return cols;
+    }
+
+    /**
+     * @param row La fila
+     * @param col La columna
+     * @return El color del bloque de esa celda, o null si está vacía
+     */
+    public Color getCellColor(int row, int col)
+    {
+        return Palette.color(cells[row * cols + col]);
+    }
+
+    /**
+     * @param row La fila
+     * @param col La columna
+     * @return True si en esa celda hay un bloque de la pieza que cae
+     */
+    public boolean isFalling(int row, int col)
+    {
+        byte cell = cells[row * cols + col];
+        return cell != Palette.EMPTY && (cell & Grid.STACKED) == 0;
+    }
+
+    /**
+     * Calcula cuánto ha bajado la pieza desde las celdas de esta copia,
+     * suponiendo que el motor sigue a su ritmo, para pintar su caída entre
+     * copias cuando el motor va más despacio que la pantalla
+     * @param nanoTime El momento del pintado, de System.nanoTime
+     * @return La fracción de fila que ha bajado la pieza, entre 0 y 1
+     */
+    public double fallOffset(long nanoTime)
+    {
+        if(frameNanos == 0 || fallSpeed == 0) {
+            return 0;
+        }
+        double frames = (double) (nanoTime - this.nanoTime) / frameNanos;
+        return Math.max(0, Math.min(1, fallProgress + frames * fallSpeed));
+    }
+
+    /**
+     * @return Las filas por fotograma del motor que baja la pieza, o 0 si
+     *         no cae o la copia no lleva el ritmo del motor
+     */
+    public double getFallSpeed()
+    {
+        return fallSpeed;
+    }
+
+    /**
+     * @return La duración real de un fotograma del motor, o 0 si la
+     *         gravedad está parada o avanza sin límite de velocidad
+     */
+    public long getFrameNanos()
+    {
+        return frameNanos;
+    }
+
+    /**
+     * @return Las filas con celdas cambiadas desde la copia anterior (bit r = fila r)
+     */
+    public int getChangedRows()
+    {
+        return changedRows;
+    }
+
+    /**
+     * @return El fotograma del motor en que se hizo la copia
+     */
+    public long getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * @return Las entradas del jugador aplicadas hasta esta copia
+     */
+    public int getInputs()
+    {
+        return inputs;
+    }
+
+    /**
+     * @return El nivel
+     */
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * @return Las líneas hechas
+     */
+    public int getLines()
+    {
+        return lines;
+    }
+}
@@ -0,0 +1,431 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Guarda y restaura el estado completo de una partida en un fichero
+ * binario pequeño (unos 380 bytes con el tablero por defecto), para poder
+ * continuar una partida tras cerrar o perder el terminal y para que los
+ * bots guarden puntos de control de muchas partidas sin coste.
+ *
+ * Formato (big-endian): MAGIC, versión, longitud del estado, CRC32 del
+ * estado y el estado: el del grid tal y como lo escribe Grid.writeState y
+ * después la puntuación, los fotogramas jugados y la semilla de la partida
+ * (ver SavedGame), para que una partida continuada siga sumando a su
+ * puntuación y se guarde entera al acabar. El fichero se
+ * escribe entero con una sola escritura del FileChannel en un fichero
+ * temporal que se lleva al disco y después reemplaza al anterior, así que
+ * una caída durante el guardado, incluso un corte de luz, deja el estado
+ * anterior intacto. Writer hace esa escritura en un hilo propio, para
+ * guardar desde el hilo del juego sin esperar al disco.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class GameStateFile
+{
+    // identificador del formato y versión actual
+    private static final int MAGIC = 0x54535431;
+    public static final int VERSION = 2;
+    // bytes de la cabecera
+    public static final int HEADER_BYTES = 4 + 4 + 4 + 4;
+    // bytes de la puntuación, los fotogramas y la semilla tras el grid
+    private static final int PROGRESS_BYTES = 4 + 8 + 8;
+
+    /**
+     * Constructor privado: solo tiene métodos de clase
+     */
+    private GameStateFile()
+    {
+    }
+
+    /**
+     * @param grid El grid
+     * @return Los bytes que ocupa su estado con la cabecera
+     */
+    public static int encodedBytes(Grid grid)
+    {
+        return HEADER_BYTES + grid.stateBytes() + PROGRESS_BYTES;
+    }
+
+    /**
+     * Escribe el estado de un grid con su cabecera en un buffer, por
+     * ejemplo para guardar muchas partidas seguidas en un mismo fichero,
+     * sin puntuación, fotogramas ni semilla
+     * @param grid El grid
+     * @param out El buffer, con encodedBytes libres
+     */
+    public static void encode(Grid grid, ByteBuffer out)
+    {
+        encode(new SavedGame(grid, 0, 0, 0), out);
+    }
+
+    /**
+     * Escribe el estado de una partida con su cabecera en un buffer
+     * @param game La partida
+     * @param out El buffer, con encodedBytes del grid libres
+     */
+    public static void encode(SavedGame game, ByteBuffer out)
+    {
+        int start = out.position();
+        out.position(start + HEADER_BYTES);
+        game.grid.writeState(out);
+        out.putInt(game.score).putLong(game.frames).putLong(game.seed);
+        int end = out.position();
+        int length = end - start - HEADER_BYTES;
+        out.putInt(start, MAGIC);
+        out.putInt(start + 4, VERSION);
+        out.putInt(start + 8, length);
+        out.putInt(start + 12, crc(out, start + HEADER_BYTES, length));
+    }
+
+    /**
+     * Lee un estado escrito con encode
+     * @param in El buffer, en la posición de la cabecera
+     * @return El grid restaurado
+     * @throws IOException si el formato no se reconoce o el estado está dañado
+     */
+    public static Grid decode(ByteBuffer in) throws IOException
+    {
+        return decodeGame(in).getGrid();
+    }
+
+    /**
+     * Lee una partida escrita con encode
+     * @param in El buffer, en la posición de la cabecera
+     * @return La partida restaurada
+     * @throws IOException si el formato no se reconoce o el estado está dañado
+     */
+    public static SavedGame decodeGame(ByteBuffer in) throws IOException
+    {
+        if(in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+            throw new IOException("Formato de estado de partida no reconocido");
+        }
+        int version = in.getInt();
+        if(version != VERSION) {
+            throw new IOException("Versión de estado de partida no soportada: " + version);
+        }
+        int length = in.getInt();
+        int crc = in.getInt();
+        if(length < 0 || length > in.remaining()) {
+            throw new IOException("Estado de partida incompleto");
+        }
+        if(crc(in, in.position(), length) != crc) {
+            throw new IOException("Estado de partida dañado: la suma CRC32 no coincide");
+        }
+        int end = in.position() + length;
+        try {
+            Grid grid = Grid.readState(in);
+            SavedGame game = new SavedGame(grid, in.getInt(), in.getLong(), in.getLong());
+            if(in.position() != end) {
+                throw new IOException("Longitud de estado de partida incorrecta");
+            }
+            return game;
+        } catch(IllegalArgumentException e) {
+            throw new IOException("Estado de partida no válido: " + e.getMessage());
+        } catch(BufferUnderflowException e) {
+            throw new IOException("Estado de partida incompleto");
+        }
+    }
+
+    /**
+     * Guarda el estado de un grid en un fichero, sin puntuación,
+     * fotogramas ni semilla
+     * @param grid El grid
+     * @param file El fichero
+     */
+    public static void save(Grid grid, File file) throws IOException
+    {
+        save(new SavedGame(grid, 0, 0, 0), file);
+    }
+
+    /**
+     * Guarda el estado de una partida en un fichero, reemplazando el
+     * anterior solo cuando el nuevo está escrito entero
+     * @param game La partida
+     * @param file El fichero
+     */
+    public static void save(SavedGame game, File file) throws IOException
+    {
+        write(encode(game), file);
+    }
+
+    /**
+     * Escribe el estado de una partida con su cabecera en un buffer nuevo
+     * @param game La partida
+     * @return El buffer, listo para leer
+     */
+    public static ByteBuffer encode(SavedGame game)
+    {
+        ByteBuffer out = ByteBuffer.allocate(encodedBytes(game.grid));
+        encode(game, out);
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Escribe un estado ya codificado en un fichero temporal, lo lleva al
+     * disco y reemplaza con él al fichero
+     * @param state El estado con su cabecera
+     * @param file El fichero
+     */
+    private static void write(ByteBuffer state, File file) throws IOException
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            while(state.hasRemaining()) {
+                channel.write(state);
+            }
+            // los datos deben llegar al disco antes que el cambio de nombre
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee el estado guardado con save
+     * @param file El fichero
+     * @return El grid restaurado
+     */
+    public static Grid load(File file) throws IOException
+    {
+        return loadGame(file).getGrid();
+    }
+
+    /**
+     * Lee la partida guardada con save
+     * @param file El fichero
+     * @return La partida restaurada
+     */
+    public static SavedGame loadGame(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer in = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+            while(in.hasRemaining()) {
+                if(channel.read(in) < 0) {
+                    break;
+                }
+            }
+            in.flip();
+            return decodeGame(in);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Calcula la suma CRC32 de una parte de un buffer sin moverlo
+     */
+    private static int crc(ByteBuffer buffer, int offset, int length)
+    {
+        ByteBuffer part = buffer.duplicate();
+        part.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(part);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Guarda una partida en un fichero desde un hilo propio, para que quien
+     * juega (el hilo del motor) solo pague codificar el estado en memoria y
+     * nunca espere al disco. Si se piden varios guardados antes de que el
+     * hilo llegue a ellos solo se escribe el último.
+     */
+    public static class Writer
+    {
+        // peticiones especiales de la cola: borrar el fichero y acabar
+        private static final ByteBuffer DELETE = ByteBuffer.allocate(0);
+        private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+        // el fichero de la partida
+        private final File file;
+        // estados codificados y peticiones pendientes, en orden
+        private final LinkedBlockingQueue<ByteBuffer> pending = new LinkedBlockingQueue<ByteBuffer>();
+        // el hilo de escritura
+        private final Thread writer;
+        // primer error de escritura, que se lanza en close
+        private IOException failure;
+        // si se ha cerrado el escritor
+        private boolean closed;
+
+        /**
+         * Crea el escritor de un fichero y arranca su hilo
+         * @param file El fichero de la partida
+         */
+        public Writer(File file)
+        {
+            this.file = file;
+            writer = new Thread(new Runnable() {
+                public void run() {
+                    writeLoop();
+                }
+            }, "GameStateFile");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        /**
+         * Codifica la partida en el hilo que llama y encola su escritura
+         * @param game La partida
+         */
+        public void save(SavedGame game)
+        {
+            pending.add(encode(game));
+        }
+
+        /**
+         * Encola el borrado del fichero, detrás de los guardados pendientes
+         */
+        public void delete()
+        {
+            pending.add(DELETE);
+        }
+
+        /**
+         * Escribe lo pendiente y para el hilo de escritura
+         * @throws IOException si alguna escritura falló
+         */
+        public void close() throws IOException
+        {
+            synchronized(this) {
+                if(closed) {
+                    return;
+                }
+                closed = true;
+            }
+            pending.add(CLOSE);
+            try {
+                writer.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized(this) {
+                if(failure != null) {
+                    throw failure;
+                }
+            }
+        }
+
+        /**
+         * Bucle del hilo de escritura: de todo lo que haya en la cola solo
+         * cuenta la última petición, un estado que escribir o un borrado
+         */
+        private void writeLoop()
+        {
+            List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+            boolean running = true;
+            while(running) {
+                try {
+                    batch.add(pending.take());
+                } catch(InterruptedException e) {
+                    break;
+                }
+                pending.drainTo(batch);
+                ByteBuffer last = null;
+                for(ByteBuffer buffer : batch) {
+                    if(buffer == CLOSE) {
+                        running = false;
+                    } else {
+                        last = buffer;
+                    }
+                }
+                batch.clear();
+                try {
+                    if(last == DELETE) {
+                        file.delete();
+                    } else if(last != null) {
+                        write(last, file);
+                    }
+                } catch(IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        /**
+         * Guarda el primer error de escritura para lanzarlo en close
+         */
+        private synchronized void fail(IOException e)
+        {
+            if(failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Una partida guardada: el grid y lo que lleva jugado, que no está en
+     * el grid
+     */
+    public static class SavedGame
+    {
+        // el estado del juego
+        private final Grid grid;
+        // la puntuación y los fotogramas jugados hasta ahora
+        private final int score;
+        private final long frames;
+        // la semilla con la que empezó la partida
+        private final long seed;
+
+        /**
+         * @param grid El estado del juego
+         * @param score La puntuación hasta ahora
+         * @param frames Los fotogramas jugados hasta ahora
+         * @param seed La semilla con la que empezó la partida
+         */
+        public SavedGame(Grid grid, int score, long frames, long seed)
+        {
+            this.grid = grid;
+            this.score = score;
+            this.frames = frames;
+            this.seed = seed;
+        }
+
+        /**
+         * @return El estado del juego
+         */
+        public Grid getGrid()
+        {
+            return grid;
+        }
+
+        /**
+         * @return La puntuación hasta ahora
+         */
+        public int getScore()
+        {
+            return score;
+        }
+
+        /**
+         * @return Los fotogramas jugados hasta ahora
+         */
+        public long getFrames()
+        {
+            return frames;
+        }
+
+        /**
+         * @return La semilla con la que empezó la partida
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+    }
+}
@@ -1,30 +1,77 @@
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
+import java.awt.image.BufferedImage;
 import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntBinaryOperator;
 
 /**
- * Representa una vista grfica de la pantalla de juego, como una matriz
+ * Representa una vista gráfica de la pantalla de juego, como una matriz
  * de 25 filas por 12 columnas, en la cual cada celda puede almacenar un objeto.
- * Cada posicin de la matriz se representa como un rectngulo con un color
- * definido, en funcin de si estn vacas (null) o no.
+ * Cada posición de la matriz se representa como un rectángulo con un color
+ * definido, en función de si están vacías (null) o no.
  * Se puede establecer un color para cada tipo de objeto mediante setColor.
+ * Con F3 se muestra u oculta encima de la matriz una capa con medidas de
+ * rendimiento (ver PerformanceMonitor).
+ * La vista no lee el Grid al pintar: pinta la última GameSnapshot que se
+ * le ha publicado, que puede venir de otro hilo. Las copias publicadas
+ * entre dos fotogramas de pantalla se juntan en un solo pintado, como mucho
+ * uno por fotograma según el límite de fotogramas por segundo (por defecto
+ * el refresco de la pantalla), y solo se vuelven a dibujar las filas que
+ * han cambiado según las copias.
+ * Para que el primer fotograma llegue antes a pantalla, la barra de menú
+ * no se crea hasta que se ha pintado el primer fotograma.
+ * Para ver muchas partidas a la vez en una sola ventana está WallView.
  * 
- * @author Octavio Martnez
+ * @author Octavio Martínez
  * @version 16.05.2011
  */
 public class GameView extends JFrame
 {
-    // Usamos el color negro por defecto para posiciones vacas
-    private final Color EMPTY_COLOR = Color.black;
+    // Usamos el color negro por defecto para posiciones vacías
+    private final Color EMPTY_COLOR = CellRenderer.EMPTY_COLOR;
     // instancia de la clase interna que proporciona la forma de pintar la matriz
     private GridView gridView;
-    // elementos del menu del juego
-    private JMenuItem start, stop, resume, reset, quit;
+    // órdenes de los elementos del menú del juego, que son también sus textos
+    public static final String START = "Start", PAUSE = "Pause", RESUME = "Resume", RESET = "Reset", QUIT = "Quit";
+    // oyente de los elementos del menú, o null
+    private ActionListener menuListener;
+    // la barra de menú, que se crea después del primer fotograma
+    private JMenuBar menuBar;
+    // momento en que se pintó el primer fotograma con una copia del estado, o 0
+    private volatile long firstFrameNanos;
+    // las medidas de rendimiento que muestra la capa de rendimiento
+    private PerformanceMonitor monitor;
+    // oyentes avisados cada vez que se pinta un fotograma
+    private FrameListener[] frameListeners = new FrameListener[0];
+    // propiedad del sistema con el límite de fotogramas por segundo
+    private static final String FPS_PROPERTY = "tetris.fps";
+    // límite de fotogramas por segundo si no se conoce el refresco de la pantalla
+    private static final int DEFAULT_FPS = 60;
+    // casilla única con la última copia publicada del estado, que el pintor
+    // recoge, y las filas cambiadas desde el último pintado; sin cerrojos,
+    // para que el hilo del motor nunca espere al hilo de eventos
+    private final AtomicReference<GameSnapshot> latest = new AtomicReference<GameSnapshot>();
+    private final AtomicInteger pendingRows = new AtomicInteger();
+    // une las filas cambiadas de dos copias
+    static final IntBinaryOperator OR_ROWS = new IntBinaryOperator() {
+        public int applyAsInt(int rows, int more) {
+            return rows | more;
+        }
+    };
+    // duración mínima entre dos pintados y momento del último pintado
+    private volatile long frameNanos;
+    private volatile long lastPaintNanos;
+    // si ya hay un pintado pedido que aún no se ha hecho
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // temporizador que pide el pintado cuando llega el siguiente fotograma de pantalla
+    private final javax.swing.Timer frameTimer;
 
     /**
-     * Construye una vista grfica de la pantalla de juego
+     * Construye una vista gráfica de la pantalla de juego
      * @param height La altura de la matriz de juego.
      * @param width  La anchura de la matriz de juego.
      */
@@ -33,136 +80,284 @@ public class GameView extends JFrame
         setTitle("Tetris");
         setLocation(800, 50);
         
+        monitor = new PerformanceMonitor();
         gridView = new GridView(height, width);
+        setFrameCap(defaultFrameCap());
+        frameTimer = new javax.swing.Timer(0, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                gridView.repaint();
+            }
+        });
+        frameTimer.setRepeats(false);
+        
+        // F3 muestra u oculta la capa de rendimiento
+        addKeyListener(new KeyAdapter() {
+            public void keyPressed(KeyEvent e) {
+                if(e.getKeyCode() == KeyEvent.VK_F3) {
+                    gridView.toggleOverlay();
+                }
+            }
+        });
         
         Container contents = getContentPane();
         contents.add(gridView, BorderLayout.CENTER);
         
-        makeMenuBar();
+        // la barra de menú no hace falta para el primer fotograma y se crea justo después
+        addFrameListener(new FrameListener() {
+            public void framePainted(long nanoTime) {
+                if(menuBar == null && firstFrameNanos != 0) {
+                    menuBar = new JMenuBar();
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            makeMenuBar();
+                        }
+                    });
+                }
+            }
+        });
         
         pack();
         setVisible(true);
     }
     
     /**
-     * Crea una barra de men con opciones bsicas del juego
+     * Crea una barra de menú con opciones básicas del juego
      */
     private void makeMenuBar()
     {
-        JMenuBar menuBar = new JMenuBar();
         setJMenuBar(menuBar);
         
         JMenu game = new JMenu("Game");
         menuBar.add(game);
         
-        start = new JMenuItem("Start");
-        game.add(start);
-        
-        stop = new JMenuItem("Pause");
-        game.add(stop);
-        
-        resume = new JMenuItem("Resume");
-        game.add(resume);
-        
-        reset = new JMenuItem("Reset");
-        game.add(reset);
-        
-        quit = new JMenuItem("Quit");
-        game.add(quit);
+        for(String command : new String[] {START, PAUSE, RESUME, RESET, QUIT}) {
+            JMenuItem item = new JMenuItem(command);
+            item.addActionListener(new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    if(menuListener != null) {
+                        menuListener.actionPerformed(e);
+                    }
+                }
+            });
+            game.add(item);
+        }
+        // la ventana crece lo que ocupa la barra para no encoger la matriz
+        pack();
     }
     
     /**
-     * Acceso al elemento de men Start
+     * Establece el oyente de los elementos del menú, que distingue el
+     * elemento elegido por la orden del suceso (START, PAUSE, RESUME,
+     * RESET o QUIT)
+     * @param listener El oyente
      */
-    public JMenuItem getStart()
+    public void setMenuListener(ActionListener listener)
     {
-        return start;
+        menuListener = listener;
     }
-    
+
     /**
-     * Acceso al elemento de men Stop
+     * @return El momento, de System.nanoTime, en que se pintó el primer
+     *         fotograma con el estado del juego, o 0 si aún no se ha pintado
      */
-    public JMenuItem getStop()
+    public long getFirstFrameNanos()
     {
-        return stop;
+        return firstFrameNanos;
     }
-    
+
     /**
-     * Acceso al elemento de men Resume
+     * Acceso a las medidas de rendimiento, para que el juego registre
+     * sus pasos y las entradas del jugador
      */
-    public JMenuItem getResume()
+    public PerformanceMonitor getMonitor()
     {
-        return resume;
+        return monitor;
     }
-    
+
     /**
-     * Acceso al elemento de men Reset
+     * Añade un oyente que se avisa cada vez que un fotograma llega a pantalla
+     * @param listener El oyente
      */
-    public JMenuItem getReset()
+    public void addFrameListener(FrameListener listener)
     {
-        return reset;
+        FrameListener[] listeners = new FrameListener[frameListeners.length + 1];
+        System.arraycopy(frameListeners, 0, listeners, 0, frameListeners.length);
+        listeners[frameListeners.length] = listener;
+        frameListeners = listeners;
     }
-    
+
     /**
-     * Acceso al elemento de men Quit
+     * Oyente de los fotogramas pintados, por ejemplo para medir la latencia
+     * desde una entrada hasta que se ve su efecto
      */
-    public JMenuItem getQuit()
+    public interface FrameListener
     {
-        return quit;
+        /**
+         * Se llama en el hilo de eventos justo después de pintar un fotograma
+         * @param nanoTime El momento en que se terminó de pintar, de System.nanoTime
+         */
+        void framePainted(long nanoTime);
     }
 
     /**
      * Muestra en pantalla el estado actual de la matriz que representa
      * la pantalla de juego diferenciando por colores entre celdas
-     * vacas y ocupadas por bloques
+     * vacías y ocupadas por bloques
      * @param grid La matriz sobre la cual mostramos su estado actual.
      */
     public void showStatus(Grid grid)
     {
-        // hacemos visible el frame si an no lo es
+        // hacemos visible el frame si aún no lo es
         if(!isVisible())
             setVisible(true);
             
-        gridView.preparePaint();
+        publish(new GameSnapshot(grid, null, 0, 0));
+    }
+
+    /**
+     * Deja una copia del estado en la casilla del pintor, sustituyendo la
+     * anterior si aún no se había pintado, y pide un repintado. Se puede
+     * llamar desde cualquier hilo.
+     * @param snapshot La copia del estado
+     */
+    public void publish(GameSnapshot snapshot)
+    {
+        // primero la copia y después sus filas: quien recoja las filas ya
+        // ve esta copia o una posterior
+        latest.set(snapshot);
+        pendingRows.getAndAccumulate(snapshot.getChangedRows(), OR_ROWS);
+        // si ya hay un pintado pedido, recogerá también esta copia
+        requestPaint();
+    }
+
+    /**
+     * Pide un pintado para el siguiente fotograma de pantalla, si no hay
+     * ya uno pedido. Se puede llamar desde cualquier hilo.
+     */
+    private void requestPaint()
+    {
+        if(scheduled.compareAndSet(false, true)) {
+            long wait = lastPaintNanos + frameNanos - System.nanoTime();
+            if(wait <= 0) {
+                // llamamos implícitamente a nuestro paintComponent desde aquí para pintar el estado
+                gridView.repaint();
+            } else {
+                frameTimer.setInitialDelay((int) ((wait + 999999) / 1000000));
+                frameTimer.restart();
+            }
+        }
+    }
+
+    /**
+     * Cambia el límite de fotogramas por segundo que se pintan
+     * @param fps Los fotogramas por segundo, como mucho
+     */
+    public void setFrameCap(int fps)
+    {
+        frameNanos = 1000000000L / Math.max(1, fps);
+    }
+
+    /**
+     * @return El límite de fotogramas por segundo de la propiedad tetris.fps,
+     *         o si no se ha dado el refresco de la pantalla
+     */
+    static int defaultFrameCap()
+    {
+        return Integer.getInteger(FPS_PROPERTY, refreshRate());
+    }
+
+    /**
+     * @return El refresco de la pantalla en hercios, o DEFAULT_FPS si no se conoce
+     */
+    private static int refreshRate()
+    {
+        if(GraphicsEnvironment.isHeadless()) {
+            return DEFAULT_FPS;
+        }
+        int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                                      .getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_FPS : rate;
+    }
+
+    /**
+     * Acceso a la última copia del estado que llegó a pantalla
+     * @return La copia, o null si aún no se ha pintado ninguna
+     */
+    public GameSnapshot getPainted()
+    {
+        return gridView.drawn;
+    }
 
-        for(int row = 0; row < grid.getHeight(); row++) {
-            for(int col = 0; col < grid.getWidth(); col++) {
+    /**
+     * Dibuja una copia del estado en la imagen interna de la matriz
+     * diferenciando por colores entre celdas vacías y ocupadas por bloques
+     * @param snapshot La copia que dibujamos
+     * @param rows Las filas que se dibujan (bit r = fila r); las demás ya
+     *        están dibujadas
+     * @param withoutPiece True para dejar vacías las celdas de la pieza que
+     *        cae, que se pinta aparte en su posición interpolada
+     */
+    private void render(GameSnapshot snapshot, int rows, boolean withoutPiece)
+    {
+        for(int row = 0; row < snapshot.getRows(); row++) {
+            if(row < 32 && (rows & (1 << row)) == 0) {
+                continue;
+            }
+            for(int col = 0; col < snapshot.getCols(); col++) {
+                Color color = snapshot.getCellColor(row, col);
                 // si hay un bloque en esa celda lo pintamos de su color y en 3D
-                if(grid.getObjectAt(row, col) != null) {
-                    gridView.drawMark3D(col, row, grid.getCellColor(row, col));
+                if(color != null && !(withoutPiece && snapshot.isFalling(row, col))) {
+                    gridView.drawMark3D(col, row, color);
                 // si no hay bloque pintamos negro y en 2D    
                 } else {
                     gridView.drawMark2D(col, row, EMPTY_COLOR);
                 }
             }
         }
-        // llamamos implcitamente a nuestro paintComponent desde aqu para pintar el estado
-        gridView.repaint();
     }
     
     /**
      * Clase interna de GameView que proporciona una forma de mostrar
-     * en pantalla la matriz de juego rectangular, pintando rectngulos
-     * de igual tamao para cada celda de la matriz (posicin: row-col)
-     * y diferenciando por medio de colores las celdas vacas
-     * (en negro) de las que estn ocupadas por bloques de las piezas del
+     * en pantalla la matriz de juego rectangular, pintando rectángulos
+     * de igual tamaño para cada celda de la matriz (posición: row-col)
+     * y diferenciando por medio de colores las celdas vacías
+     * (en negro) de las que están ocupadas por bloques de las piezas del
      * tetris (en otros colores).
      */
     private class GridView extends JPanel
     {
-        // la escala de los rectngulos que vamos a pintar
+        // la escala de los rectángulos que vamos a pintar
         private final int GRID_VIEW_SCALING_FACTOR = 15;
+        // tamaño de la capa de rendimiento, alto de una línea de texto y de la gráfica
+        private final int OVERLAY_WIDTH = 176, OVERLAY_HEIGHT = 124, LINE_HEIGHT = 12, GRAPH_HEIGHT = 32;
+        // colores de la capa de rendimiento
+        private final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170);
+        private final Color OVERLAY_TEXT = Color.white, OVERLAY_GRAPH = Color.green, OVERLAY_BUDGET = Color.red;
         
         // la anchura y altura de la matriz que vamos a pintar
         private int gridWidth, gridHeight;
-        // las proporciones horizontales y verticales de los rectngulos
+        // las proporciones horizontales y verticales de los rectángulos
         private int xScale, yScale;
-        // las dimensiones 2D del rectngulo de juego
+        // las dimensiones 2D del rectángulo de juego
         Dimension size;
-        // el contexto grfico necesario para pintar en los componentes
+        // el contexto gráfico necesario para pintar en los componentes
         private Graphics g;
         // la imagen que vamos a pintar
         private Image gridImage;
+        // la copia del estado dibujada en gridImage, o null si hay que dibujarla de nuevo
+        private GameSnapshot drawn;
+        // pintor de las celdas al tamaño actual, con las celdas ya pintadas de cada color
+        private CellRenderer cells;
+        // si gridImage tiene dibujada la copia sin la pieza que cae, para interpolar su caída
+        private boolean withoutPiece;
+        // si se muestra la capa de rendimiento
+        private boolean overlay;
+        // imagen, texto y puntos de la gráfica de la capa, reservados una sola vez
+        private BufferedImage overlayImage;
+        private char[] text = new char[32];
+        private int[] graphX = new int[PerformanceMonitor.HISTORY], graphY = new int[PerformanceMonitor.HISTORY];
+        // resumen del monitor que hay pintado en overlayImage, o -1 si hay que repintarlo
+        private int overlayWindow = -1;
 
         /**
          * Construye un nuevo componente interno de la matriz dibujable.
@@ -174,11 +369,25 @@ public class GameView extends JFrame
             gridHeight = height;
             gridWidth = width;
             size = new Dimension(0, 0);
+            overlayImage = new BufferedImage(OVERLAY_WIDTH, OVERLAY_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            for(int i = 0; i < graphX.length; i++) {
+                graphX[i] = 4 + (OVERLAY_WIDTH - 8) * (graphX.length - 1 - i) / (graphX.length - 1);
+            }
         }
 
         /**
-         * Dice al gestor de la interfaz grfica el tamao del rea del juego
-         * @return El rea total en 2D del rectngulo de juego.
+         * Muestra u oculta la capa de rendimiento
+         */
+        public void toggleOverlay()
+        {
+            overlay = !overlay;
+            overlayWindow = -1;
+            repaint();
+        }
+
+        /**
+         * Dice al gestor de la interfaz gráfica el tamaño del área del juego
+         * @return El área total en 2D del rectángulo de juego.
          */
         public Dimension getPreferredSize()
         {
@@ -188,16 +397,17 @@ public class GameView extends JFrame
 
         /**
          * Inicializa las variables necesarias para poder pintar
-         * la matriz y tiene en cuenta si hemos modificado el tamao
+         * la matriz y tiene en cuenta si hemos modificado el tamaño
          * para escalarlo adecuadamente.
          */
         public void preparePaint()
         {
-            // si el tamao ha cambiado
+            // si el tamaño ha cambiado
             if(!size.equals(getSize())) {
                 size = getSize();
                 gridImage = gridView.createImage(size.width, size.height);
                 g = gridImage.getGraphics();
+                drawn = null;
 
                 xScale = size.width / gridWidth;
                 if(xScale < 1) {
@@ -207,52 +417,223 @@ public class GameView extends JFrame
                 if(yScale < 1) {
                     yScale = GRID_VIEW_SCALING_FACTOR;
                 }
+                // las celdas pintadas tienen el tamaño anterior
+                cells = new CellRenderer(xScale, yScale, getGraphicsConfiguration());
             }
         }
-        
+
         /**
-         * Pinta en 3D y de un determinado color cada rectngulo que representa
-         * una posicin de la matriz
-         * @param x La coordenada x de la posicin
-         * @param y La coordenada y de la posicin
+         * Pinta en 3D y de un determinado color cada rectángulo que representa
+         * una posición de la matriz, copiando la celda ya pintada de ese color
+         * @param x La coordenada x de la posición
+         * @param y La coordenada y de la posición
          * @param color El color designado para esa celda.
          */
         public void drawMark3D(int x, int y, Color color)
         {
-            g.setColor(color);
-            g.fill3DRect(x * xScale, y * yScale, xScale-1, yScale-1, true);
+            cells.drawRaised(g, x, y, color);
         }
         
         /**
-         * Pinta en 2D de un determinado color cada rectngulo que representa
-         * una posicin de la matriz
-         * @param x La coordenada x de la posicin
-         * @param y La coordenada y de la posicin
+         * Pinta en 2D de un determinado color cada rectángulo que representa
+         * una posición de la matriz, copiando la celda ya pintada de ese color
+         * @param x La coordenada x de la posición
+         * @param y La coordenada y de la posición
          * @param color El color designado para esa celda.
          */
         public void drawMark2D(int x, int y, Color color)
         {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+            cells.drawFlat(g, x, y, color);
         }
 
         /**
          * Copia el componente que representa la imagen interna 
          * dibujable de la matriz a la pantalla
          * para ser mostrado y le pinta.
-         * @param g El objeto de contexto grfico que permite dibujar en los componentes
+         * @param g El objeto de contexto gráfico que permite dibujar en los componentes
          */
         public void paintComponent(Graphics g)
         {
+            long paintStart = System.nanoTime();
+            lastPaintNanos = paintStart;
+            // las copias que se publiquen desde ahora piden otro pintado
+            scheduled.set(false);
+            // recogemos las filas cambiadas y después la última copia, y la
+            // dibujamos si es nueva o tiene filas pendientes; si se cruza con
+            // una publicación, como mucho se redibujan filas de más
+            int rows = pendingRows.getAndSet(0);
+            GameSnapshot snapshot = latest.get();
+            // con el motor más lento que la pantalla la pieza baja poco a poco entre copias
+            boolean interpolate = snapshot != null && snapshot.getFrameNanos() > GameEngine.FRAME_NANOS;
+            if(snapshot != null) {
+                preparePaint();
+                if(interpolate != withoutPiece) {
+                    drawn = null;
+                    withoutPiece = interpolate;
+                }
+                if(snapshot != drawn || rows != 0) {
+                    // sin nada dibujado al tamaño actual se dibujan todas las filas
+                    render(snapshot, drawn == null ? -1 : rows, withoutPiece);
+                    drawn = snapshot;
+                }
+            }
             if(gridImage != null) {
                 Dimension currentSize = getSize();
                 if(size.equals(currentSize)) {
                     g.drawImage(gridImage, 0, 0, null);
-                // Si el tamao del componente ha variado se pinta reescalado.    
+                // Si el tamaño del componente ha variado se pinta reescalado.    
                 } else {
                     g.drawImage(gridImage, 0, 0, currentSize.width, currentSize.height, null);
                 }
+                if(interpolate) {
+                    drawFallingPiece(g, snapshot, paintStart);
+                }
+            }
+            // la capa se pinta después de medir para no contar su propio coste
+            long painted = System.nanoTime();
+            if(firstFrameNanos == 0 && drawn != null) {
+                firstFrameNanos = painted;
+            }
+            monitor.recordFrame(painted - paintStart);
+            if(overlay) {
+                drawOverlay(g);
+            }
+            for(FrameListener listener : frameListeners) {
+                listener.framePainted(painted);
+            }
+        }
+
+        /**
+         * Pinta la pieza que cae desplazada la fracción de fila que ha
+         * bajado desde la copia y, si sigue cayendo, pide el pintado del
+         * siguiente fotograma aunque el motor no publique otra copia
+         * @param g El contexto gráfico del componente
+         * @param snapshot La copia dibujada sin la pieza
+         * @param nanoTime El momento del pintado, de System.nanoTime
+         */
+        private void drawFallingPiece(Graphics g, GameSnapshot snapshot, long nanoTime)
+        {
+            double offset = snapshot.fallOffset(nanoTime);
+            int dy = (int) (offset * yScale);
+            g.translate(0, dy);
+            for(int row = 0; row < snapshot.getRows(); row++) {
+                for(int col = 0; col < snapshot.getCols(); col++) {
+                    if(snapshot.isFalling(row, col)) {
+                        cells.drawRaised(g, col, row, snapshot.getCellColor(row, col));
+                    }
+                }
+            }
+            g.translate(0, -dy);
+            if(snapshot.getFallSpeed() > 0 && offset < 1) {
+                requestPaint();
+            }
+        }
+
+        /**
+         * Pinta la capa de rendimiento en la esquina superior izquierda. El
+         * texto solo cambia una vez por segundo, así que se pinta en una
+         * imagen reservada de antemano y en cada fotograma solo se copia esa
+         * imagen y se traza la gráfica sobre arrays también reservados.
+         * @param g El contexto gráfico del componente
+         */
+        private void drawOverlay(Graphics g)
+        {
+            if(overlayWindow != monitor.getWindows()) {
+                overlayWindow = monitor.getWindows();
+                paintOverlayText();
             }
+            g.drawImage(overlayImage, 0, 0, null);
+
+            // gráfica de los últimos fotogramas, con la línea del presupuesto a la mitad
+            int bottom = OVERLAY_HEIGHT - 4;
+            long scale = 2 * PerformanceMonitor.FRAME_BUDGET_NANOS;
+            for(int i = 0; i < graphY.length; i++) {
+                long nanos = Math.min(monitor.getFrameHistory(i), scale);
+                graphY[i] = bottom - (int) (nanos * GRAPH_HEIGHT / scale);
+            }
+            g.setColor(OVERLAY_BUDGET);
+            g.drawLine(4, bottom - GRAPH_HEIGHT / 2, OVERLAY_WIDTH - 4, bottom - GRAPH_HEIGHT / 2);
+            g.setColor(OVERLAY_GRAPH);
+            g.drawPolyline(graphX, graphY, graphY.length);
+        }
+
+        /**
+         * Pinta el texto de la capa con el último resumen del monitor
+         */
+        private void paintOverlayText()
+        {
+            Graphics2D og = overlayImage.createGraphics();
+            og.setComposite(AlphaComposite.Src);
+            og.setColor(OVERLAY_BACKGROUND);
+            og.fillRect(0, 0, OVERLAY_WIDTH, OVERLAY_HEIGHT);
+            og.setColor(OVERLAY_TEXT);
+            int y = LINE_HEIGHT;
+            int n = appendMillis(appendText(0, "tick  "), monitor.getTickNanos());
+            og.drawChars(text, 0, appendText(n, " ms"), 4, y);
+            n = appendMillis(appendText(0, "frame "), monitor.getFrameNanos());
+            og.drawChars(text, 0, appendText(n, " ms"), 4, y += LINE_HEIGHT);
+            n = appendNumber(appendText(0, "fps   "), monitor.getFps());
+            og.drawChars(text, 0, n, 4, y += LINE_HEIGHT);
+            n = appendNumber(appendText(0, "input "), monitor.getInputLatencyMillis());
+            og.drawChars(text, 0, appendText(n, " ms"), 4, y += LINE_HEIGHT);
+            n = appendNumber(appendText(0, "gc    "), monitor.getGcPauses());
+            n = appendNumber(appendText(n, " pausas, "), monitor.getGcMillis());
+            og.drawChars(text, 0, appendText(n, " ms"), 4, y += LINE_HEIGHT);
+            n = appendNumber(appendText(0, "alloc "), monitor.getAllocationRate() / 1024);
+            og.drawChars(text, 0, appendText(n, " KB/s"), 4, y += LINE_HEIGHT);
+            int bottleneck = monitor.getBottleneck();
+            if(bottleneck == PerformanceMonitor.CPU) {
+                n = appendText(0, "limita: CPU");
+            } else if(bottleneck == PerformanceMonitor.RENDER) {
+                n = appendText(0, "limita: pintado");
+            } else if(bottleneck == PerformanceMonitor.GC) {
+                n = appendText(0, "limita: GC");
+            } else {
+                n = appendText(0, "OK");
+            }
+            og.drawChars(text, 0, n, 4, y += LINE_HEIGHT);
+            og.dispose();
+        }
+
+        /**
+         * Copia un texto en el buffer de la capa
+         * @return La posición siguiente al texto copiado
+         */
+        private int appendText(int pos, String s)
+        {
+            s.getChars(0, s.length(), text, pos);
+            return pos + s.length();
+        }
+
+        /**
+         * Escribe un número entero no negativo en el buffer de la capa
+         * @return La posición siguiente al número
+         */
+        private int appendNumber(int pos, long value)
+        {
+            int digits = 1;
+            for(long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for(int i = pos + digits - 1; i >= pos; i--) {
+                text[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+            return pos + digits;
+        }
+
+        /**
+         * Escribe unos nanosegundos como milisegundos con dos decimales
+         * @return La posición siguiente al número
+         */
+        private int appendMillis(int pos, long nanos)
+        {
+            long hundredths = (nanos + 5000) / 10000;
+            pos = appendNumber(pos, hundredths / 100);
+            text[pos++] = '.';
+            text[pos++] = (char) ('0' + hundredths / 10 % 10);
+            text[pos++] = (char) ('0' + hundredths % 10);
+            return pos;
         }
     }
 }
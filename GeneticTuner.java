@@ -0,0 +1,405 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Herramienta que ajusta los pesos de la heurística de los bots mediante
+ * un algoritmo genético. Cada individuo es un vector de pesos que juega
+ * varias partidas completas sin interfaz, y su aptitud es la media de
+ * líneas hechas. Las partidas se reparten entre todos los procesadores
+ * con un ForkJoinPool.
+ *
+ * Toda la aleatoriedad se deriva de la semilla inicial y del número de
+ * generación, de modo que una ejecución se puede reproducir exactamente
+ * y continuar desde el fichero de control guardado tras cada generación.
+ *
+ * Uso: java GeneticTuner [semilla] [generaciones] [fichero de control]
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class GeneticTuner
+{
+    // identificador y versión del formato del fichero de control
+    private static final int MAGIC = 0x54475431;
+    private static final int VERSION = 2;
+    // parámetros por defecto del algoritmo
+    public static final int DEFAULT_POPULATION = 100;
+    public static final int DEFAULT_GAMES = 20;
+    public static final int DEFAULT_MAX_PIECES = 500;
+    // proporción de la población que se sustituye en cada generación
+    private static final double REPLACED = 0.3;
+    // tamaño del torneo para elegir los padres
+    private static final int TOURNAMENT = 10;
+    // flujos aleatorios independientes dentro de cada generación
+    private static final int BREEDING = 0, GAMES = 1;
+    // probabilidad y amplitud de las mutaciones
+    private static final double MUTATION_RATE = 0.05;
+    private static final double MUTATION_STEP = 0.2;
+
+    // semilla de la que se deriva toda la ejecución
+    private final long seed;
+    // tamaño de la población, partidas por individuo y piezas por partida
+    private final int population, games, maxPieces;
+    // fichero donde se guarda el estado tras cada generación, o null
+    private final File checkpoint;
+    // pool de hilos para evaluar las partidas
+    private final ForkJoinPool pool;
+
+    // la generación actual
+    private int generation;
+    // los vectores de pesos de la población y su aptitud
+    private double[][] weights;
+    private double[] fitness;
+
+    /**
+     * Construye un ajustador con una población nueva o con la guardada
+     * en el fichero de control si existe
+     * @param seed La semilla de la ejecución
+     * @param population El número de individuos
+     * @param games Las partidas que juega cada individuo por generación
+     * @param maxPieces El límite de piezas de cada partida
+     * @param checkpoint El fichero de control, o null para no guardar
+     */
+    public GeneticTuner(long seed, int population, int games, int maxPieces, File checkpoint)
+        throws IOException
+    {
+        this.seed = seed;
+        this.population = population;
+        this.games = games;
+        this.maxPieces = maxPieces;
+        this.checkpoint = checkpoint;
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        if(checkpoint != null && checkpoint.exists()) {
+            load();
+        } else {
+            generation = 0;
+            weights = new double[population][];
+            fitness = new double[population];
+            Random random = randomFor(-1, BREEDING);
+            for(int i = 0; i < population; i++) {
+                weights[i] = new double[Heuristic.FEATURES];
+                for(int f = 0; f < Heuristic.FEATURES; f++) {
+                    weights[i][f] = random.nextDouble() - 0.5;
+                }
+                normalize(weights[i]);
+            }
+            evaluate(weights, fitness);
+        }
+    }
+
+    /**
+     * Avanza una generación: cría nuevos individuos a partir de los mejores,
+     * los evalúa, sustituye a los peores y guarda el estado
+     */
+    public void nextGeneration() throws IOException
+    {
+        Random random = randomFor(generation, BREEDING);
+        int children = (int) (population * REPLACED);
+        double[][] offspring = new double[children][];
+        for(int i = 0; i < children; i++) {
+            int a = tournament(random);
+            int b = tournament(random);
+            offspring[i] = crossover(weights[a], fitness[a], weights[b], fitness[b]);
+            if(random.nextDouble() < MUTATION_RATE) {
+                int f = random.nextInt(Heuristic.FEATURES);
+                offspring[i][f] += (random.nextDouble() * 2 - 1) * MUTATION_STEP;
+            }
+            normalize(offspring[i]);
+        }
+        double[] childFitness = new double[children];
+        generation++;
+        evaluate(offspring, childFitness);
+
+        // los hijos sustituyen a los peores individuos
+        Integer[] order = new Integer[population];
+        for(int i = 0; i < population; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer x, Integer y) {
+                return Double.compare(fitness[x], fitness[y]);
+            }
+        });
+        for(int i = 0; i < children; i++) {
+            weights[order[i]] = offspring[i];
+            fitness[order[i]] = childFitness[i];
+        }
+        if(checkpoint != null) {
+            save();
+        }
+    }
+
+    /**
+     * @return La generación actual
+     */
+    public int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * @return El índice del mejor individuo de la población
+     */
+    public int getBest()
+    {
+        int best = 0;
+        for(int i = 1; i < population; i++) {
+            if(fitness[i] > fitness[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param index El índice del individuo
+     * @return Una copia de sus pesos
+     */
+    public double[] getWeights(int index)
+    {
+        return weights[index].clone();
+    }
+
+    /**
+     * @param index El índice del individuo
+     * @return Su aptitud (media de líneas por partida)
+     */
+    public double getFitness(int index)
+    {
+        return fitness[index];
+    }
+
+    /**
+     * Detiene los hilos del ajustador
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Genera un Random que solo depende de la semilla y de la generación,
+     * para que la ejecución sea reproducible aunque se reanude
+     * @param round La generación (-1 para la población inicial)
+     * @param stream BREEDING o GAMES, para no mezclar los dos usos
+     */
+    private Random randomFor(int round, int stream)
+    {
+        return new Random((seed * 31 + round) * 2 + stream);
+    }
+
+    /**
+     * Calcula la aptitud de un grupo de individuos jugando sus partidas
+     * en paralelo. Todos los individuos juegan las mismas secuencias de
+     * piezas dentro de una generación para compararlos con justicia.
+     * @param candidates Los pesos de los individuos
+     * @param out El array donde se guarda la aptitud de cada uno
+     */
+    private void evaluate(double[][] candidates, double[] out)
+    {
+        int[] results = new int[candidates.length * games];
+        GameTask[] tasks = new GameTask[results.length];
+        Random random = randomFor(generation, GAMES);
+        long[] gameSeeds = new long[games];
+        for(int g = 0; g < games; g++) {
+            gameSeeds[g] = random.nextLong();
+        }
+        for(int i = 0; i < tasks.length; i++) {
+            tasks[i] = new GameTask(candidates[i / games], gameSeeds[i % games], results, i);
+        }
+        pool.invoke(new BatchTask(tasks));
+        for(int c = 0; c < candidates.length; c++) {
+            long total = 0;
+            for(int g = 0; g < games; g++) {
+                total += results[c * games + g];
+            }
+            out[c] = (double) total / games;
+        }
+    }
+
+    /**
+     * Elige un individuo por torneo entre varios al azar
+     * @return El índice del mejor de los elegidos
+     */
+    private int tournament(Random random)
+    {
+        int best = random.nextInt(population);
+        for(int i = 1; i < TOURNAMENT; i++) {
+            int other = random.nextInt(population);
+            if(fitness[other] > fitness[best]) {
+                best = other;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Combina dos vectores de pesos ponderando por la aptitud de cada padre
+     */
+    private static double[] crossover(double[] a, double fa, double[] b, double fb)
+    {
+        double[] child = new double[Heuristic.FEATURES];
+        double total = fa + fb;
+        double wa = total > 0 ? fa / total : 0.5;
+        for(int f = 0; f < Heuristic.FEATURES; f++) {
+            child[f] = a[f] * wa + b[f] * (1 - wa);
+        }
+        return child;
+    }
+
+    /**
+     * Normaliza un vector de pesos a longitud 1, ya que solo importa su dirección
+     */
+    private static void normalize(double[] w)
+    {
+        double norm = 0;
+        for(double v : w) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if(norm > 0) {
+            for(int f = 0; f < w.length; f++) {
+                w[f] /= norm;
+            }
+        }
+    }
+
+    /**
+     * Guarda el estado en un fichero temporal y lo renombra sobre el de
+     * control, así un corte a mitad de escritura no estropea el anterior
+     */
+    private void save() throws IOException
+    {
+        File tmp = new File(checkpoint.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeInt(generation);
+            out.writeInt(population);
+            out.writeInt(Heuristic.FEATURES);
+            out.writeInt(games);
+            out.writeInt(maxPieces);
+            for(int i = 0; i < population; i++) {
+                for(int f = 0; f < Heuristic.FEATURES; f++) {
+                    out.writeDouble(weights[i][f]);
+                }
+                out.writeDouble(fitness[i]);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Recupera el estado guardado en el fichero de control
+     */
+    private void load() throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint)));
+        try {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Formato de fichero de control no reconocido: " + checkpoint);
+            }
+            if(in.readLong() != seed) {
+                throw new IOException("El fichero de control pertenece a otra semilla: " + checkpoint);
+            }
+            generation = in.readInt();
+            if(in.readInt() != population || in.readInt() != Heuristic.FEATURES) {
+                throw new IOException("El fichero de control tiene otra población: " + checkpoint);
+            }
+            // la aptitud guardada solo se puede comparar con la medida en las mismas partidas
+            if(in.readInt() != games || in.readInt() != maxPieces) {
+                throw new IOException("El fichero de control tiene otras partidas o piezas por partida: " + checkpoint);
+            }
+            weights = new double[population][Heuristic.FEATURES];
+            fitness = new double[population];
+            for(int i = 0; i < population; i++) {
+                for(int f = 0; f < Heuristic.FEATURES; f++) {
+                    weights[i][f] = in.readDouble();
+                }
+                fitness[i] = in.readDouble();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Tarea que lanza todas las partidas de una evaluación dentro del pool
+     */
+    private static class BatchTask extends RecursiveAction
+    {
+        private final GameTask[] tasks;
+
+        public BatchTask(GameTask[] tasks)
+        {
+            this.tasks = tasks;
+        }
+
+        protected void compute()
+        {
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Tarea que juega una partida con unos pesos y guarda las líneas hechas
+     */
+    private class GameTask extends RecursiveAction
+    {
+        private final double[] candidate;
+        private final long gameSeed;
+        private final int[] results;
+        private final int slot;
+
+        public GameTask(double[] candidate, long gameSeed, int[] results, int slot)
+        {
+            this.candidate = candidate;
+            this.gameSeed = gameSeed;
+            this.results = results;
+            this.slot = slot;
+        }
+
+        protected void compute()
+        {
+            HeadlessGame game = new HeadlessGame(gameSeed);
+            results[slot] = game.play(new GreedyBot(new Heuristic(candidate)), maxPieces);
+        }
+    }
+
+    /**
+     * Rutina main para lanzar el ajuste desde la línea de comandos
+     */
+    public static void main(String[] args) throws IOException
+    {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int generations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        File checkpoint = new File(args.length > 2 ? args[2] : "tuner.ckpt");
+        GeneticTuner tuner = new GeneticTuner(seed, DEFAULT_POPULATION, DEFAULT_GAMES,
+                                              DEFAULT_MAX_PIECES, checkpoint);
+        while(tuner.getGeneration() < generations) {
+            tuner.nextGeneration();
+            int best = tuner.getBest();
+            System.out.println("Generación " + tuner.getGeneration() + ": mejor " + tuner.getFitness(best)
+                               + " líneas " + Arrays.toString(tuner.getWeights(best)));
+        }
+        tuner.shutdown();
+    }
+}
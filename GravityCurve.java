@@ -0,0 +1,86 @@
+/**
+ * Curva de gravedad del juego: cuánto cae la pieza en cada fotograma según
+ * el nivel, y cuántos fotogramas puede seguir moviéndose una pieza que ya
+ * ha tocado fondo antes de quedar fija (retardo de bloqueo).
+ *
+ * La gravedad se mide en 1/256 de fila por fotograma, así que 256 es 1G
+ * (una fila por fotograma) y 20 * 256 es 20G, con la que la pieza cae al
+ * fondo en cuanto aparece.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class GravityCurve
+{
+    // gravedad de una fila por fotograma
+    public static final int G = 256;
+    // gravedad máxima, con la que la pieza cae al fondo al instante
+    public static final int MAX_GRAVITY = 20 * G;
+    // líneas necesarias para subir de nivel
+    public static final int LINES_PER_LEVEL = 10;
+    // curva por defecto: a nivel 0 la pieza baja una fila por segundo y a nivel 20 cae al instante
+    public static final GravityCurve STANDARD = new GravityCurve(new int[] {
+        4, 6, 8, 10, 12, 16, 20, 24, 32, 40, 48, 64, 80, 96, 128, 160, 256, 512, 1024, 2560, MAX_GRAVITY
+    }, 30);
+
+    // gravedad de cada nivel; los niveles posteriores usan la última
+    private final int[] gravity;
+    // fotogramas de retardo de bloqueo
+    private final int lockDelay;
+
+    /**
+     * Crea una curva de gravedad
+     * @param gravity La gravedad de cada nivel en 1/256 de fila por fotograma
+     * @param lockDelay Los fotogramas que una pieza puede estar en el fondo antes de fijarse
+     */
+    public GravityCurve(int[] gravity, int lockDelay)
+    {
+        if(gravity.length == 0 || lockDelay < 0) {
+            throw new IllegalArgumentException("Curva de gravedad vacía o retardo negativo");
+        }
+        this.gravity = new int[gravity.length];
+        for(int level = 0; level < gravity.length; level++) {
+            if(gravity[level] <= 0) {
+                throw new IllegalArgumentException("Gravedad no positiva en el nivel " + level);
+            }
+            this.gravity[level] = Math.min(gravity[level], MAX_GRAVITY);
+        }
+        this.lockDelay = lockDelay;
+    }
+
+    /**
+     * Lee una curva escrita como las gravedades separadas por comas y,
+     * opcionalmente, "/" y el retardo de bloqueo, por ejemplo "4,8,16,5120/30"
+     * @param spec La curva escrita
+     * @return La curva leída
+     */
+    public static GravityCurve parse(String spec)
+    {
+        int slash = spec.indexOf('/');
+        String values = slash < 0 ? spec : spec.substring(0, slash);
+        int lockDelay = slash < 0 ? STANDARD.lockDelay : Integer.parseInt(spec.substring(slash + 1).trim());
+        String[] parts = values.split(",");
+        int[] gravity = new int[parts.length];
+        for(int i = 0; i < parts.length; i++) {
+            gravity[i] = Integer.parseInt(parts[i].trim());
+        }
+        return new GravityCurve(gravity, lockDelay);
+    }
+
+    /**
+     * @param level El nivel
+     * @return La gravedad de ese nivel en 1/256 de fila por fotograma
+     */
+    public int getGravity(int level)
+    {
+        return gravity[Math.min(level, gravity.length - 1)];
+    }
+
+    /**
+     * @return Los fotogramas que una pieza puede estar en el fondo antes de fijarse
+     */
+    public int getLockDelay()
+    {
+        return lockDelay;
+    }
+}
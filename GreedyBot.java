@@ -0,0 +1,36 @@
+/**
+ * Bot voraz que coloca cada pieza donde mejor puntúa una función de
+ * evaluación, sin mirar las piezas siguientes. Todas las jugadas candidatas
+ * se puntúan en un solo lote. Cada instancia tiene sus propios datos de
+ * trabajo, por lo que no se debe compartir entre hilos.
+ * 
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class GreedyBot implements Bot
+{
+    // la función que valora los tableros
+    private final BoardEvaluator evaluator;
+    // las jugadas candidatas y sus tableros
+    private final CandidateBatch batch = new CandidateBatch();
+
+    /**
+     * Construye un bot voraz
+     * @param evaluator La función que valora los tableros
+     */
+    public GreedyBot(BoardEvaluator evaluator)
+    {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Elige la jugada de la pieza actual que deja el mejor tablero
+     */
+    public int choose(Board board, int type, int[] preview, int previewCount)
+    {
+        batch.fill(board, type, 0);
+        batch.score(evaluator);
+        int best = batch.best();
+        return best < 0 ? Placement.NONE : batch.getPlacement(best);
+    }
+}
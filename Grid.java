@@ -1,39 +1,109 @@
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Random;
 import java.awt.Color;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 /**
  * Representa una matriz bidimensional de celdas en cada
  * una de las cuales se puede almacenar una de los 4 bloques
  * que forman cada tetrimino.
- * 
- * @author Octavio Martnez
+ *
+ * Cada celda es un byte: los 4 bits bajos son el índice de su color en la
+ * Palette (0 si está vacía) y el bit STACKED indica si el bloque está
+ * apilado o pertenece a la pieza móvil. La pieza móvil se sigue por su tipo,
+ * su giro y la posición de su caja, así que aparecer y fijarse no crea
+ * ningún objeto.
+ *
+ * Las piezas salen de un juego de piezas (PieceSet) y todas se mueven y
+ * giran con el mismo código: las colisiones se comprueban con las máscaras
+ * de filas de cada giro contra las filas apiladas, también como máscaras,
+ * y los giros con las tablas de empujes y regiones libres del juego.
+ *
+ * Los cambios se avisan a los ChangeListener al final de cada operación:
+ * las filas con celdas cambiadas (como máscara, una llamada por operación
+ * aunque cambien muchas celdas), las líneas hechas y las piezas nuevas.
+ *
+ * @author Octavio Martínez
  * @version 16.05.2011
  */
 public class Grid
 {
-    // variable aleatoria usada para la creacin de los tetriminos
-    private static final Random rand = new Random();
+    // semilla fija de las claves de la suma de comprobación, igual en todas las partidas
+    private static final long KEY_SEED = 0x5445545249534B59L;
     // la anchura (columnas) por defecto de la matriz
     public static final int DEFAULT_COLS = 12;
     // la altura (filas) por defecto de la matriz.
     public static final int DEFAULT_ROWS = 25;
+    // número de piezas siguientes que se conocen de antemano
+    public static final int PREVIEW_SIZE = 3;
+    // bit de una celda que indica que su bloque está apilado
+    public static final int STACKED = 0x10;
+    // giros que puede dar una pieza antes de tener que bajar para seguir girando
+    private static final int MAX_TURNS = 4;
+    // claves de las celdas de la última matriz creada, que se reutilizan en
+    // las matrices del mismo tamaño porque solo dependen de KEY_SEED
+    private static volatile long[] sharedKeys = new long[0];
     // controla el numero de giros de la pieza
     private int turns;
-    
+
     // Las dimensiones 2D de la matriz, filas y columnas que posee.
     private int rows, cols;
-    // El Array bidimensional que almacenar los bloques de las piezas o tetriminos.
-    private Block[][] grid;
-    // La pieza actual
-    private Piece tetrimino;
-    // mantiene la nocin en el grid de bloque central del tetrimino actual.
-    private Block central;
-    
+    // Las celdas de la matriz fila a fila: índice de la paleta y bit STACKED
+    private byte[] cells;
+    // el juego de piezas de la partida
+    private final PieceSet pieces;
+    // El tipo de la pieza actual, -1 si no hay pieza en juego
+    private int type;
+    // el giro de la pieza actual y la fila y columna de la esquina superior
+    // izquierda de su caja (puede salirse de la matriz donde la caja no tiene bloques)
+    private int rot, boxRow, boxCol;
+    // los tipos de las siguientes piezas que aparecerán
+    private int[] preview;
+    // generador aleatorio usado para la creación de los tetriminos
+    private GameRandom random;
+    // claves de cada celda: las de los bloques apilados y después las de la pieza móvil
+    private long[] cellKeys;
+    // XOR de las claves de todas las celdas ocupadas, se actualiza en cada cambio
+    private long cellHash;
+    // bloques apilados de cada columna como máscara (bit r = fila r), se actualiza en cada cambio
+    private int[] stackedColumns;
+    // bloques apilados de cada fila como máscara (bit c = columna c), se actualiza en cada cambio
+    private long[] stackedRows;
+    // curva de gravedad, nivel inicial, líneas hechas y nivel actual
+    private GravityCurve gravityCurve;
+    private int startLevel, lines, level;
+    // fracción de fila acumulada por la gravedad, en 1/256 de fila
+    private int gravityAccumulator;
+    // fotogramas que lleva la pieza en el fondo sin fijarse
+    private int lockFrames;
+    // filas con celdas cambiadas (bit r = fila r) que aún no se han avisado
+    private int changedRows;
+    // oyentes de los cambios del grid
+    private ChangeListener[] listeners = new ChangeListener[0];
+
+    /**
+     * Oyente de los cambios del grid. Se llama desde el hilo que modifica
+     * el grid, al final de la operación que hizo el cambio.
+     */
+    public interface ChangeListener
+    {
+        /**
+         * Han cambiado celdas del grid
+         * @param rows Las filas cambiadas, como máscara (bit r = fila r)
+         */
+        void cellsChanged(int rows);
+
+        /**
+         * Se han hecho líneas
+         * @param count Las líneas hechas
+         */
+        void linesCleared(int count);
+
+        /**
+         * Ha aparecido una pieza nueva
+         * @param type El tipo de pieza de su juego de piezas
+         */
+        void pieceSpawned(int type);
+    }
+
 
     /**
      * Construye una matriz de las dimensiones especificadas
@@ -42,58 +112,152 @@ public class Grid
      */
     public Grid(int rows, int cols)
     {
+        this(rows, cols, System.nanoTime());
+    }
+
+    /**
+     * Construye una matriz de las dimensiones especificadas cuya secuencia
+     * de piezas depende solo de la semilla, para poder reproducir la partida
+     * @param rows Las filas de la matriz
+     * @param cols Las columnas de la matriz
+     * @param seed La semilla de la secuencia de piezas
+     */
+    public Grid(int rows, int cols, long seed)
+    {
+        this(rows, cols, seed, PieceSet.getDefault());
+    }
+
+    /**
+     * Construye una matriz de las dimensiones especificadas con un juego de
+     * piezas dado y cuya secuencia de piezas depende solo de la semilla
+     * @param rows Las filas de la matriz
+     * @param cols Las columnas de la matriz
+     * @param seed La semilla de la secuencia de piezas
+     * @param pieces El juego de piezas
+     */
+    public Grid(int rows, int cols, long seed, PieceSet pieces)
+    {
+        if(rows > 32 || cols > 64 || rows < pieces.getMaxSize() || cols < pieces.getMaxSize()) {
+            throw new IllegalArgumentException("Dimensiones no válidas: " + rows + "x" + cols);
+        }
+        this.pieces = pieces;
         this.rows = rows;
         this.cols = cols;
-        grid = new Block[rows][cols];
-        tetrimino = null;
-        central = null;
+        cells = new byte[rows * cols];
+        type = -1;
+        random = new GameRandom(seed);
+        cellKeys = sharedKeys;
+        if(cellKeys.length != 2 * rows * cols) {
+            cellKeys = new long[2 * rows * cols];
+            GameRandom keys = new GameRandom(KEY_SEED);
+            for(int i = 0; i < cellKeys.length; i++) {
+                cellKeys[i] = keys.nextLong();
+            }
+            sharedKeys = cellKeys;
+        }
+        cellHash = 0;
+        stackedColumns = new int[cols];
+        stackedRows = new long[rows];
+        gravityCurve = GravityCurve.STANDARD;
+        preview = new int[PREVIEW_SIZE];
+        for(int i = 0; i < PREVIEW_SIZE; i++) {
+            preview[i] = random.nextInt(pieces.getTypes());
+        }
     }
-    
+
     /**
-     * Vaca el grid poniendo a null todas sus posiciones
+     * Vacía el grid poniendo a 0 todas sus celdas
      */
     public void clear()
     {
+        for(int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = Palette.EMPTY;
+        }
+        for(int col = 0; col < cols; col++) {
+            stackedColumns[col] = 0;
+        }
         for(int row = 0; row < rows; row++) {
-            for(int col = 0; col < cols; col++) {
-                grid[row][col] = null;
+            stackedRows[row] = 0;
+        }
+        cellHash = 0;
+        lines = 0;
+        level = startLevel;
+        // la pieza móvil también se ha borrado, así que la siguiente aparece en el próximo tick
+        type = -1;
+        gravityAccumulator = 0;
+        lockFrames = 0;
+        changedRows = rows < 32 ? (1 << rows) - 1 : -1;
+        fireChanges();
+    }
+
+    /**
+     * Añade un oyente de los cambios del grid
+     * @param listener El oyente
+     */
+    public void addChangeListener(ChangeListener listener)
+    {
+        ChangeListener[] added = new ChangeListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, added, 0, listeners.length);
+        added[listeners.length] = listener;
+        listeners = added;
+    }
+
+    /**
+     * Avisa a los oyentes de las filas cambiadas desde el último aviso
+     */
+    private void fireChanges()
+    {
+        if(changedRows != 0) {
+            int changed = changedRows;
+            changedRows = 0;
+            for(ChangeListener listener : listeners) {
+                listener.cellsChanged(changed);
             }
         }
-    }  
-    
+    }
+
     /**
-     * Pone un bloque de la pieza en una posicin
-     * dada de la matriz y establece sus coords internas para que coincidan
-     * con la posicin real dentro del grid
-     * @param element El bloque que queremos poner
+     * Pone un bloque de la pieza en una posición dada de la matriz
+     * @param value La celda que queremos poner (índice de la paleta y bit
+     *        STACKED); una celda vacía no cambia nada
      * @param row La fila en que queremos ubicarle
      * @param col La columna en que queremos ubicarle
      */
-    private void placePiece(Block element, int row, int col)
+    private void placePiece(int value, int row, int col)
     {
-        if(element != null) {
-            // establecemos los atributos del bloque para que coincidan con
-            // su posicin real en el grid
-            element.setLocation(row,col);
-            grid[row][col] = element;
-        }    
-    }  
-    
+        if(value != Palette.EMPTY) {
+            int cell = row * cols + col;
+            if(cells[cell] != Palette.EMPTY) {
+                toggleCell(cells[cell], row, col);
+            }
+            cells[cell] = (byte) value;
+            toggleCell(value, row, col);
+        }
+    }
+
     /**
-     * Devuelve el objeto en la celda especificada (fila-columna)
+     * Devuelve el contenido de la celda especificada (fila-columna)
      * @param row La fila.
      * @param col La columna.
-     * @return el objeto en la posicin dada, o null si no hay ninguno
+     * @return El índice de la paleta del bloque en la posición dada, o
+     *         Palette.EMPTY si no hay ninguno
      */
-    public Block getObjectAt(int row, int col)
+    public int getCell(int row, int col)
     {
-        if(grid[row][col] != null) { 
-            return grid[row][col];
-        } else {
-            return null;
-        }    
+        return cells[row * cols + col] & Palette.INDEX_MASK;
     }
-    
+
+    /**
+     * Comprueba si en una celda hay un bloque apilado
+     * @param row La fila.
+     * @param col La columna.
+     * @return True si hay un bloque apilado, false si está vacía o es de la pieza móvil
+     */
+    public boolean isStacked(int row, int col)
+    {
+        return (cells[row * cols + col] & STACKED) != 0;
+    }
+
     /**
      * Devuelve el color de un determinado bloque en la matriz
      * @param row La fila donde vamos a buscar
@@ -102,104 +266,498 @@ public class Grid
      */
     public Color getCellColor(int row, int col)
     {
-        Color color = getObjectAt(row, col).getBlockColor();
-        return color;
-    }    
-    
+        return Palette.color(cells[row * cols + col]);
+    }
+
+    /**
+     * Copia todas las celdas de la matriz, fila a fila, con el mismo
+     * formato que usa el grid (índice de la paleta y bit STACKED)
+     * @param out El array de al menos filas * columnas bytes donde se copian
+     */
+    public void copyCells(byte[] out)
+    {
+        System.arraycopy(cells, 0, out, 0, cells.length);
+    }
+
     /**
-     * Vaca una celda concreta de la matriz estableciendo a null su referencia
+     * Vacía una celda concreta de la matriz
      * @param row La fila de la matriz
      * @param col la columna de la matriz
      */
     private void eraseCell(int row, int col)
     {
-        grid[row][col] = null;    
+        int cell = row * cols + col;
+        if(cells[cell] != Palette.EMPTY) {
+            toggleCell(cells[cell], row, col);
+        }
+        cells[cell] = Palette.EMPTY;
     }
-    
+
     /**
-     * Obtiene un bloque de una ubicacin del grid y lo elimina de esa
-     * posicin
-     * @param row La fila en la que est el bloque
-     * @param col La columna en la que est el bloque
-     * @return El bloque que estaba en esa posicin si haba alguno, null de otro modo
+     * Comprueba si una posición está dentro de la matriz y tiene un bloque
+     * de la pieza móvil
+     * @param row La fila
+     * @param col La columna
+     * @return True si hay un bloque de la pieza móvil en esa posición
      */
-    private Block cutBlock(int row, int col)
+    private boolean isMoving(int row, int col)
     {
-        if(grid[row][col] != null) {
-            Block block = grid[row][col];
-            grid[row][col] = null;
-            return block;
-        } else {
-            return null;
+        if(row < 0 || row >= rows || col < 0 || col >= cols) {
+            return false;
         }
-    }    
-    
+        int value = cells[row * cols + col];
+        return value != Palette.EMPTY && (value & STACKED) == 0;
+    }
+
     /**
-     * Establece todas los bloques de las piezas del grid
-     * como "apilados" para tenerlo en cuenta y no moverlas 
-     * al recorrer la matriz en otros mtodos de modificacin
+     * Quita de la matriz o pone en ella los bloques de la pieza móvil en un
+     * giro y posición de su caja
+     * @param rot El giro
+     * @param row La fila de la caja
+     * @param col La columna de la caja
+     * @param value La celda que se pone, o Palette.EMPTY para quitar los bloques
      */
-    private void setStacked()
+    private void drawPiece(int rot, int row, int col, int value)
+    {
+        int[] masks = pieces.masks[type][rot];
+        int last = pieces.maxRow[type][rot];
+        for(int i = pieces.minRow[type][rot]; i <= last; i++) {
+            for(int bits = masks[i]; bits != 0; bits &= bits - 1) {
+                int c = col + Integer.numberOfTrailingZeros(bits);
+                if(value == Palette.EMPTY) {
+                    eraseCell(row + i, c);
+                } else {
+                    placePiece(value, row + i, c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mueve la pieza móvil a otro giro y posición de su caja, ya comprobados
+     * @param newRot El nuevo giro
+     * @param newRow La nueva fila de la caja
+     * @param newCol La nueva columna de la caja
+     */
+    private void movePiece(int newRot, int newRow, int newCol)
+    {
+        drawPiece(rot, boxRow, boxCol, Palette.EMPTY);
+        rot = newRot;
+        boxRow = newRow;
+        boxCol = newCol;
+        drawPiece(rot, boxRow, boxCol, pieces.colorIndex[type]);
+    }
+
+    /**
+     * Comprueba si una región de la caja de una pieza está dentro de la
+     * matriz y sin bloques apilados
+     * @param masks Las máscaras de las filas de la región
+     * @param minRow La primera fila de la región en la caja
+     * @param maxRow La última fila de la región en la caja
+     * @param minCol La primera columna de la región en la caja
+     * @param maxCol La última columna de la región en la caja
+     * @param row La fila de la caja en la matriz
+     * @param col La columna de la caja en la matriz
+     * @return True si la región está libre
+     */
+    private boolean regionFree(int[] masks, int minRow, int maxRow, int minCol, int maxCol, int row, int col)
     {
-         for(int row = DEFAULT_ROWS - 1; row >= 0; row--) {
-            for(int col = DEFAULT_COLS - 1; col >= 0; col--) {
-                Block block = getObjectAt(row,col);
-                if(block != null) {
-                    block.setStacked();
-                }    
+        if(row + minRow < 0 || row + maxRow >= rows || col + minCol < 0 || col + maxCol >= cols) {
+            return false;
+        }
+        for(int i = minRow; i <= maxRow; i++) {
+            long mask = masks[i] & 0xFFFFFFFFL;
+            if((stackedRows[row + i] & (col >= 0 ? mask << col : mask >>> -col)) != 0) {
+                return false;
             }
-        }   
+        }
+        return true;
     }
-    
+
     /**
-     * Comprueba si todas los bloques de las piezas en el grid estn apilados
+     * Comprueba si la pieza móvil cabe en un giro y posición de su caja
+     * @param newRot El giro
+     * @param row La fila de la caja
+     * @param col La columna de la caja
+     * @return True si todos sus bloques quedan dentro y en celdas sin bloques apilados
+     */
+    private boolean fits(int newRot, int row, int col)
+    {
+        return regionFree(pieces.masks[type][newRot], pieces.minRow[type][newRot], pieces.maxRow[type][newRot],
+                          pieces.minCol[type][newRot], pieces.maxCol[type][newRot], row, col);
+    }
+
+    /**
+     * Establece todas los bloques de la pieza móvil
+     * como "apilados" para tenerlo en cuenta y no moverlas
+     * al recorrer la matriz en otros métodos de modificación.
+     */
+    private void setStacked()
+    {
+        drawPiece(rot, boxRow, boxCol, pieces.colorIndex[type] | STACKED);
+    }
+
+    /**
+     * Comprueba si todas los bloques de las piezas en el grid están apilados
      * @return True si estan todos apilados, false en caso contrario
      */
     public boolean allStacked()
     {
-        boolean check = true;
-        for(int row = DEFAULT_ROWS - 1; row >= 0; row--) {
-            for(int col = DEFAULT_COLS - 1; col >= 0; col--) {
-                Block block = getObjectAt(row,col);
-                if(block != null && !block.isStacked()) {
-                    check = false;
+        return type < 0;
+    }
+
+
+    /**
+     * Llena las filas inferiores de la matriz con bloques apilados grises,
+     * dejando un hueco al azar en cada fila, para preparar tableros con
+     * distinto nivel de llenado
+     * @param count Las filas que se llenan
+     * @param seed La semilla de la posición de los huecos
+     */
+    public void fillBottom(int count, long seed)
+    {
+        GameRandom holes = new GameRandom(seed);
+        for(int row = rows - count; row < rows; row++) {
+            int hole = holes.nextInt(cols);
+            for(int col = 0; col < cols; col++) {
+                eraseCell(row, col);
+                if(col != hole) {
+                    placePiece(Palette.GARBAGE | STACKED, row, col);
                 }
             }
         }
-        return check;
-    }   
-                
-    
+        fireChanges();
+    }
+
     /**
-     * Crea un nuevo tetrimino en la posicin inicial del grid,
+     * Crea un nuevo tetrimino en la posición inicial del grid,
      * es decir, en la zona superior central
      */
     public void createTetrimino()
     {
         turns = 0;
-        int dice7 = rand.nextInt(7);
-        tetrimino = new Piece(dice7);
-        // marca en bloque central de la pieza para seguirle en el grid.
-        central = tetrimino.getBlock(1,1);
-        // colocar en el grid un bloque si !null en la submatriz Piece
-        for( int pieceRow = 0; pieceRow < tetrimino.getPieceRows(); pieceRow++) {
-            for( int pieceCol = 0; pieceCol < tetrimino.getPieceCols(); pieceCol++) {
-                if(tetrimino.getBlock(pieceRow, pieceCol) != null) {
-                    placePiece(tetrimino.getBlock(pieceRow, pieceCol), pieceRow, pieceCol + 4);
+        // la nueva pieza es la primera de la cola y se añade otra al final
+        int dice7 = preview[0];
+        for(int i = 1; i < PREVIEW_SIZE; i++) {
+            preview[i - 1] = preview[i];
+        }
+        preview[PREVIEW_SIZE - 1] = random.nextInt(pieces.getTypes());
+        type = dice7;
+        // la caja de la pieza aparece arriba y centrada, en su giro inicial
+        rot = 0;
+        boxRow = 0;
+        boxCol = pieces.getSpawnCol(type, cols);
+        // colocar en el grid los bloques de la pieza en su posición inicial
+        drawPiece(rot, boxRow, boxCol, pieces.colorIndex[type]);
+        fireChanges();
+        for(ChangeListener listener : listeners) {
+            listener.pieceSpawned(type);
+        }
+    }
+
+    /**
+     * Acceso al tipo de la pieza móvil actual
+     * @return El tipo de pieza de su juego de piezas, o -1 si no hay pieza en juego
+     */
+    public int getTetriminoType()
+    {
+        return type;
+    }
+
+    /**
+     * @return El giro de la pieza móvil actual (0 al aparecer)
+     */
+    public int getRotation()
+    {
+        return rot;
+    }
+
+    /**
+     * @return La columna de la esquina izquierda de la caja de la pieza
+     *         móvil, la misma x que usan Board y Placement
+     */
+    public int getPieceCol()
+    {
+        return boxCol;
+    }
+
+    /**
+     * Acceso a la cola de piezas siguientes
+     * @param index La posición en la cola (0 es la próxima pieza)
+     * @return El tipo de pieza en esa posición
+     */
+    public int getPreview(int index)
+    {
+        return preview[index];
+    }
+
+    /**
+     * @return El juego de piezas de la partida
+     */
+    public PieceSet getPieceSet()
+    {
+        return pieces;
+    }
+
+    /**
+     * Copia los bloques apilados del grid en un tablero compacto para
+     * que los bots puedan simular jugadas sin modificar el juego
+     * @param board El tablero de las mismas dimensiones donde copiamos
+     */
+    public void copyStackedTo(Board board)
+    {
+        for(int row = 0; row < rows; row++) {
+            board.setRowMask(row, (int) stackedRows[row]);
+        }
+    }
+
+    /**
+     * Comprueba si la pila ha llegado a la fila superior, lo que acaba la partida
+     * @return True si hay algún bloque apilado en la fila 0
+     */
+    public boolean isTopOut()
+    {
+        for(int col = 0; col < cols; col++) {
+            if((stackedColumns[col] & 1) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene la suma de comprobación del estado del juego: las celdas
+     * ocupadas (distinguiendo pila y pieza móvil), el tipo y los giros de la
+     * pieza, la cola de piezas, el nivel, las líneas, la gravedad acumulada,
+     * el retardo de bloqueo y el estado del generador aleatorio. La parte
+     * de las celdas se mantiene de forma incremental en cada cambio de una
+     * celda, así que calcularla en cada paso no recorre la matriz.
+     * @return La suma de comprobación del estado actual
+     */
+    public long getChecksum()
+    {
+        // el tipo más 1 y los de la cola son cifras en base types + 1, que
+        // para los 7 tetriminos clásicos es la base 8 de siempre
+        long base = this.pieces.getTypes() + 1;
+        long pieces = getTetriminoType() + 1;
+        for(int i = 0; i < PREVIEW_SIZE; i++) {
+            pieces = pieces * base + preview[i];
+        }
+        pieces = pieces * 8 + turns;
+        long progress = ((long) lines << 32) ^ ((long) level << 24) ^ (gravityAccumulator << 8) ^ lockFrames;
+        return cellHash ^ GameRandom.mix(random.getState() ^ GameRandom.mix(pieces ^ GameRandom.mix(progress)));
+    }
+
+    /**
+     * Obtiene la parte de la suma de comprobación que depende solo de las
+     * celdas, que cambia siempre que cambia alguna celda
+     * @return La suma de las celdas ocupadas
+     */
+    public long getCellHash()
+    {
+        return cellHash;
+    }
+
+    /**
+     * Calcula la suma de comprobación recorriendo toda la matriz, para
+     * verificar la versión incremental
+     * @return La misma suma que getChecksum
+     */
+    long fullChecksum()
+    {
+        long saved = cellHash;
+        cellHash = 0;
+        for(int row = 0; row < rows; row++) {
+            for(int col = 0; col < cols; col++) {
+                int value = cells[row * cols + col];
+                if(value != Palette.EMPTY) {
+                    cellHash ^= cellKey(value, row, col);
                 }
             }
         }
+        long checksum = getChecksum();
+        cellHash = saved;
+        return checksum;
     }
-    
+
+    /**
+     * @return Los bytes que ocupa el estado del grid escrito con writeState
+     */
+    public int stateBytes()
+    {
+        return 4 + 4 + 8 + PREVIEW_SIZE + 4 + 4 * 5 + rows * cols;
+    }
+
+    /**
+     * Escribe el estado completo de la partida: dimensiones, estado del
+     * generador aleatorio, cola de piezas, pieza móvil con su bloque
+     * central y sus giros, nivel inicial, líneas, nivel, gravedad acumulada,
+     * retardo de bloqueo y las celdas tal y como las guarda el grid. La
+     * curva de gravedad y el juego de piezas son configuración del juego y
+     * no se escriben. El bloque central es la posición (1,1) de la caja,
+     * como en el formato del juego original, y el giro de la pieza se
+     * deduce de sus celdas al leer.
+     * @param out El buffer donde se escribe, con stateBytes bytes libres
+     */
+    public void writeState(ByteBuffer out)
+    {
+        out.putInt(rows);
+        out.putInt(cols);
+        out.putLong(random.getState());
+        for(int i = 0; i < PREVIEW_SIZE; i++) {
+            out.put((byte) preview[i]);
+        }
+        out.put((byte) type);
+        out.put((byte) (boxRow + 1));
+        out.put((byte) (boxCol + 1));
+        out.put((byte) turns);
+        out.putInt(startLevel);
+        out.putInt(lines);
+        out.putInt(level);
+        out.putInt(gravityAccumulator);
+        out.putInt(lockFrames);
+        out.put(cells);
+    }
+
+    /**
+     * Crea un grid con el estado escrito por writeState y el juego de
+     * piezas por defecto
+     * @param in El buffer del que se lee
+     * @return El grid restaurado, con la curva de gravedad por defecto
+     * @throws IllegalArgumentException si el estado no es válido
+     */
+    public static Grid readState(ByteBuffer in)
+    {
+        return readState(in, PieceSet.getDefault());
+    }
+
+    /**
+     * Crea un grid con el estado escrito por writeState. La suma de las
+     * celdas y las máscaras de las columnas y filas se reconstruyen a partir
+     * de las celdas, así que la suma de comprobación coincide con la del grid
+     * guardado.
+     * @param in El buffer del que se lee
+     * @param pieces El juego de piezas con el que se escribió
+     * @return El grid restaurado, con la curva de gravedad por defecto
+     * @throws IllegalArgumentException si el estado no es válido
+     */
+    public static Grid readState(ByteBuffer in, PieceSet pieces)
+    {
+        int rows = in.getInt();
+        int cols = in.getInt();
+        // las máscaras de las columnas tienen un bit por fila
+        if(rows < pieces.getMaxSize() || rows > 32 || cols < pieces.getMaxSize() || cols > 64) {
+            throw new IllegalArgumentException("Dimensiones no válidas: " + rows + "x" + cols);
+        }
+        Grid grid = new Grid(rows, cols, 0, pieces);
+        int types = pieces.getTypes();
+        grid.random.setState(in.getLong());
+        for(int i = 0; i < PREVIEW_SIZE; i++) {
+            grid.preview[i] = checkRange(in.get(), 0, types - 1, "pieza siguiente");
+        }
+        grid.type = checkRange(in.get(), -1, types - 1, "tipo de pieza");
+        grid.boxRow = checkRange(in.get(), 1 - PieceSet.MAX_BOX, rows, "fila del bloque central") - 1;
+        grid.boxCol = checkRange(in.get(), 1 - PieceSet.MAX_BOX, cols, "columna del bloque central") - 1;
+        grid.turns = checkRange(in.get(), 0, MAX_TURNS, "giros");
+        grid.startLevel = checkRange(in.getInt(), 0, Integer.MAX_VALUE, "nivel inicial");
+        grid.lines = checkRange(in.getInt(), 0, Integer.MAX_VALUE, "líneas");
+        grid.level = checkRange(in.getInt(), 0, Integer.MAX_VALUE, "nivel");
+        grid.gravityAccumulator = checkRange(in.getInt(), 0, GravityCurve.MAX_GRAVITY, "gravedad acumulada");
+        grid.lockFrames = checkRange(in.getInt(), 0, Integer.MAX_VALUE, "retardo de bloqueo");
+        in.get(grid.cells);
+        for(int row = 0; row < rows; row++) {
+            for(int col = 0; col < cols; col++) {
+                int value = grid.cells[row * cols + col];
+                if((value & ~(STACKED | Palette.INDEX_MASK)) != 0
+                   || (value != Palette.EMPTY && Palette.color(value) == null)) {
+                    throw new IllegalArgumentException("Celda no válida en " + row + "," + col);
+                }
+                if(value != Palette.EMPTY) {
+                    grid.toggleCell(value, row, col);
+                }
+            }
+        }
+        grid.changedRows = 0;
+        if(grid.type >= 0) {
+            grid.rot = grid.findRotation();
+        }
+        return grid;
+    }
+
+    /**
+     * Busca el giro de la pieza móvil cuyas máscaras coinciden con sus
+     * celdas, para restaurar una partida guardada
+     * @return El giro
+     * @throws IllegalArgumentException si ningún giro coincide
+     */
+    private int findRotation()
+    {
+        int moving = 0;
+        for(int cell = 0; cell < cells.length; cell++) {
+            if(cells[cell] != Palette.EMPTY && (cells[cell] & STACKED) == 0) {
+                moving++;
+            }
+        }
+        for(int r = 0; r < pieces.getRotations(type); r++) {
+            int blocks = 0;
+            boolean matches = true;
+            for(int i = 0; i < pieces.getSize(type) && matches; i++) {
+                int mask = pieces.masks[type][r][i];
+                blocks += Integer.bitCount(mask);
+                for(int bits = mask; bits != 0; bits &= bits - 1) {
+                    matches &= isMoving(boxRow + i, boxCol + Integer.numberOfTrailingZeros(bits));
+                }
+            }
+            if(matches && blocks == moving) {
+                return r;
+            }
+        }
+        throw new IllegalArgumentException("La pieza móvil no coincide con ningún giro de " + pieces.getName(type));
+    }
+
     /**
-     * Acceso al campo tetrimino de esta clase
-     * @return El campo tetrimino de una instancia de esta clase
+     * Comprueba que un valor leído del estado esté en su intervalo
+     * @return El valor
+     * @throws IllegalArgumentException si está fuera del intervalo
      */
-    private Piece getTetrimino()
+    private static int checkRange(int value, int min, int max, String name)
     {
-        return tetrimino;
-    }     
-    
+        if(value < min || value > max) {
+            throw new IllegalArgumentException("Valor no válido de " + name + ": " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Actualiza la suma de las celdas y las máscaras de las columnas cuando
+     * un bloque entra en una celda o sale de ella (ambas operaciones son un XOR)
+     * @param value La celda del bloque
+     * @param row La fila de la celda
+     * @param col La columna de la celda
+     */
+    private void toggleCell(int value, int row, int col)
+    {
+        cellHash ^= cellKey(value, row, col);
+        changedRows |= 1 << row;
+        if((value & STACKED) != 0) {
+            stackedColumns[col] ^= 1 << row;
+            stackedRows[row] ^= 1L << col;
+        }
+    }
+
+    /**
+     * Obtiene la clave de un bloque en una celda
+     * @param value La celda del bloque
+     * @param row La fila de la celda
+     * @param col La columna de la celda
+     * @return La clave de la celda, distinta si el bloque está apilado
+     */
+    private long cellKey(int value, int row, int col)
+    {
+        int cell = row * cols + col;
+        return (value & STACKED) != 0 ? cellKeys[cell] : cellKeys[rows * cols + cell];
+    }
+
     /**
      * Devuelve la altura (filas) de la matriz.
      * @return La altura de la matriz.
@@ -208,7 +766,7 @@ public class Grid
     {
         return rows;
     }
-    
+
     /**
      * Devuelve el ancho (cols) de la matriz
      * @return El ancho de la matriz.
@@ -217,16 +775,16 @@ public class Grid
     {
         return cols;
     }
-    
+
     /**
      * Devuelve el numero de giros de la pieza
-     * @return El nmero de giros efectuados por una pieza dentro del grid
+     * @return El número de giros efectuados por una pieza dentro del grid
      */
     private int getTurns()
     {
         return turns;
     }
-    
+
     /**
      * Pone el contador de giros a un valor determinado
      * @param value El valor al que queremos establecer el campo turns
@@ -234,340 +792,305 @@ public class Grid
     public void setTurns(int value)
     {
         turns = value;
-    }    
-    
-    /**
-     * Devuelve un array integrado
-     * por los 4 bloques de la pieza mvil actual
-     * @return Una lista de los 4 bloques pertenecientes a la pieza mvil actual
-     */
-    private ArrayList<Block> getBlocksAtGrid()
-    {
-        ArrayList<Block> blocksAtGrid = new ArrayList<Block>();
-        for(int row = 0; row <= DEFAULT_ROWS-1; row++){
-            for(int col = 0; col <= DEFAULT_COLS-1; col++) {
-                Block block = getObjectAt(row,col);
-                // si existe bloque en esa posicin y no est apilado
-                if(block != null && !block.isStacked()) {
-                    blocksAtGrid.add(block);
-                }
-            }
-        }   
-        return blocksAtGrid;
     }
-    
+
     /**
-     * Mueve toda la pieza una posicin a la derecha en al grid
+     * Mueve toda la pieza una posición a la derecha en al grid
      */
     public void moveRight()
     {
         // si el movimiento a la derecha es legal
-        if(canMoveRight()) {
-            for(int col = DEFAULT_COLS - 1; col >= 0; col--) {
-                for(int row = DEFAULT_ROWS - 1; row >= 0; row--) {
-                    Block block = getObjectAt(row,col);
-                    // si existe bloque en esa posicin y no est apilado
-                    if(block != null && !block.isStacked()) {
-                        // movemos a la derecha en bloque y borramos el anterior
-                        placePiece(block, row, col+1);
-                        eraseCell(row,col); 
-                        
-                    
-                    }
-                }
-            }
-        }   
-    }
-    
-    /**
-     * Verifica que todos los elementos a la derecha de los bloques de una pieza
-     * esten libres.
-     * @return True si la pieza puede moverse a la derecha, False en caso contrario
-     */
-    private boolean canMoveRight()
-    {
-            boolean check = true;
-            // almacenamos los bloques de la pieza en una coleccin
-            ArrayList<Block> currentPiece = getBlocksAtGrid();
-            // verificamos que para cada bloque haya una posicin vlida a su derecha
-            for(Block pieceBlock : currentPiece) {
-                int row = pieceBlock.getRow();
-                int col = pieceBlock.getCol();
-                if(col+1 < DEFAULT_COLS) {
-                    Block nextBlock = getObjectAt(row,col+1);
-                    if(nextBlock != null && nextBlock.isStacked()) {
-                        check = false;
-                    }
-                } else {
-                    check = false;
-                }    
-            }
-            return check; 
-        
+        if(type >= 0 && fits(rot, boxRow, boxCol + 1)) {
+            movePiece(rot, boxRow, boxCol + 1);
+            fireChanges();
+        }
     }
-    
+
     /**
-     * Mueve toda la pieza una posicin a la izquierda en el grid
+     * Mueve toda la pieza una posición a la izquierda en el grid
      */
     public void moveLeft()
     {
-         // si el movimiento a la izquierda es legal
-         if(canMoveLeft()) {
-            for(int col = 0; col <= DEFAULT_COLS - 1; col++) {
-                for(int row = DEFAULT_ROWS - 1; row >= 0; row--) {
-                    Block block = getObjectAt(row,col);
-                    // si existe bloque en esa posicin y no est apilado
-                    if(block != null && !block.isStacked()) {
-                        // movemos el bloque a la izquierda y borramos anterior
-                        placePiece(block, row, col-1);
-                        eraseCell(row,col);
-                      
-                    }
-                }
-            }
-        }   
-    }
-    
-    /**
-     * Verifica que todos los elementos a la derecha de los bloques de una pieza
-     * esten libres.
-     * @return True si la pieza puede moverse a la izquierda, False en caso contrario
-     */
-    private boolean canMoveLeft()
-    {
-            boolean check = true;
-            // almacenamos los bloques de la pieza en una coleccin
-            ArrayList<Block> currentPiece = getBlocksAtGrid();
-            // verificamos que para cada bloque haya una posicin vlida a su izquierda
-            for(Block pieceBlock : currentPiece) {
-                int row = pieceBlock.getRow();
-                int col = pieceBlock.getCol();
-                if(col-1 > -1) {
-                    Block nextBlock = getObjectAt(row,col-1);
-                    if(nextBlock != null && nextBlock.isStacked()) {
-                        check = false;
-                    }
-                } else {
-                    check = false;
-                }    
-            }
-            return check;
+        // si el movimiento a la izquierda es legal
+        if(type >= 0 && fits(rot, boxRow, boxCol - 1)) {
+            movePiece(rot, boxRow, boxCol - 1);
+            fireChanges();
+        }
     }
-    
+
     /**
-     * Desciende toda la pieza una posicin en la matriz
+     * Desciende toda la pieza una posición en la matriz
      */
     public void moveDown()
     {
+        if(type < 0) {
+            return;
+        }
         // si el movimiento descendente es legal
-        if(canMoveDown()) {
-            for(int row = DEFAULT_ROWS - 1; row >= 0; row--) {
-                for(int col = DEFAULT_COLS - 1; col >= 0; col--) {
-                    Block block = getObjectAt(row,col);
-                    // Si hay un bloque y ste no est apilado
-                    if(block != null && !block.isStacked()) {
-                        // bajamos una fila el bloque y borramos anterior
-                        placePiece(block, row + 1, col);
-                        eraseCell(row,col);
-                    }
+        if(dropDistance() > 0) {
+            dropBy(1);
+        } else {
+            lock();
+        }
+        fireChanges();
+    }
+
+    /**
+     * Deja caer la pieza hasta el fondo y la fija en ese mismo momento
+     */
+    public void hardDrop()
+    {
+        if(type >= 0) {
+            dropBy(dropDistance());
+            lock();
+            fireChanges();
+        }
+    }
+
+    /**
+     * Avanza un fotograma del juego: la gravedad del nivel actual hace caer
+     * la pieza, que se fija cuando lleva en el fondo el retardo de bloqueo;
+     * si la pieza se fijó (en este fotograma o antes con moveDown o hardDrop)
+     * se hacen las líneas y aparece la siguiente pieza
+     * @return Las líneas hechas en este fotograma
+     */
+    public int tick()
+    {
+        if(type >= 0) {
+            int distance = dropDistance();
+            if(distance > 0) {
+                int gravity = gravityCurve.getGravity(level);
+                gravityAccumulator += gravity;
+                // con la gravedad máxima la pieza cae al fondo sea cual sea la altura de la matriz
+                int fall = gravity >= GravityCurve.MAX_GRAVITY ? distance
+                         : Math.min(gravityAccumulator / GravityCurve.G, distance);
+                if(fall > 0) {
+                    gravityAccumulator %= GravityCurve.G;
+                    dropBy(fall);
+                    distance -= fall;
                 }
             }
-        } else {
-            // Marcar todos los bloques como apilados
-            setStacked();
-            // el actual tetrimino se mezcla con el resto de bloques apilados
-            // de modo que ya no existe como pieza
-            tetrimino = null;
-        }
-    }
-    
-    /**
-     * Verifica que todos los elementos por debajo de los bloques de una pieza
-     * esten libres.
-     * @return True si la pieza puede descender, False en caso contrario
-     */
-    private boolean canMoveDown()
-    {
-            boolean check = true;
-            ArrayList<Block> currentPiece = getBlocksAtGrid();
-            for(Block pieceBlock : currentPiece) {
-                int row = pieceBlock.getRow();
-                int col = pieceBlock.getCol();
-                if(row+1 < DEFAULT_ROWS) {
-                    Block nextBlock = getObjectAt(row+1,col);
-                    if(nextBlock != null && nextBlock.isStacked()) {
-                        check = false;
-                    }
-                } else {
-                    check = false;
-                }    
+            if(distance == 0) {
+                // en el fondo la gravedad no acumula y empieza a contar el retardo
+                gravityAccumulator = 0;
+                if(++lockFrames > gravityCurve.getLockDelay()) {
+                    lock();
+                }
             }
-            return check;  
-        
+        }
+        int cleared = 0;
+        if(type < 0) {
+            cleared = searchLines();
+            lines += cleared;
+            level = Math.max(level, startLevel + lines / GravityCurve.LINES_PER_LEVEL);
+            createTetrimino();
+        }
+        fireChanges();
+        return cleared;
     }
-    
+
     /**
-     * Intenta girar la pieza 90 si hay espacio para tal movimiento
+     * Calcula cuántas filas puede caer la pieza móvil sin recorrer la matriz:
+     * para cada bloque de la pieza la distancia al primer bloque apilado de
+     * su columna sale de la máscara de la columna con numberOfTrailingZeros
+     * @return Las filas que la pieza puede bajar, 0 si está en el fondo
      */
-    public void turnPiece()
-    {
-        // si tiene espacio para girar, no ha girado ya 4 veces y no es ni palo ni cubo
-        if(perimeterFree() && tetrimino.getPositions() > 2 && turns < 4) {
-            // "cortamos" los bloques de su posicin original
-            Block zero0 = cutBlock(central.getRow()-1, central.getCol()-1);
-            Block zero1 = cutBlock(central.getRow()-1, central.getCol());
-            Block zero2 = cutBlock(central.getRow()-1, central.getCol()+1);
-            Block one0 = cutBlock(central.getRow(), central.getCol()-1);
-            Block one1 = central;
-            Block one2 = cutBlock(central.getRow(), central.getCol()+1);
-            Block two0 = cutBlock(central.getRow()+1, central.getCol()-1);
-            Block two1 = cutBlock(central.getRow()+1, central.getCol());
-            Block two2 = cutBlock(central.getRow()+1, central.getCol()+1);
-            
-            // los colocamos en sus nuevas posiciones excepto el central que no vara
-            placePiece(two0,central.getRow()-1, central.getCol()-1);
-            placePiece(one0,central.getRow()-1, central.getCol());
-            placePiece(zero0,central.getRow()-1, central.getCol()+1);
-            placePiece(two1,central.getRow(), central.getCol()-1);
-            placePiece(zero1,central.getRow(), central.getCol()+1);
-            placePiece(two2,central.getRow()+1, central.getCol()-1);
-            placePiece(one2,central.getRow()+1, central.getCol());
-            placePiece(zero2,central.getRow()+1, central.getCol()+1);
-            // actualizamos el contador de giros
-            turns++; 
-        // en el caso del tetrimino "stick"
-        }  else if (stickPerimeterFree() && tetrimino.getPositions() == 2 && turns < 4) {
-            turnStick();
-            turns++;
-        }    
-    }
-    
-    /**
-     * Verifica que todas las posiciones alrededor del bloque central
-     * sean vlidas para poder realizar los giros correctamente
-     * @return True si tiene un permetro libre para realizar el giro, false en caso contrario
-     */
-    private boolean perimeterFree()
+    public int dropDistance()
     {
-        boolean check = true;
-        for(int offsetY = central.getRow()-1; offsetY <= central.getRow()+1; offsetY++) {
-            for(int offsetX = central.getCol()-1; offsetX <= central.getCol()+1; offsetX++) {
-                // si las posiciones estn dentro de los lmites vlidos
-                if(offsetY >= 0 && offsetY < DEFAULT_ROWS && offsetX >= 0 && offsetX < DEFAULT_COLS) {
-                    Block block = getObjectAt(offsetY,offsetX);
-                    // si en esa posicion hay un bloque y est apilado no puede girar
-                    if(block != null && block.isStacked()) {
-                        check = false;
-                    }
-                // si el perimetro est fuera de limites vlidos no puede girar    
-                } else {
-                    check = false;
-                }    
+        if(type < 0) {
+            return 0;
+        }
+        int distance = rows;
+        int[] masks = pieces.masks[type][rot];
+        int last = pieces.maxRow[type][rot];
+        for(int i = pieces.minRow[type][rot]; i <= last; i++) {
+            int row = boxRow + i;
+            for(int bits = masks[i]; bits != 0; bits &= bits - 1) {
+                // bloques apilados por debajo del bloque, el más cercano en el bit 0
+                // (en la última fila de una matriz de 32 el desplazamiento sería 32, que no desplaza)
+                int column = stackedColumns[boxCol + Integer.numberOfTrailingZeros(bits)];
+                int below = row + 1 >= 32 ? 0 : column >>> (row + 1);
+                int free = below == 0 ? rows - 1 - row : Integer.numberOfTrailingZeros(below);
+                distance = Math.min(distance, free);
             }
         }
-        return check;
+        return distance;
     }
-    
-    /**
-     * Rota la pieza especfica "stick"
-     */
-    private void turnStick()
-    {
-        // "cortamos" los bloques de su posicin orginal la cual puede ser:
-        // (----) o bien:
-        // ( |  )
-        // ( |  )
-        // ( |  )
-        // ( |  )
-        Block zero1 = cutBlock(central.getRow()-1, central.getCol());
-        Block one0 = cutBlock(central.getRow(), central.getCol()-1);
-        Block one1 = central;
-        Block one2 = cutBlock(central.getRow(), central.getCol()+1);
-        Block one3 = cutBlock(central.getRow(), central.getCol()+2);
-        Block two1 = cutBlock(central.getRow()+1, central.getCol());
-        Block three1 = cutBlock(central.getRow()+2, central.getCol());
-        
-        // les colocamos en su nueva posicin girados 90    
-        placePiece(one0,central.getRow()-1, central.getCol());
-        placePiece(one2,central.getRow()+1, central.getCol());
-        placePiece(one3,central.getRow()+2, central.getCol());
-        placePiece(zero1,central.getRow(), central.getCol()-1);
-        placePiece(two1,central.getRow(), central.getCol()+1);
-        placePiece(three1,central.getRow(), central.getCol()+2);
-        
-    }
-    
-    /**
-     * Verifica que todas las posiciones alrededor del bloque central
-     * sean vlidas para poder realizar los giros correctamente para
-     * el caso especfico del stick
-     */
-    private boolean stickPerimeterFree()
+
+    /**
+     * Baja la pieza móvil varias filas de una vez, ya comprobadas con dropDistance
+     * @param distance Las filas que baja
+     */
+    private void dropBy(int distance)
     {
-        boolean check = true;
-        for(int offsetY = central.getRow()-1; offsetY <= central.getRow()+2; offsetY++) {
-            for(int offsetX = central.getCol()-1; offsetX <= central.getCol()+2; offsetX++) {
-                if(offsetY >= 0 && offsetY < DEFAULT_ROWS && offsetX >= 0 && offsetX < DEFAULT_COLS) {
-                    Block block = getObjectAt(offsetY,offsetX);
-                    if(block != null && block.isStacked()) {
-                        check = false;
-                    }
-                } else {
-                    check = false;
-                }    
+        if(distance == 0) {
+            return;
+        }
+        movePiece(rot, boxRow + distance, boxCol);
+        // al bajar se reinician los giros y el retardo de bloqueo
+        turns = 0;
+        lockFrames = 0;
+    }
+
+    /**
+     * Fija la pieza móvil en la pila
+     */
+    private void lock()
+    {
+        // Marcar todos los bloques como apilados
+        setStacked();
+        // el actual tetrimino se mezcla con el resto de bloques apilados
+        // de modo que ya no existe como pieza
+        type = -1;
+        gravityAccumulator = 0;
+        lockFrames = 0;
+    }
+
+    /**
+     * Cambia la curva de gravedad
+     * @param curve La nueva curva
+     */
+    public void setGravityCurve(GravityCurve curve)
+    {
+        gravityCurve = curve;
+    }
+
+    /**
+     * Cambia el nivel inicial, que también pasa a ser el nivel actual si es mayor
+     * @param startLevel El nivel con el que empieza la partida
+     */
+    public void setStartLevel(int startLevel)
+    {
+        this.startLevel = startLevel;
+        level = Math.max(level, startLevel);
+    }
+
+    /**
+     * @return El nivel actual
+     */
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * @return Lo que la gravedad acumulada ha acercado la pieza a la fila
+     *         siguiente, entre 0 y 1
+     */
+    public double getFallProgress()
+    {
+        return (double) gravityAccumulator / GravityCurve.G;
+    }
+
+    /**
+     * @return Las filas por fotograma que la gravedad hace bajar a la pieza,
+     *         o 0 si no puede bajar o cae al fondo de golpe
+     */
+    public double getFallSpeed()
+    {
+        int gravity = gravityCurve.getGravity(level);
+        if(gravity >= GravityCurve.MAX_GRAVITY || dropDistance() == 0) {
+            return 0;
+        }
+        return (double) gravity / GravityCurve.G;
+    }
+
+    /**
+     * @return Las líneas hechas desde el comienzo de la partida
+     */
+    public int getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * Intenta girar la pieza a su giro siguiente con las reglas de su juego
+     * de piezas: se prueban en orden los empujes del giro y se usa el primero
+     * en que la región que exige la regla de giro (toda la caja con los
+     * tetriminos clásicos) está dentro y libre y la pieza girada cabe. Una
+     * pieza solo puede girar MAX_TURNS veces antes de bajar una fila.
+     */
+    public void turnPiece()
+    {
+        if(type < 0) {
+            return;
+        }
+        int rotations = pieces.masks[type].length;
+        if(rotations > 1 && turns < MAX_TURNS) {
+            int next = rot + 1 == rotations ? 0 : rot + 1;
+            int[] kickX = pieces.kickX[type][rot], kickY = pieces.kickY[type][rot];
+            for(int k = 0; k < kickX.length; k++) {
+                int row = boxRow + kickY[k], col = boxCol + kickX[k];
+                if(regionFree(pieces.clearance[type][rot], pieces.clearMinRow[type][rot], pieces.clearMaxRow[type][rot],
+                              pieces.clearMinCol[type][rot], pieces.clearMaxCol[type][rot], row, col)
+                   && fits(next, row, col)) {
+                    movePiece(next, row, col);
+                    // actualizamos el contador de giros
+                    turns++;
+                    break;
+                }
             }
         }
-        return check;
+        fireChanges();
     }
-    
+
     /**
      * Verifica si existe una fila del grid completa con bloques
      * y los elimina en caso afirmativo (hacer "linea" en el juego original)
      * @param row La fila que queremos comprobar
-     * @return True si est llena de bloques, False en caso contrario
+     * @return True si está llena de bloques, False en caso contrario
      */
     private boolean line(int row)
     {
         boolean check = true;
-        for(int col = 0; col < DEFAULT_COLS; col++) {
-            // si hay alguna posicin vaca o no apilada devuelve false
-            if(getObjectAt(row,col) == null || !getObjectAt(row,col).isStacked()) {
+        for(int col = 0; col < cols; col++) {
+            // si hay alguna posición vacía o no apilada devuelve false
+            if(!isStacked(row,col)) {
                 check = false;
-            }    
+            }
         }
-        // si la lnea esta completa con bloques borra toda la lnea
+        // si la línea esta completa con bloques borra toda la línea
         if(check == true) {
-            for(int col = 0; col < DEFAULT_COLS; col++) {
+            for(int col = 0; col < cols; col++) {
                 eraseCell(row,col);
-                //return check;
             }
         }
         return check;
     }
-    
+
     /**
-     * Recorre la matriz de abajo a arriba buscando lneas completas
-     * y eliminndolas, moviendo hacia abajo los bloques superiores
+     * Recorre la matriz de abajo a arriba buscando líneas completas
+     * y eliminándolas, moviendo hacia abajo los bloques superiores
+     * @return El número de líneas eliminadas
      */
-    public void searchLines()
+    public int searchLines()
     {
-        for(int checkRow = DEFAULT_ROWS-1; checkRow > 0; checkRow--) {
-            // nos aseguramos que mientras existan "lneas" se eliminen y se bajen los de encima
+        int count = 0;
+        for(int checkRow = rows-1; checkRow > 0; checkRow--) {
+            // nos aseguramos que mientras existan "líneas" se eliminen y se bajen los de encima
             while(line(checkRow) == true) {
+                count++;
                 // desde la fila inmediatamente superior a la cual en la que hizo "linea"
                 for(int row = checkRow-1; row >= 0; row--) {
-                    for(int col = 0; col < DEFAULT_COLS; col++) {
-                        Block block = getObjectAt(row,col);
-                        if(block != null && row+1 < DEFAULT_ROWS) {
+                    for(int col = 0; col < cols; col++) {
+                        int value = cells[row * cols + col];
+                        if(value != Palette.EMPTY && row+1 < rows) {
                             // bajamos el bloque una fila y eliminamos el anterior
-                            placePiece(block, row+1, col);
+                            placePiece(value, row+1, col);
                             eraseCell(row,col);
                         }
                     }
                 }
             }
         }
+        fireChanges();
+        if(count > 0) {
+            for(ChangeListener listener : listeners) {
+                listener.linesCleared(count);
+            }
+        }
+        return count;
     }
-    
-   
+
+
 }
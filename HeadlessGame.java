@@ -0,0 +1,143 @@
+import java.util.Random;
+
+/**
+ * Una partida completa sin interfaz gráfica jugada por un bot sobre un
+ * Board. La secuencia de piezas depende solo de la semilla, así que dos
+ * partidas con la misma semilla reciben exactamente las mismas piezas.
+ * 
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class HeadlessGame
+{
+    // número de piezas siguientes que se muestran al bot
+    public static final int PREVIEW = Grid.PREVIEW_SIZE;
+
+    // el tablero de la partida
+    private final Board board;
+    // generador de la secuencia de piezas
+    private final Random random;
+    // la pieza actual y las siguientes
+    private int current;
+    private final int[] preview = new int[PREVIEW];
+    // la última jugada colocada
+    private int lastPlacement = Placement.NONE;
+    // estadísticas de la partida
+    private int lines, pieces;
+    private boolean over;
+
+    /**
+     * Prepara una partida nueva con un tablero de tamaño por defecto
+     * @param seed La semilla de la secuencia de piezas
+     */
+    public HeadlessGame(long seed)
+    {
+        board = new Board();
+        random = new Random(seed);
+        current = random.nextInt(PieceTable.TYPES);
+        for(int i = 0; i < PREVIEW; i++) {
+            preview[i] = random.nextInt(PieceTable.TYPES);
+        }
+    }
+
+    /**
+     * Coloca la pieza actual con la jugada del bot y pasa a la siguiente
+     * @param bot El bot que elige la jugada
+     * @return Las líneas hechas con esta pieza, o -1 si la partida ha terminado
+     */
+    public int step(Bot bot)
+    {
+        if(over) {
+            return -1;
+        }
+        int placement = bot.choose(board, current, preview, PREVIEW);
+        if(placement == Placement.NONE || !board.fits(current, Placement.rot(placement),
+                                                     Placement.x(placement), Placement.y(placement))) {
+            over = true;
+            return -1;
+        }
+        int cleared = board.place(current, placement);
+        lastPlacement = placement;
+        lines += cleared;
+        pieces++;
+        if(board.isTopOut()) {
+            over = true;
+        }
+        // avanzamos la cola de piezas
+        current = preview[0];
+        System.arraycopy(preview, 1, preview, 0, PREVIEW - 1);
+        preview[PREVIEW - 1] = random.nextInt(PieceTable.TYPES);
+        return cleared;
+    }
+
+    /**
+     * Juega la partida hasta el final o hasta un número máximo de piezas
+     * @param bot El bot que juega
+     * @param maxPieces El límite de piezas de la partida
+     * @return Las líneas hechas en toda la partida
+     */
+    public int play(Bot bot, int maxPieces)
+    {
+        while(!over && pieces < maxPieces) {
+            step(bot);
+        }
+        return lines;
+    }
+
+    /**
+     * @return El tablero de la partida
+     */
+    public Board getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * @return El tipo de la pieza que hay que colocar
+     */
+    public int getCurrent()
+    {
+        return current;
+    }
+
+    /**
+     * @param index La posición en la cola de piezas siguientes
+     * @return El tipo de la pieza en esa posición
+     */
+    public int getPreview(int index)
+    {
+        return preview[index];
+    }
+
+    /**
+     * @return La jugada de la última pieza colocada, o Placement.NONE
+     */
+    public int getLastPlacement()
+    {
+        return lastPlacement;
+    }
+
+    /**
+     * @return Las líneas hechas hasta ahora
+     */
+    public int getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * @return Las piezas colocadas hasta ahora
+     */
+    public int getPieces()
+    {
+        return pieces;
+    }
+
+    /**
+     * @return True si la partida ha terminado
+     */
+    public boolean isOver()
+    {
+        return over;
+    }
+}
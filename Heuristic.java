@@ -0,0 +1,115 @@
+/**
+ * Función de evaluación de tableros basada en una combinación lineal de
+ * características: altura total, líneas hechas, huecos, irregularidad de
+ * la superficie y profundidad de los pozos. Sirve también como política
+ * voraz para elegir la mejor jugada de una pieza.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class Heuristic implements BoardEvaluator
+{
+    // índices de cada peso dentro del vector de pesos
+    public static final int HEIGHT = 0, LINES = 1, HOLES = 2, BUMPINESS = 3, WELLS = 4;
+    // número de pesos de la heurística
+    public static final int FEATURES = 5;
+
+    // los pesos de cada característica
+    private final double[] weights;
+
+    /**
+     * Construye una heurística con unos pesos razonables por defecto
+     */
+    public Heuristic()
+    {
+        this(new double[] {-0.51, 0.76, -0.36, -0.18, -0.10});
+    }
+
+    /**
+     * Construye una heurística con unos pesos dados
+     * @param weights Los pesos en el orden HEIGHT, LINES, HOLES, BUMPINESS, WELLS
+     */
+    public Heuristic(double[] weights)
+    {
+        if(weights.length != FEATURES) {
+            throw new IllegalArgumentException("Se esperaban " + FEATURES + " pesos");
+        }
+        this.weights = weights.clone();
+    }
+
+    /**
+     * Acceso a uno de los pesos
+     * @param feature El índice de la característica
+     * @return El peso de esa característica
+     */
+    public double getWeight(int feature)
+    {
+        return weights[feature];
+    }
+
+    /**
+     * Evalúa un tablero tras colocar una pieza
+     * @param board El tablero resultante
+     * @param lines Las líneas hechas al colocar la pieza
+     * @return La puntuación, mayor cuanto mejor es el tablero
+     */
+    public double evaluate(Board board, int lines)
+    {
+        int[] heights = board.computeHeights();
+        int cols = heights.length;
+        int total = 0, bumpiness = 0, wells = 0;
+        for(int col = 0; col < cols; col++) {
+            int h = heights[col];
+            total += h;
+            if(col > 0) {
+                bumpiness += Math.abs(h - heights[col - 1]);
+            }
+            // las paredes cuentan como columnas infinitamente altas
+            int left = col > 0 ? heights[col - 1] : Integer.MAX_VALUE;
+            int right = col < cols - 1 ? heights[col + 1] : Integer.MAX_VALUE;
+            int depth = Math.min(left, right) - h;
+            if(depth > 0) {
+                wells += depth;
+            }
+        }
+        return weights[HEIGHT] * total + weights[LINES] * lines
+             + weights[HOLES] * board.countHoles() + weights[BUMPINESS] * bumpiness
+             + weights[WELLS] * wells;
+    }
+
+    /**
+     * Evalúa un lote de tableros uno a uno, ya que la heurística no gana
+     * nada agrupándolos
+     */
+    public void evaluateBatch(Board[] boards, int[] lines, int count, double[] out)
+    {
+        for(int i = 0; i < count; i++) {
+            out[i] = evaluate(boards[i], lines[i]);
+        }
+    }
+
+    /**
+     * Elige la jugada que deja el mejor tablero según esta heurística
+     * @param board El tablero actual, que no se modifica
+     * @param type El tipo de tetrimino que hay que colocar
+     * @param placements Las jugadas candidatas
+     * @param count El número de jugadas candidatas
+     * @param scratch Tablero de trabajo para probar cada jugada
+     * @return La mejor jugada, o Placement.NONE si no hay candidatas
+     */
+    public int choose(Board board, int type, int[] placements, int count, Board scratch)
+    {
+        int best = Placement.NONE;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < count; i++) {
+            scratch.copyFrom(board);
+            int lines = scratch.place(type, placements[i]);
+            double score = evaluate(scratch, lines);
+            if(score > bestScore) {
+                bestScore = score;
+                best = placements[i];
+            }
+        }
+        return best;
+    }
+}
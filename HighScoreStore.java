@@ -0,0 +1,860 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Almacén local de puntuaciones y estadísticas de las partidas acabadas
+ * (puntuación, líneas, nivel, duración, semilla, jugador y modo).
+ *
+ * Todos los datos están en memoria por columnas (un array por campo, con
+ * los nombres de jugadores y modos en una tabla de cadenas), con dos
+ * índices que se mantienen al añadir: las TOP_SIZE mejores partidas de cada
+ * modo y el orden por fecha para las consultas de intervalos. Las consultas
+ * no tocan el disco, así que tardan microsegundos aunque haya millones de
+ * partidas.
+ *
+ * En disco hay dos ficheros en el directorio del almacén:
+ *
+ * - scores.log, un registro de solo añadir: MAGIC, posición de su primera
+ *   partida y por cada partida su longitud, su suma CRC32 y sus campos. Un
+ *   registro cortado o dañado al final (caída durante la escritura) se
+ *   descarta al abrir.
+ * - scores.snap, la compactación: MAGIC, versión, número de partidas, la
+ *   tabla de cadenas, cada columna entera y la suma CRC32 de todo. Cuando
+ *   el registro pasa de COMPACT_RECORDS partidas (o de la cuarta parte del
+ *   total, si es mayor) se escribe una nueva en un temporal que después
+ *   reemplaza a la anterior y el registro vuelve a empezar vacío; así
+ *   abrir el almacén lee columnas seguidas en vez de millones de registros
+ *   sueltos.
+ *
+ * append solo actualiza la memoria y encola los bytes del registro: un
+ * hilo de escritura los escribe en lotes y hace las compactaciones, así que
+ * el hilo del juego nunca espera al disco.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class HighScoreStore
+{
+    // identificadores de los ficheros y versión de la compactación
+    private static final int LOG_MAGIC = 0x48534C31;
+    private static final int SNAPSHOT_MAGIC = 0x48535331;
+    public static final int VERSION = 1;
+    // bytes de la cabecera del registro y de la cabecera de cada partida
+    private static final int LOG_HEADER = 4 + 8;
+    private static final int RECORD_HEADER = 4 + 4;
+    // bytes fijos de una partida en el registro, sin los nombres
+    private static final int RECORD_FIELDS = 8 + 4 + 4 + 4 + 4 + 8;
+    // longitud máxima en bytes de un nombre de jugador o de modo
+    public static final int MAX_NAME_BYTES = 255;
+    // partidas que guarda el índice de mejores de cada modo
+    public static final int TOP_SIZE = 100;
+    // partidas del registro a partir de las cuales se compacta; con muchas
+    // partidas se espera a que el registro llegue a una cuarta parte del
+    // total, para que reescribir la compactación no cueste más que añadir
+    public static final int COMPACT_RECORDS = 65536;
+    // bytes que se escriben de cada vez en la compactación
+    private static final int SNAPSHOT_CHUNK = 1 << 16;
+    // marca en la cola de escritura que pide una compactación
+    private static final ByteBuffer COMPACT = ByteBuffer.allocate(0);
+    // marca en la cola de escritura que cierra el almacén
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    // el directorio del almacén
+    private final File directory;
+    // canal del registro, que solo usa el hilo de escritura una vez abierto
+    private FileChannel log;
+
+    // columnas de las partidas, en orden de inserción
+    private long[] dates = new long[0], seeds = new long[0];
+    private int[] scores = new int[0], lines = new int[0], levels = new int[0];
+    private int[] durations = new int[0], modes = new int[0], players = new int[0];
+    private int count;
+    // tabla de cadenas de jugadores y modos
+    private final List<String> names = new ArrayList<String>();
+    private final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+    // mejores partidas de cada modo (por identificador de cadena), de mejor a peor
+    private int[][] top = new int[0][];
+    private int[] topCount = new int[0];
+    // partidas ordenadas por fecha
+    private int[] byDate = new int[0];
+
+    // bytes de las partidas pendientes de escribir
+    private final LinkedBlockingQueue<ByteBuffer> pending = new LinkedBlockingQueue<ByteBuffer>();
+    // el hilo de escritura
+    private final Thread writer;
+    // partidas ya escritas en disco y partidas del registro actual
+    private int written, logRecords;
+    // primer error de escritura, que se lanza en flush y close
+    private IOException failure;
+    // si se ha cerrado el almacén
+    private boolean closed;
+
+    /**
+     * Abre o crea un almacén de puntuaciones en un directorio
+     * @param directory El directorio del almacén
+     */
+    public HighScoreStore(File directory) throws IOException
+    {
+        this.directory = directory;
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("No se puede crear el directorio " + directory);
+        }
+        readSnapshot();
+        log = new RandomAccessFile(logFile(), "rw").getChannel();
+        readLog();
+        written = count;
+        writer = new Thread(new Runnable() {
+            public void run() {
+                writeLoop();
+            }
+        }, "HighScoreStore");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Añade una partida acabada. Solo actualiza la memoria y encola su
+     * registro, así que se puede llamar desde el hilo del juego.
+     * @param mode El modo de juego
+     * @param player El nombre del jugador
+     * @param score La puntuación
+     * @param lineCount Las líneas hechas
+     * @param level El nivel alcanzado
+     * @param durationMillis La duración de la partida en milisegundos
+     * @param seed La semilla de la partida
+     * @param date La fecha de la partida en milisegundos
+     * @return La posición de la partida en el almacén
+     */
+    public synchronized int append(String mode, String player, int score, int lineCount, int level,
+                                   int durationMillis, long seed, long date)
+    {
+        if(closed) {
+            throw new IllegalStateException("El almacén de puntuaciones está cerrado");
+        }
+        byte[] modeBytes = nameBytes(mode);
+        byte[] playerBytes = nameBytes(player);
+        int entry = addEntry(date, score, lineCount, level, durationMillis, seed, nameId(mode), nameId(player));
+        int length = RECORD_FIELDS + 2 + modeBytes.length + 2 + playerBytes.length;
+        ByteBuffer out = ByteBuffer.allocate(RECORD_HEADER + length);
+        out.putInt(length);
+        out.putInt(0);
+        out.putLong(date).putInt(score).putInt(lineCount).putInt(level).putInt(durationMillis).putLong(seed);
+        out.putShort((short) modeBytes.length).put(modeBytes);
+        out.putShort((short) playerBytes.length).put(playerBytes);
+        out.putInt(4, crc(out, RECORD_HEADER, length));
+        out.flip();
+        pending.add(out);
+        return entry;
+    }
+
+    /**
+     * @return El número de partidas del almacén
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * Obtiene las mejores partidas de un modo. Empatan las puntuaciones
+     * iguales y se queda delante la que se jugó antes.
+     * @param mode El modo de juego
+     * @param n El número máximo de partidas (como mucho TOP_SIZE)
+     * @return Sus posiciones en el almacén, de mayor a menor puntuación
+     */
+    public synchronized int[] topScores(String mode, int n)
+    {
+        Integer id = nameIds.get(mode);
+        if(id == null || id >= top.length || top[id] == null) {
+            return new int[0];
+        }
+        return Arrays.copyOf(top[id], Math.min(n, topCount[id]));
+    }
+
+    /**
+     * Obtiene las partidas jugadas en un intervalo de fechas
+     * @param from La fecha inicial incluida, en milisegundos
+     * @param to La fecha final excluida, en milisegundos
+     * @return Sus posiciones en el almacén, ordenadas por fecha
+     */
+    public synchronized int[] between(long from, long to)
+    {
+        int first = lowerBound(from), last = lowerBound(to);
+        return Arrays.copyOfRange(byDate, first, Math.max(first, last));
+    }
+
+    /**
+     * Cuenta las partidas jugadas en un intervalo de fechas sin copiarlas
+     * @param from La fecha inicial incluida, en milisegundos
+     * @param to La fecha final excluida, en milisegundos
+     * @return El número de partidas
+     */
+    public synchronized int countBetween(long from, long to)
+    {
+        return Math.max(0, lowerBound(to) - lowerBound(from));
+    }
+
+    /**
+     * @param entry La posición en el almacén
+     * @return El modo de juego de la partida
+     */
+    public synchronized String getMode(int entry)
+    {
+        return names.get(modes[entry]);
+    }
+
+    /**
+     * @param entry La posición en el almacén
+     * @return El jugador de la partida
+     */
+    public synchronized String getPlayer(int entry)
+    {
+        return names.get(players[entry]);
+    }
+
+    /**
+     * @param entry La posición en el almacén
+     * @return La puntuación de la partida
+     */
+    public synchronized int getScore(int entry)
+    {
+        return scores[entry];
+    }
+
+    /**
+     * @param entry La posición en el almacén
+     * @return Las líneas hechas en la partida
+     */
+    public synchronized int getLines(int entry)
+    {
+        return lines[entry];
+    }
+
+    /**
+     * @param entry La posición en el almacén
+     * @return El nivel alcanzado en la partida
+     */
+    public synchronized int getLevel(int entry)
+    {
+        return levels[entry];
+    }
+
+    /**
+     * @param entry La posición en el almacén
+     * @return La duración de la partida en milisegundos
+     */
+    public synchronized int getDuration(int entry)
+    {
+        return durations[entry];
+    }
+
+    /**
+     * @param entry La posición en el almacén
+     * @return La semilla de la partida
+     */
+    public synchronized long getSeed(int entry)
+    {
+        return seeds[entry];
+    }
+
+    /**
+     * @param entry La posición en el almacén
+     * @return La fecha de la partida en milisegundos
+     */
+    public synchronized long getDate(int entry)
+    {
+        return dates[entry];
+    }
+
+    /**
+     * Pide al hilo de escritura una compactación en cuanto acabe lo pendiente
+     */
+    public void compact()
+    {
+        pending.add(COMPACT);
+    }
+
+    /**
+     * Espera a que todas las partidas añadidas estén escritas en disco
+     * @throws IOException si alguna escritura falló
+     */
+    public synchronized void flush() throws IOException
+    {
+        while(written < count && failure == null && writer.isAlive()) {
+            try {
+                wait();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Espera interrumpida al escribir las puntuaciones");
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Escribe lo pendiente, para el hilo de escritura y cierra el registro
+     * @throws IOException si alguna escritura falló
+     */
+    public void close() throws IOException
+    {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        }
+        pending.add(CLOSE);
+        try {
+            writer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized(this) {
+            log.close();
+            if(failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Bucle del hilo de escritura: escribe de una vez todas las partidas que
+     * haya en la cola y compacta cuando el registro crece demasiado o se pide
+     */
+    private void writeLoop()
+    {
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+        boolean running = true;
+        while(running) {
+            try {
+                batch.add(pending.take());
+            } catch(InterruptedException e) {
+                break;
+            }
+            pending.drainTo(batch);
+            boolean compactNow = false;
+            List<ByteBuffer> records = new ArrayList<ByteBuffer>(batch.size());
+            for(ByteBuffer buffer : batch) {
+                if(buffer == COMPACT) {
+                    compactNow = true;
+                } else if(buffer == CLOSE) {
+                    running = false;
+                } else {
+                    records.add(buffer);
+                }
+            }
+            batch.clear();
+            try {
+                writeRecords(records.toArray(new ByteBuffer[records.size()]));
+            } catch(IOException e) {
+                fail(e);
+            }
+            synchronized(this) {
+                written += records.size();
+                notifyAll();
+            }
+            if(compactNow || logRecords >= Math.max(COMPACT_RECORDS, written / 4)) {
+                try {
+                    writeSnapshot();
+                } catch(IOException e) {
+                    fail(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Guarda el primer error de escritura para lanzarlo en flush o close
+     */
+    private synchronized void fail(IOException e)
+    {
+        if(failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Escribe al final del registro los bytes de unas partidas
+     */
+    private void writeRecords(ByteBuffer[] records) throws IOException
+    {
+        if(records.length == 0) {
+            return;
+        }
+        long remaining = 0;
+        for(ByteBuffer record : records) {
+            remaining += record.remaining();
+        }
+        log.position(log.size());
+        while(remaining > 0) {
+            remaining -= log.write(records);
+        }
+        logRecords += records.length;
+    }
+
+    /**
+     * Escribe una compactación con todas las partidas ya escritas y deja el
+     * registro vacío a partir de ellas. Si se corta antes de vaciar el
+     * registro, al abrir se saltan las partidas del registro que ya están
+     * en la compactación.
+     */
+    private void writeSnapshot() throws IOException
+    {
+        // las columnas solo crecen por el final o se copian al crecer, así
+        // que las primeras partidas se pueden leer fuera del cerrojo
+        int n;
+        long[] d, s;
+        int[] sc, li, le, du, mo, pl;
+        String[] table;
+        synchronized(this) {
+            n = written;
+            d = dates; s = seeds; sc = scores; li = lines; le = levels;
+            du = durations; mo = modes; pl = players;
+            table = names.toArray(new String[names.size()]);
+        }
+        File temp = new File(directory, "scores.snap.tmp");
+        CRC32 crc = new CRC32();
+        ByteBuffer out = ByteBuffer.allocate(SNAPSHOT_CHUNK);
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            out.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putInt(n).putInt(table.length);
+            for(String name : table) {
+                byte[] bytes = nameBytes(name);
+                if(out.remaining() < 2 + bytes.length) {
+                    drain(channel, out, crc);
+                }
+                out.putShort((short) bytes.length).put(bytes);
+            }
+            for(long[] column : new long[][] {d, s}) {
+                for(int i = 0; i < n; i++) {
+                    if(out.remaining() < 8) {
+                        drain(channel, out, crc);
+                    }
+                    out.putLong(column[i]);
+                }
+            }
+            for(int[] column : new int[][] {sc, li, le, du, mo, pl}) {
+                for(int i = 0; i < n; i++) {
+                    if(out.remaining() < 4) {
+                        drain(channel, out, crc);
+                    }
+                    out.putInt(column[i]);
+                }
+            }
+            drain(channel, out, crc);
+            out.putInt((int) crc.getValue());
+            drain(channel, out, crc);
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+        Files.move(temp.toPath(), snapshotFile().toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        // el registro vuelve a empezar en la primera partida que no está en la compactación
+        log.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER);
+        header.putInt(LOG_MAGIC).putLong(n).flip();
+        while(header.hasRemaining()) {
+            log.write(header, header.position());
+        }
+        logRecords = 0;
+    }
+
+    /**
+     * Escribe en el canal lo acumulado en el buffer, sumándolo al CRC32, y lo vacía
+     */
+    private static void drain(FileChannel channel, ByteBuffer out, CRC32 crc) throws IOException
+    {
+        out.flip();
+        crc.update(out.duplicate());
+        while(out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Lee la compactación, si existe, cargando sus columnas de una vez
+     */
+    private void readSnapshot() throws IOException
+    {
+        File file = snapshotFile();
+        if(!file.isFile()) {
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        ByteBuffer in;
+        try {
+            in = read(raf.getChannel());
+        } finally {
+            raf.close();
+        }
+        if(in.remaining() < 4 + 4 + 4 + 4 + 4 || in.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Formato de puntuaciones no reconocido en " + file);
+        }
+        int version = in.getInt();
+        if(version != VERSION) {
+            throw new IOException("Versión de puntuaciones no soportada: " + version);
+        }
+        int end = in.limit() - 4;
+        if(crc(in, 0, end) != in.getInt(end)) {
+            throw new IOException("Puntuaciones dañadas en " + file + ": la suma CRC32 no coincide");
+        }
+        int n = in.getInt();
+        int tableSize = in.getInt();
+        for(int i = 0; i < tableSize; i++) {
+            nameId(readName(in));
+        }
+        grow(n);
+        in.asLongBuffer().get(dates, 0, n);
+        in.position(in.position() + 8 * n);
+        in.asLongBuffer().get(seeds, 0, n);
+        in.position(in.position() + 8 * n);
+        for(int[] column : new int[][] {scores, lines, levels, durations, modes, players}) {
+            in.asIntBuffer().get(column, 0, n);
+            in.position(in.position() + 4 * n);
+        }
+        if(in.position() != end) {
+            throw new IOException("Longitud de puntuaciones incorrecta en " + file);
+        }
+        for(int entry = 0; entry < n; entry++) {
+            count++;
+            index(entry);
+        }
+    }
+
+    /**
+     * Lee las partidas del registro que no están en la compactación y corta
+     * el registro tras la última partida completa
+     */
+    private void readLog() throws IOException
+    {
+        ByteBuffer in = read(log);
+        if(in.remaining() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER);
+            header.putInt(LOG_MAGIC).putLong(count).flip();
+            while(header.hasRemaining()) {
+                log.write(header, header.position());
+            }
+            return;
+        }
+        if(in.remaining() < LOG_HEADER || in.getInt() != LOG_MAGIC) {
+            throw new IOException("Formato de registro de puntuaciones no reconocido en " + logFile());
+        }
+        long base = in.getLong();
+        if(base > count) {
+            throw new IOException("Faltan partidas entre la compactación y el registro de puntuaciones");
+        }
+        long entry = base;
+        // una partida cortada o dañada al final (escritura cortada) se descarta
+        while(in.remaining() >= RECORD_HEADER) {
+            int start = in.position();
+            int length = in.getInt();
+            int crc = in.getInt();
+            if(length < RECORD_FIELDS + 2 + 2 || length > in.remaining()
+               || crc(in, in.position(), length) != crc) {
+                in.position(start);
+                break;
+            }
+            long date = in.getLong();
+            int score = in.getInt(), lineCount = in.getInt(), level = in.getInt(), duration = in.getInt();
+            long seed = in.getLong();
+            String mode = readName(in);
+            String player = readName(in);
+            if(entry >= count) {
+                addEntry(date, score, lineCount, level, duration, seed, nameId(mode), nameId(player));
+            }
+            entry++;
+            logRecords++;
+        }
+        if(in.hasRemaining()) {
+            log.truncate(in.position());
+        }
+    }
+
+    /**
+     * Lee un fichero entero en un buffer del heap
+     */
+    private static ByteBuffer read(FileChannel channel) throws IOException
+    {
+        ByteBuffer in = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+        while(in.hasRemaining()) {
+            if(channel.read(in, in.position()) < 0) {
+                break;
+            }
+        }
+        in.flip();
+        return in;
+    }
+
+    /**
+     * Lee un nombre: su longitud en bytes y sus bytes en UTF-8
+     */
+    private static String readName(ByteBuffer in) throws IOException
+    {
+        int length = in.getShort() & 0xFFFF;
+        if(length > in.remaining()) {
+            throw new IOException("Nombre de puntuaciones incompleto");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Los bytes en UTF-8 de un nombre de jugador o de modo
+     */
+    private static byte[] nameBytes(String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Nombre demasiado largo: " + name);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return El identificador de un nombre en la tabla de cadenas, que se añade si no estaba
+     */
+    private int nameId(String name)
+    {
+        Integer id = nameIds.get(name);
+        if(id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Añade una partida a las columnas y a los índices
+     * @return Su posición en el almacén
+     */
+    private int addEntry(long date, int score, int lineCount, int level, int duration, long seed,
+                         int mode, int player)
+    {
+        grow(count + 1);
+        dates[count] = date;
+        scores[count] = score;
+        lines[count] = lineCount;
+        levels[count] = level;
+        durations[count] = duration;
+        seeds[count] = seed;
+        modes[count] = mode;
+        players[count] = player;
+        count++;
+        index(count - 1);
+        return count - 1;
+    }
+
+    /**
+     * Asegura sitio en las columnas para un número de partidas
+     */
+    private void grow(int needed)
+    {
+        if(needed <= dates.length) {
+            return;
+        }
+        int capacity = Math.max(needed, Math.max(16, dates.length * 2));
+        dates = Arrays.copyOf(dates, capacity);
+        seeds = Arrays.copyOf(seeds, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        modes = Arrays.copyOf(modes, capacity);
+        players = Arrays.copyOf(players, capacity);
+        byDate = Arrays.copyOf(byDate, capacity);
+    }
+
+    /**
+     * Añade la última partida al índice de mejores de su modo y al de
+     * fechas. Las partidas llegan casi siempre en orden de fecha, así que
+     * en el de fechas normalmente basta con ponerla al final.
+     */
+    private void index(int entry)
+    {
+        int mode = modes[entry];
+        if(mode >= top.length) {
+            top = Arrays.copyOf(top, Math.max(mode + 1, top.length * 2));
+            topCount = Arrays.copyOf(topCount, top.length);
+        }
+        if(top[mode] == null) {
+            top[mode] = new int[TOP_SIZE];
+        }
+        int[] best = top[mode];
+        int size = topCount[mode];
+        int position = size;
+        while(position > 0 && scores[best[position - 1]] < scores[entry]) {
+            position--;
+        }
+        if(position < TOP_SIZE) {
+            int moved = Math.min(size, TOP_SIZE - 1) - position;
+            System.arraycopy(best, position, best, position + 1, moved);
+            best[position] = entry;
+            topCount[mode] = Math.min(size + 1, TOP_SIZE);
+        }
+
+        int last = entry;
+        long date = dates[entry];
+        int slot = last;
+        if(last > 0 && dates[byDate[last - 1]] > date) {
+            slot = upperBound(date, last);
+            System.arraycopy(byDate, slot, byDate, slot + 1, last - slot);
+        }
+        byDate[slot] = entry;
+    }
+
+    /**
+     * @return La primera posición del orden por fecha con fecha mayor o igual
+     */
+    private int lowerBound(long date)
+    {
+        int low = 0, high = count;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(dates[byDate[mid]] < date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return La primera posición de las n primeras del orden por fecha con fecha mayor
+     */
+    private int upperBound(long date, int n)
+    {
+        int low = 0, high = n;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(dates[byDate[mid]] <= date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Calcula la suma CRC32 de una parte de un buffer sin moverlo
+     */
+    private static int crc(ByteBuffer buffer, int offset, int length)
+    {
+        ByteBuffer part = buffer.duplicate();
+        part.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(part);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return El fichero del registro
+     */
+    private File logFile()
+    {
+        return new File(directory, "scores.log");
+    }
+
+    /**
+     * @return El fichero de la compactación
+     */
+    private File snapshotFile()
+    {
+        return new File(directory, "scores.snap");
+    }
+
+    /**
+     * Rutina main que llena un almacén con partidas al azar y mide cuánto
+     * tardan en abrirse y en responder las consultas
+     *
+     * Uso: java HighScoreStore directorio [partidas]
+     */
+    public static void main(String[] args) throws IOException
+    {
+        File directory = new File(args.length > 0 ? args[0] : "scores");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        String[] gameModes = {"clásico", "sprint", "bot"};
+        HighScoreStore store = new HighScoreStore(directory);
+        Random random = new Random(games);
+        // las partidas nuevas siguen a la última, como al jugarlas
+        long date = store.size() > 0 ? store.getDate(store.size() - 1) : System.currentTimeMillis() - 1000L * games;
+        long start = System.nanoTime();
+        int added = 0;
+        while(store.size() < games) {
+            date += random.nextInt(2000);
+            int lineCount = random.nextInt(300);
+            store.append(gameModes[random.nextInt(gameModes.length)], "jugador" + random.nextInt(50),
+                         lineCount * (100 + random.nextInt(400)), lineCount, lineCount / 10,
+                         random.nextInt(1800000), random.nextLong(), date);
+            added++;
+        }
+        long appended = System.nanoTime();
+        store.flush();
+        long flushed = System.nanoTime();
+        store.close();
+        System.out.printf("%d partidas añadidas: %.3f µs por append, %.1f ms hasta escribirlas%n",
+                          added, added == 0 ? 0 : (appended - start) / 1e3 / added, (flushed - start) / 1e6);
+
+        start = System.nanoTime();
+        store = new HighScoreStore(directory);
+        System.out.printf("apertura con %d partidas: %.1f ms%n", store.size(), (System.nanoTime() - start) / 1e6);
+        long first = store.size() > 0 ? store.getDate(store.between(Long.MIN_VALUE, Long.MAX_VALUE)[0]) : 0;
+        long last = store.size() > 0 ? store.getDate(store.size() - 1) : 0;
+        long checksum = 0;
+        int queries = 10000;
+        for(int round = 0; round < 2; round++) {
+            start = System.nanoTime();
+            for(int i = 0; i < queries; i++) {
+                checksum += store.topScores(gameModes[i % gameModes.length], 10).length;
+            }
+            long topNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < queries; i++) {
+                long from = first + (long) ((last - first) * random.nextDouble());
+                checksum += store.between(from, from + 86400000L).length;
+            }
+            long dayNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < queries; i++) {
+                long from = first + (long) ((last - first) * random.nextDouble());
+                checksum += store.countBetween(from, from + 30 * 86400000L);
+            }
+            long monthNanos = System.nanoTime() - start;
+            System.out.printf("top 10: %.2f µs, partidas de un día: %.2f µs, cuenta de un mes: %.2f µs%n",
+                              topNanos / 1e3 / queries, dayNanos / 1e3 / queries, monthNanos / 1e3 / queries);
+        }
+        for(int entry : store.topScores(gameModes[0], 3)) {
+            System.out.printf("%-10s %-10s %8d puntos %4d líneas%n", store.getMode(entry),
+                              store.getPlayer(entry), store.getScore(entry), store.getLines(entry));
+        }
+        // la suma se usa para que el compilador no descarte las consultas
+        if(checksum == 42) {
+            System.out.print("");
+        }
+        store.close();
+    }
+}
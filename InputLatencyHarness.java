@@ -0,0 +1,207 @@
+import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Mide la latencia de extremo a extremo de las entradas del juego: inyecta
+ * pulsaciones de teclas en la cola de eventos de AWT, tal y como las recibe
+ * ArrowListener, y mide el tiempo hasta que GameView pinta el primer
+ * fotograma cuya copia del estado ya incluye esa entrada. Repite la medida con distintos niveles
+ * de gravedad y distintos llenados del tablero y muestra los percentiles.
+ *
+ * Necesita una pantalla, que puede ser virtual (por ejemplo con
+ * xvfb-run java InputLatencyHarness). Si la ventana no recibe el foco del
+ * teclado, como pasa sin gestor de ventanas, los eventos no llegan al
+ * oyente; en ese caso el arnés pasa a entregarlos a los oyentes de la
+ * ventana desde la propia cola de eventos.
+ *
+ * Uso: java InputLatencyHarness [muestras por caso]
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class InputLatencyHarness
+{
+    // niveles de gravedad y filas llenas de cada caso
+    private static final int[] LEVELS = {0, 10, 20};
+    private static final int[] FILLS = {0, 8, 16};
+    // teclas inyectadas, que no fijan la pieza
+    private static final int[] KEYS = {KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT, KeyEvent.VK_UP};
+    // filas superiores que, si tienen bloques apilados, hacen reiniciar el tablero
+    private static final int DANGER_ROWS = 6;
+    // tiempo máximo de espera de una medida
+    private static final long TIMEOUT_NANOS = 1000000000L;
+
+    // el juego medido y su vista
+    private Tetris tetris;
+    private GameView view;
+    // momento de la inyección pendiente, entradas encoladas al procesarla y latencia medida
+    private volatile long injected = -1;
+    private volatile int expected;
+    private volatile long latency = -1;
+    // si los eventos se entregan directamente a los oyentes por falta de foco
+    private boolean direct;
+    // aleatorio de las teclas y de las pausas entre muestras
+    private final Random random = new Random(1);
+
+    /**
+     * Arranca el juego en el hilo de eventos y engancha los oyentes de medida
+     */
+    public InputLatencyHarness() throws Exception
+    {
+        EventQueue.invokeAndWait(new Runnable() {
+            public void run() {
+                tetris = new Tetris();
+                view = tetris.getGameView();
+                // se añade después de ArrowListener, así que se llama cuando la tecla ya está encolada
+                view.addKeyListener(new KeyAdapter() {
+                    public void keyPressed(KeyEvent e) {
+                        if(injected >= 0) {
+                            expected = tetris.getEngine().getQueued();
+                        }
+                    }
+                });
+                view.addFrameListener(new GameView.FrameListener() {
+                    public void framePainted(long nanoTime) {
+                        GameSnapshot painted = view.getPainted();
+                        if(expected > 0 && latency < 0 && painted != null && painted.getInputs() >= expected) {
+                            latency = nanoTime - injected;
+                        }
+                    }
+                });
+                view.toFront();
+                view.requestFocus();
+            }
+        });
+    }
+
+    /**
+     * Mide un caso de nivel y llenado
+     * @param level El nivel de gravedad
+     * @param fill Las filas inferiores llenas
+     * @param samples El número de medidas
+     * @return Las latencias medidas en nanosegundos, ordenadas
+     */
+    public long[] measure(final int level, final int fill, int samples) throws Exception
+    {
+        prepare(level, fill, true);
+        long[] latencies = new long[samples];
+        int count = 0;
+        while(count < samples) {
+            prepare(level, fill, false);
+            long result = sample(KEYS[random.nextInt(KEYS.length)]);
+            if(result >= 0) {
+                latencies[count++] = result;
+            } else if(!direct) {
+                direct = true;
+                System.out.println("La ventana no recibe el foco: se entregan los eventos a sus oyentes");
+            } else {
+                throw new IllegalStateException("No se pintó ningún fotograma tras la entrada");
+            }
+            // pausa irregular para no sincronizarse con el temporizador del juego
+            Thread.sleep(10 + random.nextInt(30));
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    /**
+     * Ajusta el nivel y reinicia el tablero con el llenado del caso si se
+     * pide o si la pila se acerca arriba, para que la partida no acabe
+     */
+    private void prepare(final int level, final int fill, final boolean always) throws Exception
+    {
+        // el grid solo se puede tocar desde el hilo del motor
+        final CountDownLatch done = new CountDownLatch(1);
+        tetris.getEngine().execute(new Runnable() {
+            public void run() {
+                Grid grid = tetris.getGrid();
+                boolean danger = false;
+                for(int row = 0; row < DANGER_ROWS; row++) {
+                    for(int col = 0; col < grid.getWidth(); col++) {
+                        if(grid.isStacked(row, col)) {
+                            danger = true;
+                        }
+                    }
+                }
+                if(always || danger) {
+                    grid.setStartLevel(level);
+                    grid.clear();
+                    grid.fillBottom(fill, level * 31 + fill);
+                }
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    /**
+     * Inyecta una tecla y espera al fotograma que la muestra
+     * @param keyCode La tecla
+     * @return La latencia en nanosegundos, o -1 si no se llegó a procesar
+     */
+    private long sample(int keyCode) throws InterruptedException
+    {
+        latency = -1;
+        expected = 0;
+        final KeyEvent event = new KeyEvent(view, KeyEvent.KEY_PRESSED, System.currentTimeMillis(), 0,
+                                            keyCode, KeyEvent.CHAR_UNDEFINED);
+        injected = System.nanoTime();
+        if(direct) {
+            EventQueue.invokeLater(new Runnable() {
+                public void run() {
+                    for(KeyListener listener : view.getKeyListeners()) {
+                        listener.keyPressed(event);
+                    }
+                }
+            });
+        } else {
+            Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(event);
+        }
+        long deadline = injected + TIMEOUT_NANOS;
+        while(latency < 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        long result = latency;
+        injected = -1;
+        return result;
+    }
+
+    /**
+     * @return El valor de un percentil de unas latencias ordenadas, en milisegundos
+     */
+    private static double percentile(long[] sorted, double p)
+    {
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    /**
+     * Rutina main que mide todos los casos y muestra sus percentiles
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if(GraphicsEnvironment.isHeadless()) {
+            System.err.println("Se necesita una pantalla; se puede usar una virtual: xvfb-run java InputLatencyHarness");
+            System.exit(1);
+        }
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        InputLatencyHarness harness = new InputLatencyHarness();
+        System.out.println("nivel llenado    p50 ms    p90 ms    p99 ms    máx ms");
+        for(int level : LEVELS) {
+            for(int fill : FILLS) {
+                long[] latencies = harness.measure(level, fill, samples);
+                System.out.printf("%5d %7d %9.2f %9.2f %9.2f %9.2f%n", level, fill,
+                                  percentile(latencies, 50), percentile(latencies, 90),
+                                  percentile(latencies, 99), latencies[latencies.length - 1] / 1e6);
+            }
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Registro de las entradas de una partida de Tetris junto con la suma de
+ * comprobación del estado después de aplicar cada una. Como la partida
+ * solo depende de la semilla y de las entradas, otro jugador o un
+ * verificador de repeticiones puede aplicar las mismas entradas y comparar
+ * las sumas para saber en qué paso exacto se separaron los dos estados.
+ *
+ * Formato (big-endian): MAGIC, semilla, filas, columnas, número de
+ * entradas y, por cada entrada, el paso de gravedad, la entrada y la suma.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class InputLog
+{
+    // las entradas posibles
+    public static final int LEFT = 0, RIGHT = 1, TURN = 2, DOWN = 3, GRAVITY = 4, RESET = 5, HARD_DROP = 6;
+    // identificador del formato
+    private static final int MAGIC = 0x494E5031;
+
+    // semilla y dimensiones de la partida
+    private final long seed;
+    private final int rows, cols;
+    // pasos de gravedad, entradas y sumas de cada entrada registrada
+    private int[] ticks = new int[256];
+    private byte[] inputs = new byte[256];
+    private long[] checksums = new long[256];
+    private int count;
+    // pasos de gravedad transcurridos
+    private int tick;
+
+    /**
+     * Crea un registro vacío para una partida
+     * @param seed La semilla de la partida
+     * @param rows Las filas de la matriz
+     * @param cols Las columnas de la matriz
+     */
+    public InputLog(long seed, int rows, int cols)
+    {
+        this.seed = seed;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Aplica una entrada a la matriz igual que lo hace Tetris
+     * @param grid La matriz del juego
+     * @param input La entrada
+     */
+    public static void apply(Grid grid, int input)
+    {
+        if(input == LEFT) {
+            grid.moveLeft();
+        } else if(input == RIGHT) {
+            grid.moveRight();
+        } else if(input == TURN) {
+            grid.turnPiece();
+        } else if(input == DOWN) {
+            grid.moveDown();
+        } else if(input == GRAVITY) {
+            grid.tick();
+        } else if(input == HARD_DROP) {
+            grid.hardDrop();
+        } else if(input == RESET) {
+            grid.clear();
+        }
+    }
+
+    /**
+     * Registra una entrada ya aplicada y la suma del estado resultante
+     * @param input La entrada
+     * @param checksum La suma de comprobación después de aplicarla
+     */
+    public void record(int input, long checksum)
+    {
+        if(input == GRAVITY) {
+            tick++;
+        }
+        add(tick, input, checksum);
+    }
+
+    /**
+     * Añade una entrada al final del registro
+     */
+    private void add(int tick, int input, long checksum)
+    {
+        if(count == inputs.length) {
+            ticks = Arrays.copyOf(ticks, count * 2);
+            inputs = Arrays.copyOf(inputs, count * 2);
+            checksums = Arrays.copyOf(checksums, count * 2);
+        }
+        ticks[count] = tick;
+        inputs[count] = (byte) input;
+        checksums[count] = checksum;
+        count++;
+    }
+
+    /**
+     * @return La semilla de la partida
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return Las filas de la matriz
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * @return Las columnas de la matriz
+     */
+    public int getCols()
+    {
+        return cols;
+    }
+
+    /**
+     * @return El número de entradas registradas
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param index La posición de la entrada
+     * @return El paso de gravedad en que se produjo
+     */
+    public int getTick(int index)
+    {
+        return ticks[index];
+    }
+
+    /**
+     * @param index La posición de la entrada
+     * @return La entrada
+     */
+    public int getInput(int index)
+    {
+        return inputs[index];
+    }
+
+    /**
+     * @param index La posición de la entrada
+     * @return La suma de comprobación después de aplicarla
+     */
+    public long getChecksum(int index)
+    {
+        return checksums[index];
+    }
+
+    /**
+     * Guarda el registro en un fichero
+     * @param file El fichero
+     */
+    public void save(File file) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(seed);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(count);
+            for(int i = 0; i < count; i++) {
+                out.writeInt(ticks[i]);
+                out.writeByte(inputs[i]);
+                out.writeLong(checksums[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Lee un registro guardado con save
+     * @param file El fichero
+     * @return El registro leído
+     */
+    public static InputLog load(File file) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if(in.readInt() != MAGIC) {
+                throw new IOException("Formato de registro de entradas no reconocido: " + file);
+            }
+            InputLog log = new InputLog(in.readLong(), in.readInt(), in.readInt());
+            int entries = in.readInt();
+            for(int i = 0; i < entries; i++) {
+                log.tick = in.readInt();
+                log.add(log.tick, in.readByte(), in.readLong());
+            }
+            return log;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Evaluador de Monte Carlo para elegir la jugada de la pieza actual.
+ * Para cada jugada alcanzable se juegan muchas partidas simuladas de unas
+ * pocas piezas futuras (al azar o siguiendo una heurística) y se promedia
+ * el resultado: líneas hechas y supervivencia, más la valoración del tablero
+ * final cuando las simulaciones siguen una heurística. Las simulaciones se reparten
+ * entre los hilos de un ForkJoinPool (con robo de trabajo) y cada hilo usa
+ * su propio generador aleatorio y sus propios tableros de trabajo.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class MonteCarloEvaluator
+{
+    // número de piezas futuras simuladas por defecto en cada partida
+    public static final int DEFAULT_DEPTH = 3;
+    // valor de cada línea hecha durante una simulación
+    private static final double LINE_VALUE = 1.0;
+    // penalización por llegar arriba del tablero durante una simulación
+    private static final double TOP_OUT_PENALTY = 1000.0;
+    // indica que solo hay límite de tiempo y no de simulaciones
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+    // simulaciones por tarea en cada ronda cuando solo hay límite de tiempo
+    private static final int ROUND = 4;
+
+    // el pool de hilos con robo de trabajo
+    private final ForkJoinPool pool;
+    // número de piezas futuras de cada simulación
+    private final int depth;
+    // heurística para guiar las simulaciones, o null para jugarlas al azar
+    private final Heuristic policy;
+    // tableros y arrays de trabajo de cada hilo
+    private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    // resultados de la última evaluación, por tarea (el evaluador no
+    // admite búsquedas simultáneas desde varios hilos)
+    private double[] sums = new double[0];
+    private int[] counts = new int[0];
+
+    /**
+     * Construye un evaluador con simulaciones al azar de profundidad por defecto
+     * que usa todos los procesadores disponibles
+     */
+    public MonteCarloEvaluator()
+    {
+        this(DEFAULT_DEPTH, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construye un evaluador
+     * @param depth Las piezas futuras que se simulan tras cada candidata
+     * @param policy La heurística que guía las simulaciones, o null para jugar al azar
+     * @param parallelism El número de hilos que se usan
+     */
+    public MonteCarloEvaluator(int depth, Heuristic policy, int parallelism)
+    {
+        this.depth = depth;
+        this.policy = policy;
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Elige la mejor jugada agotando un presupuesto de tiempo, por ejemplo
+     * "la mejor jugada en 5 ms". Siempre devuelve la mejor encontrada hasta
+     * el momento en que se acaba el tiempo.
+     * @param board El tablero con los bloques apilados
+     * @param type El tipo de la pieza actual
+     * @param budgetNanos El tiempo disponible en nanosegundos
+     * @return La mejor jugada, o Placement.NONE si la pieza no cabe
+     */
+    public int bestMoveWithin(Board board, int type, long budgetNanos)
+    {
+        return search(board, type, UNLIMITED, System.nanoTime() + budgetNanos);
+    }
+
+    /**
+     * Elige la mejor jugada con un número fijo de simulaciones por candidata
+     * @param board El tablero con los bloques apilados
+     * @param type El tipo de la pieza actual
+     * @param playouts Las simulaciones que se juegan por cada candidata
+     * @return La mejor jugada, o Placement.NONE si la pieza no cabe
+     */
+    public int bestMove(Board board, int type, int playouts)
+    {
+        return search(board, type, playouts, Long.MAX_VALUE);
+    }
+
+    /**
+     * Detiene los hilos del evaluador
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Reparte las simulaciones de todas las candidatas entre los hilos
+     * y elige la de mayor resultado medio
+     */
+    private int search(Board board, int type, int playouts, long deadline)
+    {
+        int[] candidates = new int[Placement.MAX];
+        int count = workspace.get().generator.generate(board, type, candidates);
+        if(count <= 1) {
+            return count == 0 ? Placement.NONE : candidates[0];
+        }
+        // troceamos cada candidata para que todos los hilos tengan trabajo
+        int chunks = Math.max(1, (2 * pool.getParallelism() + count - 1) / count);
+        int tasks = count * chunks;
+        if(sums.length < tasks) {
+            sums = new double[tasks];
+            counts = new int[tasks];
+        }
+        PlayoutTask[] work = new PlayoutTask[tasks];
+        for(int i = 0; i < tasks; i++) {
+            sums[i] = 0;
+            counts[i] = 0;
+            int share = playouts == UNLIMITED ? ROUND
+                      : playouts / chunks + (i % chunks < playouts % chunks ? 1 : 0);
+            work[i] = new PlayoutTask(i, board, type, candidates[i / chunks], share, deadline);
+        }
+        RootTask root = new RootTask(work);
+        pool.invoke(root);
+        // con límite de tiempo se juegan rondas cortas para todas las candidatas
+        // hasta agotarlo, así ninguna se queda sin simulaciones
+        while(playouts == UNLIMITED && System.nanoTime() < deadline) {
+            root.reinitialize();
+            for(PlayoutTask task : work) {
+                task.reinitialize();
+            }
+            pool.invoke(root);
+        }
+
+        int best = Placement.NONE;
+        double bestMean = Double.NEGATIVE_INFINITY;
+        for(int c = 0; c < count; c++) {
+            double sum = 0;
+            int n = 0;
+            for(int i = c * chunks; i < (c + 1) * chunks; i++) {
+                sum += sums[i];
+                n += counts[i];
+            }
+            double mean = n > 0 ? sum / n : Double.NEGATIVE_INFINITY;
+            if(mean > bestMean) {
+                bestMean = mean;
+                best = candidates[c];
+            }
+        }
+        // si no dio tiempo a ninguna simulación nos quedamos con la primera
+        return best == Placement.NONE ? candidates[0] : best;
+    }
+
+    /**
+     * Juega una simulación desde el tablero de trabajo de la candidata
+     * @param ws Los datos de trabajo del hilo actual
+     * @return El resultado de la simulación
+     */
+    private double playout(Workspace ws)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ws.board.copyFrom(ws.start);
+        double outcome = 0;
+        for(int step = 0; step < depth; step++) {
+            int type = random.nextInt(PieceTable.TYPES);
+            int count = ws.generator.generate(ws.board, type, ws.placements);
+            int placement;
+            if(policy != null) {
+                placement = policy.choose(ws.board, type, ws.placements, count, ws.scratch);
+            } else {
+                placement = count == 0 ? Placement.NONE : ws.placements[random.nextInt(count)];
+            }
+            if(placement == Placement.NONE) {
+                return outcome - TOP_OUT_PENALTY;
+            }
+            outcome += LINE_VALUE * ws.board.place(type, placement);
+            if(ws.board.isTopOut()) {
+                return outcome - TOP_OUT_PENALTY;
+            }
+        }
+        if(policy != null) {
+            outcome += policy.evaluate(ws.board, 0);
+        }
+        return outcome;
+    }
+
+    /**
+     * Datos de trabajo propios de cada hilo, para no crear objetos
+     * durante las simulaciones
+     */
+    private static class Workspace
+    {
+        // tablero tras colocar la candidata
+        private final Board start = new Board();
+        // tablero de la simulación en curso
+        private final Board board = new Board();
+        // tablero auxiliar para la heurística
+        private final Board scratch = new Board();
+        // lista de jugadas de trabajo
+        private final int[] placements = new int[Placement.MAX];
+        // generador de las jugadas alcanzables
+        private final MoveGenerator generator = new MoveGenerator();
+    }
+
+    /**
+     * Tarea raíz que lanza todas las tareas de simulación dentro del pool
+     */
+    private static class RootTask extends RecursiveAction
+    {
+        private final PlayoutTask[] work;
+
+        public RootTask(PlayoutTask[] work)
+        {
+            this.work = work;
+        }
+
+        protected void compute()
+        {
+            invokeAll(work);
+        }
+    }
+
+    /**
+     * Tarea que juega una parte de las simulaciones de una candidata
+     * y acumula el resultado en su propia posición de los arrays.
+     * Cada tarea escribe solo en su posición, por lo que no hace falta
+     * sincronizar los resultados.
+     */
+    private class PlayoutTask extends RecursiveAction
+    {
+        private final int slot, type, placement, playouts;
+        private final Board root;
+        private final long deadline;
+
+        public PlayoutTask(int slot, Board root, int type, int placement, int playouts, long deadline)
+        {
+            this.slot = slot;
+            this.root = root;
+            this.type = type;
+            this.placement = placement;
+            this.playouts = playouts;
+            this.deadline = deadline;
+        }
+
+        protected void compute()
+        {
+            Workspace ws = workspace.get();
+            ws.start.copyFrom(root);
+            double base = LINE_VALUE * ws.start.place(type, placement);
+            if(ws.start.isTopOut()) {
+                // no merece la pena simular, la partida ya está perdida
+                sums[slot] += base - TOP_OUT_PENALTY;
+                counts[slot]++;
+                return;
+            }
+            double sum = 0;
+            int n = 0;
+            while(n < playouts && System.nanoTime() < deadline) {
+                sum += base + playout(ws);
+                n++;
+            }
+            sums[slot] += sum;
+            counts[slot] += n;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+/**
+ * Generador de todas las posiciones finales alcanzables por una pieza
+ * desde su posición inicial, usando los mismos movimientos que el juego:
+ * izquierda, derecha, bajar y girar. Hace una búsqueda en anchura sobre
+ * los estados (columna, fila, giro) comprobando las colisiones con las
+ * máscaras de bits de Board, de modo que encuentra también las piezas
+ * metidas bajo salientes y los giros en el último momento.
+ *
+ * Los giros siguen las reglas del juego de piezas como en Grid.turnPiece
+ * (ver Board.turn): con los tetriminos clásicos una pieza solo puede
+ * girar si toda su caja está dentro del tablero y libre de bloques. El
+ * límite de 4 giros por bajada no se tiene en cuenta, ya que se renueva
+ * en cada bajada de la pieza, y tampoco los empujes que subirían la caja
+ * por encima de la fila 0.
+ *
+ * Las posiciones finales que ocupan exactamente las mismas celdas (por
+ * ejemplo las dos posiciones horizontales de la S) se devuelven una sola vez.
+ * El generador reutiliza sus arrays internos y no crea objetos al generar,
+ * por lo que cada hilo debe tener el suyo.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class MoveGenerator
+{
+    // fila de la caja de una pieza nueva, igual que en Grid.createTetrimino;
+    // la columna depende del tipo y del tablero (ver PieceTable.spawnX)
+    public static final int SPAWN_Y = 0;
+    // margen para guardar columnas negativas de la caja
+    private static final int PAD = PieceTable.MAX_SIZE;
+
+    // dimensiones del tablero para el que se creó el generador
+    private final int rows, cols;
+    // ancho de una fila de estados (columnas más el margen)
+    private final int width;
+    // marca de la búsqueda en la que se visitó cada estado
+    private final int[] visited;
+    // marca de la búsqueda en la que se devolvió cada conjunto de celdas
+    private final int[] footprints;
+    // cola de estados pendientes codificados con Placement
+    private final int[] queue;
+    // número de la búsqueda actual, para no tener que limpiar los arrays
+    private int stamp;
+
+    // giro equivalente de menor índice con las mismas celdas, por tipo y giro
+    private static final int[][] canonical = new int[PieceTable.TYPES][];
+
+    static {
+        for(int type = 0; type < PieceTable.TYPES; type++) {
+            int turns = PieceTable.rotations(type);
+            canonical[type] = new int[turns];
+            for(int rot = 0; rot < turns; rot++) {
+                canonical[type][rot] = rot;
+                for(int other = 0; other < rot; other++) {
+                    if(sameShape(type, rot, other)) {
+                        canonical[type][rot] = other;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Construye un generador para tableros de tamaño por defecto
+     */
+    public MoveGenerator()
+    {
+        this(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS);
+    }
+
+    /**
+     * Construye un generador para tableros de unas dimensiones dadas
+     * @param rows Las filas del tablero
+     * @param cols Las columnas del tablero
+     */
+    public MoveGenerator(int rows, int cols)
+    {
+        this.rows = rows;
+        this.cols = cols;
+        width = cols + PAD;
+        int states = 4 * rows * width;
+        visited = new int[states];
+        footprints = new int[states];
+        queue = new int[states];
+    }
+
+    /**
+     * Busca todas las posiciones finales alcanzables de una pieza nueva
+     * @param board El tablero con los bloques apilados
+     * @param type El tipo de tetrimino
+     * @param out El array donde se guardan las jugadas codificadas con Placement
+     * @return El número de jugadas distintas, 0 si la pieza no cabe al aparecer
+     */
+    public int generate(Board board, int type, int[] out)
+    {
+        return generate(board, type, 0, PieceTable.spawnX(type, board.getCols()), SPAWN_Y, out);
+    }
+
+    /**
+     * Busca todas las posiciones finales alcanzables desde un estado dado
+     * @param board El tablero con los bloques apilados
+     * @param type El tipo de tetrimino
+     * @param rot El giro inicial
+     * @param x La columna inicial de la caja
+     * @param y La fila inicial de la caja
+     * @param out El array donde se guardan las jugadas codificadas con Placement
+     * @return El número de jugadas distintas, 0 si la pieza no cabe en el estado inicial
+     */
+    public int generate(Board board, int type, int rot, int x, int y, int[] out)
+    {
+        if(!board.fits(type, rot, x, y)) {
+            return 0;
+        }
+        nextStamp();
+        int turns = PieceTable.rotations(type);
+        int size = PieceTable.size(type);
+        int head = 0, tail = 0, count = 0;
+        // por encima del bloque más alto la pieza puede llegar a cualquier
+        // columna y giro, así que empezamos la búsqueda directamente en la
+        // primera fila en la que su caja todavía no toca ningún bloque
+        int sky = board.topRow() - size;
+        if(y < sky) {
+            for(int r = 0; r < turns; r++) {
+                int last = cols - 1 - PieceTable.maxCol(type, r);
+                for(int cx = -PieceTable.minCol(type, r); cx <= last; cx++) {
+                    visited[index(r, cx, sky)] = stamp;
+                    queue[tail++] = Placement.pack(r, cx, sky);
+                }
+            }
+        } else {
+            visited[index(rot, x, y)] = stamp;
+            queue[tail++] = Placement.pack(rot, x, y);
+        }
+
+        while(head < tail) {
+            int state = queue[head++];
+            int r = Placement.rot(state);
+            int cx = Placement.x(state);
+            int cy = Placement.y(state);
+
+            // movimientos laterales
+            tail = visit(board, type, r, cx - 1, cy, tail);
+            tail = visit(board, type, r, cx + 1, cy, tail);
+            // giro con el primer empuje que deja libre la región que exige la regla de giro
+            int turned = board.turn(type, r, cx, cy);
+            if(turned != Placement.NONE) {
+                tail = visit(board, type, Placement.rot(turned), Placement.x(turned), Placement.y(turned), tail);
+            }
+            // bajada, o posición final si no puede bajar
+            if(board.fits(type, r, cx, cy + 1)) {
+                int below = index(r, cx, cy + 1);
+                if(visited[below] != stamp) {
+                    visited[below] = stamp;
+                    queue[tail++] = Placement.pack(r, cx, cy + 1);
+                }
+            } else {
+                int key = footprint(type, r, cx, cy);
+                if(footprints[key] != stamp) {
+                    footprints[key] = stamp;
+                    out[count++] = state;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Añade un estado a la cola si la pieza cabe y no se había visitado
+     * @return La nueva posición final de la cola de estados
+     */
+    private int visit(Board board, int type, int rot, int x, int y, int tail)
+    {
+        if(x < -PAD || x >= cols || y < 0 || y >= rows) {
+            return tail;
+        }
+        int state = index(rot, x, y);
+        if(visited[state] != stamp && board.fits(type, rot, x, y)) {
+            visited[state] = stamp;
+            queue[tail++] = Placement.pack(rot, x, y);
+        }
+        return tail;
+    }
+
+    /**
+     * Codifica un estado como índice de los arrays internos
+     */
+    private int index(int rot, int x, int y)
+    {
+        return (rot * rows + y) * width + x + PAD;
+    }
+
+    /**
+     * Calcula un índice que identifica las celdas que ocupa una pieza,
+     * igual para todos los giros que ocupan las mismas celdas: la primera
+     * fila y la primera columna ocupadas, que siempre están dentro del
+     * tablero, en un plano de filas por ancho propio del giro equivalente
+     */
+    private int footprint(int type, int rot, int x, int y)
+    {
+        int same = canonical[type][rot];
+        int col = x + PieceTable.minCol(type, rot);
+        int row = y + PieceTable.minRow(type, rot);
+        return (same * rows + row) * width + col;
+    }
+
+    /**
+     * Avanza la marca de búsqueda, limpiando los arrays solo cuando se agota
+     */
+    private void nextStamp()
+    {
+        stamp++;
+        if(stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            Arrays.fill(footprints, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Comprueba si dos giros de una pieza ocupan las mismas celdas salvo
+     * un desplazamiento
+     */
+    private static boolean sameShape(int type, int a, int b)
+    {
+        int rowsA = PieceTable.maxRow(type, a) - PieceTable.minRow(type, a);
+        int rowsB = PieceTable.maxRow(type, b) - PieceTable.minRow(type, b);
+        if(rowsA != rowsB) {
+            return false;
+        }
+        for(int i = 0; i <= rowsA; i++) {
+            int maskA = PieceTable.rowMask(type, a, PieceTable.minRow(type, a) + i) >>> PieceTable.minCol(type, a);
+            int maskB = PieceTable.rowMask(type, b, PieceTable.minRow(type, b) + i) >>> PieceTable.minCol(type, b);
+            if(maskA != maskB) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
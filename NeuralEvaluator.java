@@ -0,0 +1,262 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Función de evaluación basada en una pequeña red neuronal densa, como
+ * alternativa a la heurística escrita a mano. La entrada son las celdas del
+ * tablero (1 si hay bloque, 0 si no) más las líneas hechas, las capas ocultas
+ * usan ReLU y la salida es un único valor.
+ *
+ * La inferencia se hace en Java puro sobre la CPU y por lotes: todos los
+ * tableros candidatos forman una matriz y cada capa es una sola
+ * multiplicación de matrices, recorrida en el orden que mejor aprovecha
+ * la caché y saltándose las celdas vacías de la entrada. Los buffers de
+ * activaciones son propios de cada hilo y se reutilizan entre lotes.
+ *
+ * Formato del fichero de pesos (big-endian): MAGIC, número de capas, los
+ * tamaños de cada capa empezando por la entrada y, para cada capa, sus
+ * pesos en orden [entrada][salida] seguidos de sus sesgos, como float.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class NeuralEvaluator implements BoardEvaluator
+{
+    // identificador del formato del fichero de pesos
+    private static final int MAGIC = 0x4E455631;
+
+    // tamaños de las capas, empezando por la entrada
+    private final int[] sizes;
+    // pesos de cada capa en orden [entrada][salida] y sus sesgos
+    private final float[][] weights, biases;
+    // filas y columnas de los tableros que admite la red
+    private final int rows, cols;
+    // activaciones de trabajo de cada hilo
+    private final ThreadLocal<float[][]> activations = new ThreadLocal<float[][]>();
+
+    /**
+     * Construye una red con unos pesos dados
+     * @param rows Las filas de los tableros
+     * @param cols Las columnas de los tableros
+     * @param sizes Los tamaños de las capas, empezando por rows*cols+1 y acabando en 1
+     * @param weights Los pesos de cada capa en orden [entrada][salida]
+     * @param biases Los sesgos de cada capa
+     */
+    public NeuralEvaluator(int rows, int cols, int[] sizes, float[][] weights, float[][] biases)
+    {
+        if(sizes[0] != rows * cols + 1 || sizes[sizes.length - 1] != 1) {
+            throw new IllegalArgumentException("Las capas no encajan con un tablero de " + rows + "x" + cols);
+        }
+        for(int layer = 0; layer < sizes.length - 1; layer++) {
+            if(weights[layer].length != sizes[layer] * sizes[layer + 1]
+               || biases[layer].length != sizes[layer + 1]) {
+                throw new IllegalArgumentException("Tamaño de pesos incorrecto en la capa " + layer);
+            }
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.sizes = sizes.clone();
+        this.weights = weights;
+        this.biases = biases;
+    }
+
+    /**
+     * Carga una red de un fichero de pesos para tableros de tamaño por defecto
+     * @param file El fichero de pesos
+     * @return La red cargada
+     */
+    public static NeuralEvaluator load(File file) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if(in.readInt() != MAGIC) {
+                throw new IOException("Formato de pesos no reconocido: " + file);
+            }
+            int[] sizes = new int[in.readInt()];
+            for(int i = 0; i < sizes.length; i++) {
+                sizes[i] = in.readInt();
+            }
+            float[][] weights = new float[sizes.length - 1][];
+            float[][] biases = new float[sizes.length - 1][];
+            for(int layer = 0; layer < sizes.length - 1; layer++) {
+                weights[layer] = readFloats(in, sizes[layer] * sizes[layer + 1]);
+                biases[layer] = readFloats(in, sizes[layer + 1]);
+            }
+            return new NeuralEvaluator(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, sizes, weights, biases);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Crea una red con pesos aleatorios, útil como punto de partida del
+     * entrenamiento o para medir el rendimiento
+     * @param hidden Los tamaños de las capas ocultas
+     * @param seed La semilla de los pesos
+     * @return La red creada
+     */
+    public static NeuralEvaluator random(int[] hidden, long seed)
+    {
+        int[] sizes = new int[hidden.length + 2];
+        sizes[0] = Grid.DEFAULT_ROWS * Grid.DEFAULT_COLS + 1;
+        System.arraycopy(hidden, 0, sizes, 1, hidden.length);
+        sizes[sizes.length - 1] = 1;
+        Random random = new Random(seed);
+        float[][] weights = new float[sizes.length - 1][];
+        float[][] biases = new float[sizes.length - 1][];
+        for(int layer = 0; layer < sizes.length - 1; layer++) {
+            weights[layer] = new float[sizes[layer] * sizes[layer + 1]];
+            biases[layer] = new float[sizes[layer + 1]];
+            double scale = Math.sqrt(2.0 / sizes[layer]);
+            for(int i = 0; i < weights[layer].length; i++) {
+                weights[layer][i] = (float) (random.nextGaussian() * scale);
+            }
+        }
+        return new NeuralEvaluator(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, sizes, weights, biases);
+    }
+
+    /**
+     * Guarda los pesos de la red en el formato que lee load
+     * @param file El fichero de pesos
+     */
+    public void save(File file) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(sizes.length);
+            for(int size : sizes) {
+                out.writeInt(size);
+            }
+            for(int layer = 0; layer < sizes.length - 1; layer++) {
+                for(float w : weights[layer]) {
+                    out.writeFloat(w);
+                }
+                for(float b : biases[layer]) {
+                    out.writeFloat(b);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Puntúa un único tablero como un lote de tamaño 1
+     */
+    public double evaluate(Board board, int lines)
+    {
+        float[][] act = buffers(1);
+        loadInput(board, lines, act[0], 0);
+        return forward(act, 1)[0];
+    }
+
+    /**
+     * Puntúa un lote de tableros con una multiplicación de matrices por capa
+     */
+    public void evaluateBatch(Board[] boards, int[] lines, int count, double[] out)
+    {
+        if(count == 0) {
+            return;
+        }
+        float[][] act = buffers(count);
+        for(int i = 0; i < count; i++) {
+            loadInput(boards[i], lines[i], act[0], i);
+        }
+        float[] result = forward(act, count);
+        for(int i = 0; i < count; i++) {
+            out[i] = result[i];
+        }
+    }
+
+    /**
+     * Copia un tablero como fila de la matriz de entrada
+     */
+    private void loadInput(Board board, int lines, float[] input, int row)
+    {
+        int base = row * sizes[0];
+        for(int r = 0; r < rows; r++) {
+            int mask = board.getRowMask(r);
+            for(int c = 0; c < cols; c++) {
+                input[base + r * cols + c] = (mask >>> c) & 1;
+            }
+        }
+        input[base + rows * cols] = lines;
+    }
+
+    /**
+     * Propaga el lote por todas las capas
+     * @param act Las activaciones de cada capa, con la entrada ya cargada
+     * @param count El número de filas del lote
+     * @return Las activaciones de la última capa, una por tablero
+     */
+    private float[] forward(float[][] act, int count)
+    {
+        int last = sizes.length - 2;
+        for(int layer = 0; layer <= last; layer++) {
+            int in = sizes[layer], out = sizes[layer + 1];
+            float[] x = act[layer], y = act[layer + 1], w = weights[layer], b = biases[layer];
+            for(int i = 0; i < count; i++) {
+                int yRow = i * out;
+                System.arraycopy(b, 0, y, yRow, out);
+                int xRow = i * in;
+                for(int k = 0; k < in; k++) {
+                    float v = x[xRow + k];
+                    // la entrada es casi toda de celdas vacías, que no aportan nada
+                    if(v == 0) {
+                        continue;
+                    }
+                    int wRow = k * out;
+                    for(int j = 0; j < out; j++) {
+                        y[yRow + j] += v * w[wRow + j];
+                    }
+                }
+                if(layer < last) {
+                    for(int j = yRow; j < yRow + out; j++) {
+                        if(y[j] < 0) {
+                            y[j] = 0;
+                        }
+                    }
+                }
+            }
+        }
+        return act[last + 1];
+    }
+
+    /**
+     * Obtiene las matrices de activaciones del hilo actual con sitio para
+     * un lote, agrandándolas solo cuando el lote no cabe
+     */
+    private float[][] buffers(int count)
+    {
+        float[][] act = activations.get();
+        if(act == null || act[0].length < count * sizes[0]) {
+            int capacity = Math.max(count, 64);
+            act = new float[sizes.length][];
+            for(int layer = 0; layer < sizes.length; layer++) {
+                act[layer] = new float[capacity * sizes[layer]];
+            }
+            activations.set(act);
+        }
+        return act;
+    }
+
+    /**
+     * Lee un número de floats de un fichero de pesos
+     */
+    private static float[] readFloats(DataInputStream in, int count) throws IOException
+    {
+        float[] values = new float[count];
+        for(int i = 0; i < count; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,79 @@
+import java.awt.Color;
+
+/**
+ * Paleta de colores que comparten Grid y GameView. Las celdas del grid no
+ * guardan objetos Block ni Color sino un índice de esta paleta en un byte:
+ * 0 es una celda vacía, GARBAGE es el gris de los bloques de relleno y los
+ * demás índices son los colores de las piezas.
+ *
+ * Los colores de las piezas se toman de los juegos de piezas (ver
+ * PieceSet), que los registran al compilarse; los tetriminos clásicos se
+ * registran los primeros y ocupan los índices 1-7, así que las partidas
+ * guardadas siguen mostrando los mismos colores.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class Palette
+{
+    // índice de una celda vacía
+    public static final int EMPTY = 0;
+    // índice de los bloques grises de relleno
+    public static final int GARBAGE = 8;
+    // bits del byte de una celda que forman el índice de la paleta
+    public static final int INDEX_MASK = 0x0F;
+
+    // color de cada índice; el de una celda vacía es null
+    private static final Color[] colors = new Color[INDEX_MASK + 1];
+
+    static {
+        colors[GARBAGE] = Color.gray;
+    }
+
+    /**
+     * @param type El tipo de pieza del juego de piezas por defecto
+     * @return El índice de la paleta de ese tipo
+     */
+    public static int pieceIndex(int type)
+    {
+        return PieceTable.colorIndex(type);
+    }
+
+    /**
+     * Obtiene el índice de un color de pieza, añadiéndolo a la paleta si aún
+     * no está. Las piezas de un mismo color comparten índice.
+     * @param color El color
+     * @return Su índice en la paleta
+     * @throws IllegalArgumentException si la paleta ya está llena
+     */
+    public static synchronized int register(Color color)
+    {
+        int free = -1;
+        for(int index = 1; index <= INDEX_MASK; index++) {
+            if(index == GARBAGE) {
+                continue;
+            }
+            if(color.equals(colors[index])) {
+                return index;
+            }
+            if(colors[index] == null && free < 0) {
+                free = index;
+            }
+        }
+        if(free < 0) {
+            throw new IllegalArgumentException("La paleta no admite más de " + (INDEX_MASK - 1)
+                                               + " colores de piezas");
+        }
+        colors[free] = color;
+        return free;
+    }
+
+    /**
+     * @param index El índice, o el byte completo de una celda
+     * @return El color de ese índice, o null si es una celda vacía
+     */
+    public static Color color(int index)
+    {
+        return colors[index & INDEX_MASK];
+    }
+}
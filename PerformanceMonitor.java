@@ -0,0 +1,253 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Recoge las medidas de rendimiento del juego que muestra la capa de
+ * rendimiento de GameView: tiempo de cada paso de la lógica, tiempo de
+ * pintar cada fotograma, fotogramas por segundo, latencia de las entradas,
+ * pausas del recolector de basura y memoria reservada por segundo.
+ *
+ * Todo se llama desde el hilo de eventos de Swing, que es donde se pinta,
+ * excepto recordTick, que llama el hilo del motor, así que la memoria
+ * reservada que se mide es la del hilo de eventos. Las medidas que se acumulan se resumen una vez por segundo y
+ * ningún método reserva memoria, para no alterar lo que se mide.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class PerformanceMonitor
+{
+    // fotogramas que se guardan para la gráfica
+    public static final int HISTORY = 120;
+    // tiempo por fotograma a 60 fotogramas por segundo
+    public static final long FRAME_BUDGET_NANOS = 16666667L;
+    // milisegundos de recolección por segundo a partir de los que el juego va lento por el GC
+    private static final long GC_BUDGET_MILLIS = 100;
+    // posibles cuellos de botella
+    public static final int OK = 0, CPU = 1, RENDER = 2, GC = 3;
+
+    // los recolectores de basura de la máquina virtual
+    private final GarbageCollectorMXBean[] collectors;
+    // medidor de memoria reservada por hilo, o null si la JVM no lo ofrece
+    private final com.sun.management.ThreadMXBean allocations;
+    // tiempos de los últimos fotogramas en nanosegundos, como buffer circular
+    private final long[] frameHistory = new long[HISTORY];
+    private int frameIndex;
+    // último tiempo de paso (escrito por el motor) y de fotograma, en nanosegundos
+    private volatile long tickNanos;
+    private long frameNanos;
+    // momento de la entrada pendiente de mostrarse, o -1, y última latencia
+    private long pendingInput = -1, latencyMillis;
+    // comienzo del segundo actual y sus fotogramas
+    private long windowStart;
+    private int windowFrames;
+    // valores acumulados al empezar el segundo actual
+    private long gcCount, gcTime, allocated;
+    // resumen del último segundo completo
+    private int fps;
+    private long gcPauses, gcMillis, allocationRate;
+    // segundos completados, para saber cuándo cambia el resumen
+    private int windows;
+
+    /**
+     * Prepara el monitor leyendo los valores iniciales de la JVM
+     */
+    public PerformanceMonitor()
+    {
+        List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+        collectors = beans.toArray(new GarbageCollectorMXBean[beans.size()]);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean
+           && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            allocations = (com.sun.management.ThreadMXBean) threads;
+        } else {
+            allocations = null;
+        }
+        windowStart = System.nanoTime();
+        gcCount = collectionCount();
+        gcTime = collectionTime();
+    }
+
+    /**
+     * Registra la duración de un paso de la lógica del juego
+     * @param nanos La duración en nanosegundos
+     */
+    public void recordTick(long nanos)
+    {
+        tickNanos = nanos;
+    }
+
+    /**
+     * Registra una entrada del jugador; su latencia se mide hasta que se
+     * pinta el siguiente fotograma
+     * @param eventMillis El momento del evento, como en InputEvent.getWhen
+     */
+    public void recordInput(long eventMillis)
+    {
+        if(pendingInput < 0) {
+            pendingInput = eventMillis;
+        }
+    }
+
+    /**
+     * Registra un fotograma pintado
+     * @param nanos Lo que costó pintarlo en nanosegundos
+     */
+    public void recordFrame(long nanos)
+    {
+        frameNanos = nanos;
+        frameHistory[frameIndex] = nanos;
+        frameIndex = (frameIndex + 1) % HISTORY;
+        if(pendingInput >= 0) {
+            latencyMillis = System.currentTimeMillis() - pendingInput;
+            pendingInput = -1;
+        }
+        windowFrames++;
+        long now = System.nanoTime();
+        if(now - windowStart >= 1000000000L) {
+            closeWindow(now);
+        }
+    }
+
+    /**
+     * Resume el segundo que acaba y empieza otro
+     */
+    private void closeWindow(long now)
+    {
+        double seconds = (now - windowStart) / 1e9;
+        fps = (int) Math.round(windowFrames / seconds);
+        long count = collectionCount(), time = collectionTime();
+        gcPauses = count - gcCount;
+        gcMillis = time - gcTime;
+        gcCount = count;
+        gcTime = time;
+        if(allocations != null) {
+            long bytes = allocations.getCurrentThreadAllocatedBytes();
+            if(allocated > 0) {
+                allocationRate = (long) ((bytes - allocated) / seconds);
+            }
+            allocated = bytes;
+        }
+        windowStart = now;
+        windowFrames = 0;
+        windows++;
+    }
+
+    /**
+     * @return Las recolecciones hechas desde que arrancó la JVM
+     */
+    private long collectionCount()
+    {
+        long total = 0;
+        for(int i = 0; i < collectors.length; i++) {
+            total += Math.max(0, collectors[i].getCollectionCount());
+        }
+        return total;
+    }
+
+    /**
+     * @return Los milisegundos de recolección desde que arrancó la JVM
+     */
+    private long collectionTime()
+    {
+        long total = 0;
+        for(int i = 0; i < collectors.length; i++) {
+            total += Math.max(0, collectors[i].getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Estima qué limita al juego según el último segundo
+     * @return GC si el recolector pasa demasiado tiempo parado, CPU si
+     *         la lógica no cabe en un fotograma, RENDER si lo que no
+     *         cabe es el pintado, u OK
+     */
+    public int getBottleneck()
+    {
+        if(gcMillis > GC_BUDGET_MILLIS) {
+            return GC;
+        } else if(tickNanos > FRAME_BUDGET_NANOS) {
+            return CPU;
+        } else if(frameNanos > FRAME_BUDGET_NANOS) {
+            return RENDER;
+        } else {
+            return OK;
+        }
+    }
+
+    /**
+     * @return La duración del último paso de la lógica en nanosegundos
+     */
+    public long getTickNanos()
+    {
+        return tickNanos;
+    }
+
+    /**
+     * @return Lo que costó pintar el último fotograma en nanosegundos
+     */
+    public long getFrameNanos()
+    {
+        return frameNanos;
+    }
+
+    /**
+     * @param age 0 para el fotograma más reciente, hasta HISTORY - 1
+     * @return Lo que costó pintar ese fotograma en nanosegundos
+     */
+    public long getFrameHistory(int age)
+    {
+        return frameHistory[(frameIndex - 1 - age + 2 * HISTORY) % HISTORY];
+    }
+
+    /**
+     * @return Los fotogramas pintados en el último segundo
+     */
+    public int getFps()
+    {
+        return fps;
+    }
+
+    /**
+     * @return Los milisegundos entre la última entrada y el fotograma que la mostró
+     */
+    public long getInputLatencyMillis()
+    {
+        return latencyMillis;
+    }
+
+    /**
+     * @return Las pausas del recolector en el último segundo
+     */
+    public long getGcPauses()
+    {
+        return gcPauses;
+    }
+
+    /**
+     * @return Los milisegundos de recolección en el último segundo
+     */
+    public long getGcMillis()
+    {
+        return gcMillis;
+    }
+
+    /**
+     * @return Los bytes por segundo reservados por el hilo de eventos, o 0 si no se puede medir
+     */
+    public long getAllocationRate()
+    {
+        return allocationRate;
+    }
+
+    /**
+     * @return Los segundos resumidos hasta ahora; cambia cuando cambia el resumen
+     */
+    public int getWindows()
+    {
+        return windows;
+    }
+}
@@ -0,0 +1,678 @@
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Juego de piezas (poliominós) leído de un fichero de definición: los 7
+ * tetriminos clásicos, pentominós o cualquier conjunto propio. Al cargarlo
+ * cada giro de cada pieza se compila en máscaras de filas, su caja de
+ * bloques ocupados, la región que debe estar libre para girar y los
+ * empujes que se prueban al girar, de modo que Grid, Board y los bots
+ * mueven y giran cualquier pieza con el mismo código de tablas, sin casos
+ * especiales por forma y a la misma velocidad.
+ *
+ * Formato del fichero (UTF-8, '#' al comienzo de línea es un comentario
+ * si va seguido de un espacio o la línea solo tiene '#'):
+ *
+ *   nombre clásico             nombre del juego de piezas
+ *   giro caja                  regla de giro por defecto: "caja" exige que
+ *                              toda la caja esté dentro y libre, "celdas"
+ *                              solo las celdas de la pieza girada
+ *   empujes 0,0 -1,0 1,0       desplazamientos (columna,fila) que se prueban
+ *                              al girar, en orden, hasta que uno cabe
+ *   pieza palo rojo 2          nombre, color (nombre o #RRGGBB) y, si se
+ *   ....                       quiere, número de giros; después la caja
+ *   XXXX                       cuadrada del giro inicial ('X' o '@' son
+ *   ....                       bloques, '.' celdas vacías) y, separadas por
+ *   ....                       líneas en blanco, las cajas de otros giros
+ *
+ * Las líneas giro y empujes que siguen a una pieza solo se aplican a ella,
+ * y "empujes giro 2 0,0 1,0" cambia solo los empujes al girar desde el
+ * giro 2. Si una pieza da un solo giro y no dice cuántos tiene, los demás
+ * se obtienen girando su caja 90º a la derecha hasta volver al inicial; si
+ * dice cuántos, se completan girando el último que dio.
+ *
+ * En las cajas las filas se leen de arriba abajo y en cada máscara el bit
+ * j es la columna j de la caja. La caja de una pieza nueva aparece en la
+ * fila 0, centrada en el tablero (ver getSpawnCol).
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class PieceSet
+{
+    // propiedad del sistema con el fichero del juego de piezas del juego y los bots
+    public static final String PROPERTY = "tetris.pieces";
+    // lado máximo de la caja de una pieza y giros máximos
+    public static final int MAX_BOX = 8, MAX_ROTATIONS = 4;
+
+    // definición de los 7 tetriminos del juego original; el palo solo tiene
+    // dos posiciones, el cubo una y toda la caja debe estar libre para girar
+    private static final String CLASSIC_DEFINITION =
+        "nombre clásico\n" +
+        "giro caja\n" +
+        "empujes 0,0\n" +
+        "pieza palo rojo 2\n" +
+        "....\n" + "XXXX\n" + "....\n" + "....\n" +
+        "\n" +
+        ".X..\n" + ".X..\n" + ".X..\n" + ".X..\n" +
+        "pieza cubo azul 1\n" +
+        ".XX\n" + ".XX\n" + "...\n" +
+        "pieza T amarillo\n" +
+        ".X.\n" + "XXX\n" + "...\n" +
+        "pieza L-izquierda verde\n" +
+        "X..\n" + "XXX\n" + "...\n" +
+        "pieza L-derecha magenta\n" +
+        "..X\n" + "XXX\n" + "...\n" +
+        "pieza S-izquierda cian\n" +
+        "XX.\n" + ".XX\n" + "...\n" +
+        "pieza S-derecha naranja\n" +
+        ".XX\n" + "XX.\n" + "...\n";
+
+    // los tetriminos clásicos; se compilan los primeros para que ocupen los índices 1-7 de la Palette
+    public static final PieceSet CLASSIC = classic();
+    // el juego de piezas de la partida y de los bots (ver PROPERTY)
+    private static final PieceSet DEFAULT = loadDefault();
+
+    // nombre del juego de piezas
+    private final String name;
+    // nombre, lado de la caja e índice de la Palette de cada tipo de pieza
+    private final String[] names;
+    final int[] size, colorIndex;
+    // máscaras de filas por tipo, giro y fila de la caja
+    final int[][][] masks;
+    // columnas y filas mínimas y máximas ocupadas por tipo y giro
+    final int[][] minCol, maxCol, minRow, maxRow;
+    // región que debe estar libre para girar desde cada giro, por tipo, giro y fila de la caja
+    final int[][][] clearance;
+    // columnas y filas mínimas y máximas de esa región
+    final int[][] clearMinCol, clearMaxCol, clearMinRow, clearMaxRow;
+    // empujes (columna y fila) que se prueban al girar desde cada giro, por tipo, giro y orden
+    final int[][][] kickX, kickY;
+    // lado de la caja más grande
+    private final int maxSize;
+
+    /**
+     * Compila un juego de piezas ya leído
+     * @param name El nombre del juego
+     * @param shapes Las piezas leídas
+     */
+    private PieceSet(String name, List<Shape> shapes)
+    {
+        this.name = name;
+        int types = shapes.size();
+        names = new String[types];
+        size = new int[types];
+        colorIndex = new int[types];
+        masks = new int[types][][];
+        minCol = new int[types][];
+        maxCol = new int[types][];
+        minRow = new int[types][];
+        maxRow = new int[types][];
+        clearance = new int[types][][];
+        clearMinCol = new int[types][];
+        clearMaxCol = new int[types][];
+        clearMinRow = new int[types][];
+        clearMaxRow = new int[types][];
+        kickX = new int[types][][];
+        kickY = new int[types][][];
+        int largest = 0;
+        for(int type = 0; type < types; type++) {
+            Shape shape = shapes.get(type);
+            int n = shape.size;
+            int turns = shape.states.size();
+            largest = Math.max(largest, n);
+            names[type] = shape.name;
+            size[type] = n;
+            colorIndex[type] = Palette.register(shape.color);
+            masks[type] = shape.states.toArray(new int[turns][]);
+            minCol[type] = new int[turns];
+            maxCol[type] = new int[turns];
+            minRow[type] = new int[turns];
+            maxRow[type] = new int[turns];
+            clearance[type] = new int[turns][];
+            clearMinCol[type] = new int[turns];
+            clearMaxCol[type] = new int[turns];
+            clearMinRow[type] = new int[turns];
+            clearMaxRow[type] = new int[turns];
+            kickX[type] = new int[turns][];
+            kickY[type] = new int[turns][];
+            int box = (1 << n) - 1;
+            for(int rot = 0; rot < turns; rot++) {
+                int[] bounds = bounds(masks[type][rot]);
+                minCol[type][rot] = bounds[0];
+                maxCol[type][rot] = bounds[1];
+                minRow[type][rot] = bounds[2];
+                maxRow[type][rot] = bounds[3];
+                // con la regla de la caja se exige la caja entera; si no, las celdas del giro siguiente
+                int[] region = new int[n];
+                for(int row = 0; row < n; row++) {
+                    region[row] = shape.boxRule ? box : masks[type][(rot + 1) % turns][row];
+                }
+                clearance[type][rot] = region;
+                bounds = bounds(region);
+                clearMinCol[type][rot] = bounds[0];
+                clearMaxCol[type][rot] = bounds[1];
+                clearMinRow[type][rot] = bounds[2];
+                clearMaxRow[type][rot] = bounds[3];
+                int[] kicks = shape.kicks(rot);
+                kickX[type][rot] = new int[kicks.length / 2];
+                kickY[type][rot] = new int[kicks.length / 2];
+                for(int k = 0; k < kicks.length / 2; k++) {
+                    kickX[type][rot][k] = kicks[2 * k];
+                    kickY[type][rot][k] = kicks[2 * k + 1];
+                }
+            }
+        }
+        maxSize = largest;
+    }
+
+    /**
+     * Calcula las columnas y filas mínimas y máximas ocupadas por unas máscaras
+     * @param rows Las máscaras de las filas de la caja
+     * @return La columna mínima, la máxima, la fila mínima y la máxima
+     */
+    private static int[] bounds(int[] rows)
+    {
+        int[] bounds = {rows.length, -1, rows.length, -1};
+        for(int row = 0; row < rows.length; row++) {
+            if(rows[row] != 0) {
+                bounds[0] = Math.min(bounds[0], Integer.numberOfTrailingZeros(rows[row]));
+                bounds[1] = Math.max(bounds[1], 31 - Integer.numberOfLeadingZeros(rows[row]));
+                bounds[2] = Math.min(bounds[2], row);
+                bounds[3] = row;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Lee y compila un juego de piezas de un fichero de definición
+     * @param file El fichero
+     * @return El juego de piezas
+     * @throws IOException si no se puede leer o su formato no es válido
+     */
+    public static PieceSet load(File file) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                                                                     StandardCharsets.UTF_8));
+        try {
+            return parse(in, file.getName());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return Los tetriminos clásicos, compilados de su definición
+     */
+    private static PieceSet classic()
+    {
+        try {
+            return parse(new BufferedReader(new StringReader(CLASSIC_DEFINITION)), "clásico");
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return El juego de piezas de la propiedad PROPERTY, o los tetriminos
+     *         clásicos si no se dio o no se puede leer
+     */
+    private static PieceSet loadDefault()
+    {
+        String path = System.getProperty(PROPERTY);
+        if(path == null) {
+            return CLASSIC;
+        }
+        try {
+            return load(new File(path));
+        } catch(IOException e) {
+            System.err.println("No se pudo leer el juego de piezas " + path + ": " + e.getMessage()
+                               + "; se usan los tetriminos clásicos");
+            return CLASSIC;
+        }
+    }
+
+    /**
+     * @return El juego de piezas de la partida y de los bots: el del fichero
+     *         de la propiedad tetris.pieces o los tetriminos clásicos
+     */
+    public static PieceSet getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Lee una definición línea a línea
+     * @param in La definición
+     * @param source El nombre del origen, para los mensajes de error
+     * @return El juego de piezas compilado
+     * @throws IOException si no se puede leer o su formato no es válido
+     */
+    private static PieceSet parse(BufferedReader in, String source) throws IOException
+    {
+        String name = source;
+        boolean boxRule = true;
+        int[] kicks = {0, 0};
+        List<Shape> shapes = new ArrayList<Shape>();
+        Shape shape = null;
+        List<String> box = new ArrayList<String>();
+        String line;
+        int number = 0;
+        while((line = in.readLine()) != null) {
+            number++;
+            String text = line.trim();
+            if(text.equals("#") || text.startsWith("# ")) {
+                continue;
+            }
+            try {
+                if(isBoxRow(text)) {
+                    if(shape == null) {
+                        throw new IllegalArgumentException("caja fuera de una pieza");
+                    }
+                    box.add(text);
+                    if(box.size() == text.length()) {
+                        shape.addState(box);
+                        box.clear();
+                    }
+                    continue;
+                }
+                if(!box.isEmpty()) {
+                    throw new IllegalArgumentException("la caja no es cuadrada");
+                }
+                if(text.isEmpty()) {
+                    continue;
+                }
+                String[] words = text.split("\\s+");
+                if(words[0].equals("nombre")) {
+                    name = text.substring(words[0].length()).trim();
+                } else if(words[0].equals("giro") && words.length == 2) {
+                    boolean rule = parseRule(words[1]);
+                    if(shape == null) {
+                        boxRule = rule;
+                    } else {
+                        shape.boxRule = rule;
+                    }
+                } else if(words[0].equals("empujes")) {
+                    if(words.length > 2 && words[1].equals("giro")) {
+                        if(shape == null) {
+                            throw new IllegalArgumentException("empujes de un giro fuera de una pieza");
+                        }
+                        shape.setKicks(Integer.parseInt(words[2]), parseKicks(words, 3));
+                    } else if(shape == null) {
+                        kicks = parseKicks(words, 1);
+                    } else {
+                        shape.setKicks(-1, parseKicks(words, 1));
+                    }
+                } else if(words[0].equals("pieza") && (words.length == 3 || words.length == 4)) {
+                    if(shape != null) {
+                        shape.complete();
+                    }
+                    int turns = words.length == 4 ? Integer.parseInt(words[3]) : 0;
+                    if(turns < 0 || turns > MAX_ROTATIONS) {
+                        throw new IllegalArgumentException("número de giros no válido: " + turns);
+                    }
+                    shape = new Shape(words[1], parseColor(words[2]), turns, boxRule, kicks);
+                    shapes.add(shape);
+                } else {
+                    throw new IllegalArgumentException("línea no reconocida: " + text);
+                }
+            } catch(IllegalArgumentException e) {
+                throw new IOException(source + ", línea " + number + ": " + e.getMessage());
+            }
+        }
+        try {
+            if(!box.isEmpty()) {
+                throw new IllegalArgumentException("la última caja no es cuadrada");
+            }
+            if(shape == null) {
+                throw new IllegalArgumentException("no hay ninguna pieza");
+            }
+            shape.complete();
+            return new PieceSet(name, shapes);
+        } catch(IllegalArgumentException e) {
+            throw new IOException(source + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return True si la línea es una fila de una caja
+     */
+    private static boolean isBoxRow(String text)
+    {
+        if(text.isEmpty()) {
+            return false;
+        }
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(c != '.' && c != 'X' && c != '@') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return True para la regla de la caja, false para la de las celdas
+     */
+    private static boolean parseRule(String word)
+    {
+        if(word.equals("caja")) {
+            return true;
+        } else if(word.equals("celdas")) {
+            return false;
+        }
+        throw new IllegalArgumentException("regla de giro desconocida: " + word);
+    }
+
+    /**
+     * Lee una lista de empujes "columna,fila"
+     * @param words Las palabras de la línea
+     * @param first La primera palabra con un empuje
+     * @return Los empujes, columna y fila de cada uno seguidas
+     */
+    private static int[] parseKicks(String[] words, int first)
+    {
+        if(words.length <= first) {
+            throw new IllegalArgumentException("faltan los empujes");
+        }
+        int[] kicks = new int[2 * (words.length - first)];
+        for(int i = first; i < words.length; i++) {
+            String[] parts = words[i].split(",");
+            if(parts.length != 2) {
+                throw new IllegalArgumentException("empuje no válido: " + words[i]);
+            }
+            kicks[2 * (i - first)] = Integer.parseInt(parts[0]);
+            kicks[2 * (i - first) + 1] = Integer.parseInt(parts[1]);
+        }
+        return kicks;
+    }
+
+    /**
+     * Lee un color por su nombre o en hexadecimal (#RRGGBB)
+     * @param word El color
+     * @return El color
+     */
+    private static Color parseColor(String word)
+    {
+        if(word.startsWith("#") && word.length() == 7) {
+            return new Color(Integer.parseInt(word.substring(1), 16));
+        }
+        String[] names = {"rojo", "azul", "amarillo", "verde", "magenta", "cian", "naranja", "rosa",
+                          "blanco", "gris-claro", "gris-oscuro"};
+        Color[] colors = {Color.red, Color.blue, Color.yellow, Color.green, Color.magenta, Color.cyan,
+                          Color.orange, Color.pink, Color.white, Color.lightGray, Color.darkGray};
+        for(int i = 0; i < names.length; i++) {
+            if(names[i].equals(word)) {
+                return colors[i];
+            }
+        }
+        throw new IllegalArgumentException("color desconocido: " + word);
+    }
+
+    /**
+     * @return El nombre del juego de piezas
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return El número de tipos de pieza
+     */
+    public int getTypes()
+    {
+        return names.length;
+    }
+
+    /**
+     * @return El lado de la caja más grande
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * @param type El tipo de pieza
+     * @return El nombre de la pieza
+     */
+    public String getName(int type)
+    {
+        return names[type];
+    }
+
+    /**
+     * @param type El tipo de pieza
+     * @return El lado de su caja
+     */
+    public int getSize(int type)
+    {
+        return size[type];
+    }
+
+    /**
+     * Obtiene la columna donde aparece la caja de una pieza nueva, centrada
+     * en el tablero; en las 12 columnas por defecto es la 4 para todos los
+     * tetriminos clásicos
+     * @param type El tipo de pieza
+     * @param cols Las columnas del tablero, al menos getMaxSize()
+     * @return La columna de la esquina izquierda de la caja
+     */
+    public int getSpawnCol(int type, int cols)
+    {
+        return (cols - size[type]) / 2;
+    }
+
+    /**
+     * @param type El tipo de pieza
+     * @return El número de giros distintos
+     */
+    public int getRotations(int type)
+    {
+        return masks[type].length;
+    }
+
+    /**
+     * @param type El tipo de pieza
+     * @return El índice de la Palette de sus bloques
+     */
+    public int getColorIndex(int type)
+    {
+        return colorIndex[type];
+    }
+
+    /**
+     * @param type El tipo de pieza
+     * @param rot El giro
+     * @param row La fila de la caja
+     * @return La máscara de bits de las columnas ocupadas en esa fila
+     */
+    public int getRowMask(int type, int rot, int row)
+    {
+        return masks[type][rot][row];
+    }
+
+    /**
+     * Forma de una pieza mientras se lee: sus giros como máscaras de filas
+     * y su regla de giro y empujes
+     */
+    private static class Shape
+    {
+        // nombre, color y giros pedidos (0 si no se dijeron)
+        final String name;
+        final Color color;
+        final int turns;
+        // lado de la caja, 0 hasta leer la primera
+        int size;
+        // máscaras de filas de cada giro
+        final List<int[]> states = new ArrayList<int[]>();
+        // regla de giro, empujes de todos los giros y de cada giro concreto (o null)
+        boolean boxRule;
+        int[] kicks;
+        final int[][] rotationKicks = new int[MAX_ROTATIONS][];
+
+        /**
+         * Empieza una pieza con la regla de giro y los empujes del juego
+         */
+        Shape(String name, Color color, int turns, boolean boxRule, int[] kicks)
+        {
+            this.name = name;
+            this.color = color;
+            this.turns = turns;
+            this.boxRule = boxRule;
+            this.kicks = kicks;
+        }
+
+        /**
+         * Añade un giro leído de una caja cuadrada
+         * @param box Las filas de la caja
+         */
+        void addState(List<String> box)
+        {
+            int n = box.size();
+            if(n > MAX_BOX) {
+                throw new IllegalArgumentException("la caja de " + name + " es mayor de " + MAX_BOX);
+            }
+            if(size != 0 && n != size) {
+                throw new IllegalArgumentException("los giros de " + name + " tienen cajas distintas");
+            }
+            if(states.size() == MAX_ROTATIONS) {
+                throw new IllegalArgumentException(name + " tiene más de " + MAX_ROTATIONS + " giros");
+            }
+            size = n;
+            int[] rows = new int[n];
+            int blocks = 0;
+            for(int row = 0; row < n; row++) {
+                for(int col = 0; col < n; col++) {
+                    if(box.get(row).charAt(col) != '.') {
+                        rows[row] |= 1 << col;
+                        blocks++;
+                    }
+                }
+            }
+            if(blocks == 0) {
+                throw new IllegalArgumentException("un giro de " + name + " no tiene bloques");
+            }
+            states.add(rows);
+        }
+
+        /**
+         * Cambia los empujes de la pieza
+         * @param rot El giro desde el que se aplican, o -1 para todos
+         * @param kicks Los empujes
+         */
+        void setKicks(int rot, int[] kicks)
+        {
+            if(rot < 0) {
+                this.kicks = kicks;
+            } else if(rot < MAX_ROTATIONS) {
+                rotationKicks[rot] = kicks;
+            } else {
+                throw new IllegalArgumentException("giro no válido: " + rot);
+            }
+        }
+
+        /**
+         * @return Los empujes al girar desde un giro
+         */
+        int[] kicks(int rot)
+        {
+            return rotationKicks[rot] != null ? rotationKicks[rot] : kicks;
+        }
+
+        /**
+         * Completa los giros que no se dieron girando la caja 90º a la derecha
+         */
+        void complete()
+        {
+            if(states.isEmpty()) {
+                throw new IllegalArgumentException(name + " no tiene ninguna caja");
+            }
+            if(turns == 0 && states.size() == 1) {
+                int[] next = turn(states.get(0));
+                while(states.size() < MAX_ROTATIONS && !Arrays.equals(next, states.get(0))) {
+                    states.add(next);
+                    next = turn(next);
+                }
+            } else if(turns != 0) {
+                if(states.size() > turns) {
+                    throw new IllegalArgumentException(name + " tiene más cajas que giros");
+                }
+                while(states.size() < turns) {
+                    states.add(turn(states.get(states.size() - 1)));
+                }
+            }
+        }
+
+        /**
+         * Gira 90º en el sentido de las agujas del reloj las máscaras de una
+         * caja, como el giro de 3x3 del juego original
+         * @param rows Las máscaras de la caja
+         * @return Las máscaras giradas
+         */
+        static int[] turn(int[] rows)
+        {
+            int n = rows.length;
+            int[] turned = new int[n];
+            for(int row = 0; row < n; row++) {
+                for(int col = 0; col < n; col++) {
+                    if((rows[n - 1 - col] & (1 << row)) != 0) {
+                        turned[row] |= 1 << col;
+                    }
+                }
+            }
+            return turned;
+        }
+    }
+
+    /**
+     * Rutina main que compila los juegos de piezas dados y mide cuánto
+     * tarda Grid en aplicar entradas al azar con cada uno, para comprobar
+     * que todos van por el mismo camino a la misma velocidad.
+     * Uso: java PieceSet [ficheros de definición]
+     */
+    public static void main(String[] args) throws IOException
+    {
+        List<PieceSet> sets = new ArrayList<PieceSet>();
+        sets.add(CLASSIC);
+        for(String arg : args) {
+            sets.add(load(new File(arg)));
+        }
+        int inputs = 2000000;
+        int[] moves = {InputLog.LEFT, InputLog.RIGHT, InputLog.TURN, InputLog.DOWN, InputLog.GRAVITY,
+                       InputLog.GRAVITY, InputLog.GRAVITY, InputLog.HARD_DROP};
+        System.out.println("juego            tipos  giros  caja   ns/entrada");
+        for(int pass = 0; pass < 2; pass++) {
+            // la primera pasada calienta el compilador y solo se muestra la segunda
+            for(PieceSet set : sets) {
+                int rotations = 0;
+                for(int type = 0; type < set.getTypes(); type++) {
+                    rotations += set.getRotations(type);
+                }
+                Grid grid = new Grid(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, 1, set);
+                GameRandom random = new GameRandom(2);
+                long start = System.nanoTime();
+                for(int i = 0; i < inputs; i++) {
+                    int input = grid.isTopOut() ? InputLog.RESET : moves[random.nextInt(moves.length)];
+                    InputLog.apply(grid, input);
+                }
+                double nanos = (double) (System.nanoTime() - start) / inputs;
+                if(pass == 1) {
+                    System.out.printf("%-16s %5d %6d %5d %12.1f%n", set.getName(), set.getTypes(), rotations,
+                                      set.getMaxSize(), nanos);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Tablas precalculadas del juego de piezas por defecto (PieceSet.getDefault,
+ * los 7 tetriminos salvo que se elija otro con la propiedad tetris.pieces):
+ * las máscaras de filas de cada giro, sus límites y las reglas de giro,
+ * con el mismo giro que Grid, de modo que las simulaciones sin interfaz se
+ * comportan igual que el juego.
+ *
+ * Las tablas son las del PieceSet compilado; esta clase solo las deja en
+ * campos estáticos para que Board y los bots las lean sin más indirecciones.
+ * En cada máscara el bit j representa la columna j de la caja de la pieza.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class PieceTable
+{
+    // el juego de piezas de las tablas
+    private static final PieceSet set = PieceSet.getDefault();
+    // número de tipos de pieza distintos
+    public static final int TYPES = set.getTypes();
+    // el tamaño máximo de la caja que contiene a una pieza
+    public static final int MAX_SIZE = set.getMaxSize();
+
+    // tamaño de la caja e índice de la Palette de cada tipo
+    private static final int[] size = set.size;
+    private static final int[] colorIndex = set.colorIndex;
+    // máscaras de filas por tipo, giro y fila de la caja
+    private static final int[][][] masks = set.masks;
+    // columnas y filas mínimas y máximas ocupadas por tipo y giro
+    private static final int[][] minCol = set.minCol;
+    private static final int[][] maxCol = set.maxCol;
+    private static final int[][] minRow = set.minRow;
+    private static final int[][] maxRow = set.maxRow;
+    // región que debe estar libre para girar desde cada giro y sus límites
+    private static final int[][][] clearance = set.clearance;
+    private static final int[][] clearMinCol = set.clearMinCol;
+    private static final int[][] clearMaxCol = set.clearMaxCol;
+    private static final int[][] clearMinRow = set.clearMinRow;
+    private static final int[][] clearMaxRow = set.clearMaxRow;
+    // empujes que se prueban al girar desde cada giro
+    private static final int[][][] kickX = set.kickX;
+    private static final int[][][] kickY = set.kickY;
+
+    /**
+     * Constructor privado, la clase solo ofrece datos estáticos
+     */
+    private PieceTable()
+    {
+    }
+
+    /**
+     * @return El juego de piezas de las tablas
+     */
+    public static PieceSet getSet()
+    {
+        return set;
+    }
+
+    /**
+     * Acceso al número de giros distintos de una pieza
+     * @param type El tipo de pieza
+     * @return El número de giros (de 1 a 4)
+     */
+    public static int rotations(int type)
+    {
+        return masks[type].length;
+    }
+
+    /**
+     * Acceso al tamaño de la caja de una pieza
+     * @param type El tipo de pieza
+     * @return El lado de la caja
+     */
+    public static int size(int type)
+    {
+        return size[type];
+    }
+
+    /**
+     * @param type El tipo de pieza
+     * @param cols Las columnas del tablero
+     * @return La columna donde aparece su caja, como en Grid.createTetrimino
+     */
+    public static int spawnX(int type, int cols)
+    {
+        return set.getSpawnCol(type, cols);
+    }
+
+    /**
+     * @param type El tipo de pieza
+     * @return El índice de la Palette de sus bloques
+     */
+    public static int colorIndex(int type)
+    {
+        return colorIndex[type];
+    }
+
+    /**
+     * Acceso a la máscara de una fila de la caja de la pieza
+     * @param type El tipo de pieza
+     * @param rot El giro
+     * @param row La fila de la caja
+     * @return La máscara de bits de las columnas ocupadas en esa fila
+     */
+    public static int rowMask(int type, int rot, int row)
+    {
+        return masks[type][rot][row];
+    }
+
+    /**
+     * @return La primera columna ocupada de la caja en ese giro
+     */
+    public static int minCol(int type, int rot)
+    {
+        return minCol[type][rot];
+    }
+
+    /**
+     * @return La última columna ocupada de la caja en ese giro
+     */
+    public static int maxCol(int type, int rot)
+    {
+        return maxCol[type][rot];
+    }
+
+    /**
+     * @return La primera fila ocupada de la caja en ese giro
+     */
+    public static int minRow(int type, int rot)
+    {
+        return minRow[type][rot];
+    }
+
+    /**
+     * @return La última fila ocupada de la caja en ese giro
+     */
+    public static int maxRow(int type, int rot)
+    {
+        return maxRow[type][rot];
+    }
+
+    /**
+     * Acceso a la máscara de una fila de la región que debe estar libre
+     * para girar desde un giro, en la posición de la caja tras el empuje
+     * @param type El tipo de pieza
+     * @param rot El giro desde el que se gira
+     * @param row La fila de la caja
+     * @return La máscara de bits de las columnas que deben estar libres
+     */
+    public static int clearanceMask(int type, int rot, int row)
+    {
+        return clearance[type][rot][row];
+    }
+
+    /**
+     * @return La primera columna de la región libre para girar desde ese giro
+     */
+    public static int clearMinCol(int type, int rot)
+    {
+        return clearMinCol[type][rot];
+    }
+
+    /**
+     * @return La última columna de la región libre para girar desde ese giro
+     */
+    public static int clearMaxCol(int type, int rot)
+    {
+        return clearMaxCol[type][rot];
+    }
+
+    /**
+     * @return La primera fila de la región libre para girar desde ese giro
+     */
+    public static int clearMinRow(int type, int rot)
+    {
+        return clearMinRow[type][rot];
+    }
+
+    /**
+     * @return La última fila de la región libre para girar desde ese giro
+     */
+    public static int clearMaxRow(int type, int rot)
+    {
+        return clearMaxRow[type][rot];
+    }
+
+    /**
+     * @return El número de empujes que se prueban al girar desde ese giro
+     */
+    public static int kicks(int type, int rot)
+    {
+        return kickX[type][rot].length;
+    }
+
+    /**
+     * @return Las columnas que mueve la caja el empuje k al girar desde ese giro
+     */
+    public static int kickX(int type, int rot, int k)
+    {
+        return kickX[type][rot][k];
+    }
+
+    /**
+     * @return Las filas que mueve la caja el empuje k al girar desde ese giro
+     */
+    public static int kickY(int type, int rot, int k)
+    {
+        return kickY[type][rot][k];
+    }
+}
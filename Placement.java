@@ -0,0 +1,63 @@
+/**
+ * Codifica en un único entero la posición final de una pieza en el
+ * tablero (giro, columna y fila de la esquina superior izquierda de su caja),
+ * para poder manejar listas de jugadas sin crear objetos.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class Placement
+{
+    // valor que indica que no hay ninguna jugada posible
+    public static final int NONE = -1;
+    // tamaño suficiente para cualquier lista de jugadas de un tablero por defecto
+    public static final int MAX = 4 * Grid.DEFAULT_ROWS * (Grid.DEFAULT_COLS + PieceTable.MAX_SIZE);
+    // desplazamiento para poder guardar columnas negativas de la caja
+    private static final int X_OFFSET = 8;
+
+    /**
+     * Constructor privado, la clase solo ofrece métodos estáticos
+     */
+    private Placement()
+    {
+    }
+
+    /**
+     * Empaqueta una jugada en un entero
+     * @param rot El giro de la pieza
+     * @param x La columna de la caja de la pieza (puede ser negativa)
+     * @param y La fila de la caja de la pieza
+     * @return La jugada codificada
+     */
+    public static int pack(int rot, int x, int y)
+    {
+        return (y << 16) | ((x + X_OFFSET) << 8) | rot;
+    }
+
+    /**
+     * @param placement La jugada codificada
+     * @return El giro de la pieza
+     */
+    public static int rot(int placement)
+    {
+        return placement & 0xFF;
+    }
+
+    /**
+     * @param placement La jugada codificada
+     * @return La columna de la caja de la pieza
+     */
+    public static int x(int placement)
+    {
+        return ((placement >> 8) & 0xFF) - X_OFFSET;
+    }
+
+    /**
+     * @param placement La jugada codificada
+     * @return La fila de la caja de la pieza
+     */
+    public static int y(int placement)
+    {
+        return placement >> 16;
+    }
+}
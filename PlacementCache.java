@@ -0,0 +1,207 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché de jugadas indexada por el perfil de la superficie del tablero.
+ * La clave combina las alturas de las columnas relativas a la más baja,
+ * la pieza actual y la siguiente; el valor es la mejor jugada encontrada
+ * para esa situación, con su fila relativa a la columna más baja para que
+ * sirva a cualquier altura del montón.
+ *
+ * Se guarda en memoria con un límite de entradas, descartando la menos
+ * usada recientemente, y se puede volcar y recuperar de un fichero
+ * proyectado en memoria para empezar cada ejecución con la caché caliente.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class PlacementCache
+{
+    // identificador y versión del formato del fichero
+    private static final int MAGIC = 0x50434331;
+    private static final int VERSION = 2;
+    // bytes de la cabecera y de cada entrada del fichero
+    private static final int HEADER_BYTES = 12, ENTRY_BYTES = 12;
+    // bits por columna en la clave y diferencia máxima de alturas que se distingue
+    private static final int HEIGHT_BITS = 4, MAX_STEP = (1 << HEIGHT_BITS) - 1;
+    // bits de cada pieza en la clave, para juegos de hasta 31 piezas
+    private static final int TYPE_BITS = 5;
+    // valor de la pieza siguiente cuando no se conoce
+    public static final int NO_PIECE = (1 << TYPE_BITS) - 1;
+    // número máximo de entradas por defecto
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    // las jugadas por clave, en orden de uso
+    private final LinkedHashMap<Long, Integer> entries;
+    // estadísticas de uso
+    private long hits, misses;
+
+    /**
+     * Construye una caché vacía con la capacidad por defecto
+     */
+    public PlacementCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construye una caché vacía
+     * @param capacity El número máximo de entradas que se conservan
+     */
+    public PlacementCache(final int capacity)
+    {
+        entries = new LinkedHashMap<Long, Integer>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Calcula la clave de una situación de juego
+     * @param board El tablero, como mucho de 12 columnas
+     * @param type La pieza actual
+     * @param next La pieza siguiente, o NO_PIECE si no se conoce
+     * @return La clave de la situación
+     */
+    public static long key(Board board, int type, int next)
+    {
+        int[] heights = board.computeHeights();
+        if(heights.length * HEIGHT_BITS > 48) {
+            throw new IllegalArgumentException("El tablero tiene demasiadas columnas para la caché");
+        }
+        int min = minimum(heights);
+        long key = 0;
+        for(int col = 0; col < heights.length; col++) {
+            key = (key << HEIGHT_BITS) | Math.min(heights[col] - min, MAX_STEP);
+        }
+        return (key << (2 * TYPE_BITS)) | (type << TYPE_BITS) | next;
+    }
+
+    /**
+     * Busca la jugada guardada para una situación
+     * @param board El tablero actual
+     * @param type La pieza actual
+     * @param next La pieza siguiente, o NO_PIECE si no se conoce
+     * @return La jugada adaptada a la altura de este tablero, o Placement.NONE
+     */
+    public synchronized int lookup(Board board, int type, int next)
+    {
+        Integer stored = entries.get(key(board, type, next));
+        if(stored == null) {
+            misses++;
+            return Placement.NONE;
+        }
+        hits++;
+        int base = board.getRows() - minimum(board.computeHeights());
+        int value = stored;
+        return Placement.pack(Placement.rot(value), Placement.x(value), Placement.y(value) + base);
+    }
+
+    /**
+     * Guarda la jugada elegida para una situación
+     * @param board El tablero antes de colocar la pieza
+     * @param type La pieza actual
+     * @param next La pieza siguiente, o NO_PIECE si no se conoce
+     * @param placement La jugada elegida
+     */
+    public synchronized void store(Board board, int type, int next, int placement)
+    {
+        long key = key(board, type, next);
+        int base = board.getRows() - minimum(board.computeHeights());
+        // la fila se guarda relativa a la columna más baja (puede ser negativa)
+        int relative = Placement.y(placement) - base;
+        entries.put(key, Placement.pack(Placement.rot(placement), Placement.x(placement), relative));
+    }
+
+    /**
+     * @return El número de entradas guardadas
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return Las búsquedas que encontraron jugada
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return Las búsquedas que no encontraron jugada
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Vuelca la caché a un fichero proyectado en memoria, de la menos a la
+     * más usada recientemente para conservar el orden al recuperarla
+     * @param file El fichero donde se guarda
+     */
+    public synchronized void save(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long length = HEADER_BYTES + (long) entries.size() * ENTRY_BYTES;
+            raf.setLength(length);
+            MappedByteBuffer out = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(entries.size());
+            for(Map.Entry<Long, Integer> entry : entries.entrySet()) {
+                out.putLong(entry.getKey());
+                out.putInt(entry.getValue());
+            }
+            out.force();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Añade a la caché las entradas de un fichero guardado con save
+     * @param file El fichero que se lee
+     */
+    public synchronized void load(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer in = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if(in.remaining() < HEADER_BYTES || in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Formato de caché no reconocido: " + file);
+            }
+            int count = in.getInt();
+            if(in.remaining() < (long) count * ENTRY_BYTES) {
+                throw new IOException("Fichero de caché incompleto: " + file);
+            }
+            for(int i = 0; i < count; i++) {
+                long key = in.getLong();
+                entries.put(key, in.getInt());
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return La menor de las alturas
+     */
+    private static int minimum(int[] heights)
+    {
+        int min = Integer.MAX_VALUE;
+        for(int h : heights) {
+            min = Math.min(min, h);
+        }
+        return min;
+    }
+}
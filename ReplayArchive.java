@@ -0,0 +1,397 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Archivo de repeticiones de partidas en formato de solo añadir. Las
+ * repeticiones se empaquetan una tras otra en ficheros de segmento grandes
+ * que se leen proyectados en memoria (MappedByteBuffer), de modo que recorrer
+ * o analizar miles de partidas no obliga a cargarlas en el heap.
+ *
+ * Un fichero de índice aparte guarda por cada repetición su identificador,
+ * puntuación, fecha y posición, y permite buscar por identificador, obtener
+ * las mejores puntuaciones o las partidas de un intervalo de fechas.
+ *
+ * Formato de cada repetición en su segmento (enteros big-endian):
+ * MAGIC, id, semilla, fecha, puntuación, pasos, intervalo de fotogramas
+ * clave, filas, un entero por paso (pieza y jugada) y los fotogramas clave.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class ReplayArchive
+{
+    // identificadores de los registros y del índice
+    private static final int RECORD_MAGIC = 0x52504C31;
+    private static final int INDEX_MAGIC = 0x52504931;
+    // bytes de la cabecera de una repetición y de una entrada del índice
+    static final int RECORD_HEADER = 4 + 8 + 8 + 8 + 4 + 4 + 4 + 4;
+    private static final int INDEX_ENTRY = 8 + 4 + 8 + 4 + 8 + 4;
+    // tamaño máximo de un segmento
+    public static final long DEFAULT_SEGMENT_BYTES = 256L << 20;
+
+    // el directorio del archivo
+    private final File directory;
+    // tamaño máximo de cada segmento
+    private final long segmentBytes;
+    // canal del fichero de índice, abierto para añadir
+    private final FileChannel index;
+
+    // entradas del índice en memoria, en orden de inserción
+    private long[] ids = new long[0], dates = new long[0], offsets = new long[0];
+    private int[] scores = new int[0], segments = new int[0], lengths = new int[0];
+    private int count;
+    // órdenes por identificador, puntuación y fecha; cada entrada nueva se
+    // inserta en su sitio con una búsqueda binaria
+    private int[] byId = new int[0], byScore = new int[0], byDate = new int[0];
+    // claves de los órdenes
+    private static final int ID = 0, SCORE = 1, DATE = 2;
+    // proyecciones de los segmentos ya abiertos
+    private final List<MappedByteBuffer> mapped = new ArrayList<MappedByteBuffer>();
+    // el segmento al que se añade y su tamaño actual
+    private int currentSegment;
+    private long currentSize;
+
+    /**
+     * Abre o crea un archivo de repeticiones en un directorio
+     * @param directory El directorio del archivo
+     */
+    public ReplayArchive(File directory) throws IOException
+    {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Abre o crea un archivo de repeticiones en un directorio
+     * @param directory El directorio del archivo
+     * @param segmentBytes El tamaño máximo de cada segmento (menos de 2 GB)
+     */
+    public ReplayArchive(File directory, long segmentBytes) throws IOException
+    {
+        this.directory = directory;
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE);
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("No se puede crear el directorio " + directory);
+        }
+        index = new RandomAccessFile(new File(directory, "index.rpi"), "rw").getChannel();
+        readIndex();
+        currentSegment = count > 0 ? segments[count - 1] : 0;
+        currentSize = segmentFile(currentSegment).length();
+    }
+
+    /**
+     * Añade una repetición al final del segmento actual y al índice
+     * @param replay La partida grabada
+     * @param score La puntuación de la partida
+     * @param date La fecha de la partida en milisegundos
+     * @return La posición de la repetición en el índice
+     */
+    public synchronized int append(ReplayRecorder replay, int score, long date) throws IOException
+    {
+        int rows = replay.getRows();
+        int length = RECORD_HEADER + 4 * replay.getTicks() + 4 * rows * replay.getKeyframeCount();
+        if(currentSize > 0 && currentSize + length > segmentBytes) {
+            currentSegment++;
+            currentSize = 0;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        out.putInt(RECORD_MAGIC);
+        out.putLong(replay.getGameId());
+        out.putLong(replay.getSeed());
+        out.putLong(date);
+        out.putInt(score);
+        out.putInt(replay.getTicks());
+        out.putInt(replay.getKeyframeInterval());
+        out.putInt(rows);
+        for(int tick = 0; tick < replay.getTicks(); tick++) {
+            out.putInt(replay.getStep(tick));
+        }
+        for(int k = 0; k < replay.getKeyframeCount(); k++) {
+            for(int row = 0; row < rows; row++) {
+                out.putInt(replay.getKeyframeRow(k, row));
+            }
+        }
+        out.flip();
+        long offset = currentSize;
+        FileChannel segment = new RandomAccessFile(segmentFile(currentSegment), "rw").getChannel();
+        try {
+            while(out.hasRemaining()) {
+                segment.write(out, offset + out.position());
+            }
+        } finally {
+            segment.close();
+        }
+        currentSize += length;
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        entry.putLong(replay.getGameId()).putInt(score).putLong(date)
+             .putInt(currentSegment).putLong(offset).putInt(length);
+        entry.flip();
+        // se escribe tras la última entrada completa, no al final del fichero
+        long position = 4 + (long) count * INDEX_ENTRY;
+        while(entry.hasRemaining()) {
+            index.write(entry, position + entry.position());
+        }
+        addEntry(replay.getGameId(), score, date, currentSegment, offset, length);
+        return count - 1;
+    }
+
+    /**
+     * @return El número de repeticiones del archivo
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * Busca una repetición por su identificador
+     * @param gameId El identificador de la partida
+     * @return Su posición en el índice, o -1 si no existe
+     */
+    public synchronized int find(long gameId)
+    {
+        int low = 0, high = count - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            long id = ids[byId[mid]];
+            if(id < gameId) {
+                low = mid + 1;
+            } else if(id > gameId) {
+                high = mid - 1;
+            } else {
+                return byId[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Obtiene las repeticiones con mejor puntuación
+     * @param n El número máximo de repeticiones
+     * @return Sus posiciones en el índice, de mayor a menor puntuación
+     */
+    public synchronized int[] topScores(int n)
+    {
+        int[] result = new int[Math.min(n, count)];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = byScore[count - 1 - i];
+        }
+        return result;
+    }
+
+    /**
+     * Obtiene las repeticiones jugadas en un intervalo de fechas
+     * @param from La fecha inicial incluida, en milisegundos
+     * @param to La fecha final excluida, en milisegundos
+     * @return Sus posiciones en el índice, ordenadas por fecha
+     */
+    public synchronized int[] between(long from, long to)
+    {
+        int first = lowerBound(from), last = lowerBound(to);
+        int[] result = new int[last - first];
+        for(int i = first; i < last; i++) {
+            result[i - first] = byDate[i];
+        }
+        return result;
+    }
+
+    /**
+     * Abre una repetición para leerla directamente del segmento proyectado
+     * @param entry La posición de la repetición en el índice
+     * @return Una vista de solo lectura de la repetición
+     */
+    public synchronized ArchivedReplay open(int entry) throws IOException
+    {
+        MappedByteBuffer segment = map(segments[entry], offsets[entry] + lengths[entry]);
+        ByteBuffer view = segment.duplicate();
+        view.position((int) offsets[entry]);
+        view.limit((int) (offsets[entry] + lengths[entry]));
+        ByteBuffer record = view.slice();
+        if(record.getInt(0) != RECORD_MAGIC) {
+            throw new IOException("Repetición dañada en el segmento " + segments[entry]);
+        }
+        return new ArchivedReplay(record);
+    }
+
+    /**
+     * @param entry La posición en el índice
+     * @return El identificador de la partida
+     */
+    public synchronized long getGameId(int entry)
+    {
+        return ids[entry];
+    }
+
+    /**
+     * @param entry La posición en el índice
+     * @return La puntuación de la partida
+     */
+    public synchronized int getScore(int entry)
+    {
+        return scores[entry];
+    }
+
+    /**
+     * @param entry La posición en el índice
+     * @return La fecha de la partida en milisegundos
+     */
+    public synchronized long getDate(int entry)
+    {
+        return dates[entry];
+    }
+
+    /**
+     * Cierra el fichero de índice
+     */
+    public synchronized void close() throws IOException
+    {
+        index.close();
+    }
+
+    /**
+     * Proyecta en memoria un segmento, volviendo a proyectarlo si ha crecido
+     * desde la última vez
+     */
+    private MappedByteBuffer map(int segment, long needed) throws IOException
+    {
+        while(mapped.size() <= segment) {
+            mapped.add(null);
+        }
+        MappedByteBuffer buffer = mapped.get(segment);
+        if(buffer == null || buffer.capacity() < needed) {
+            RandomAccessFile raf = new RandomAccessFile(segmentFile(segment), "r");
+            try {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            } finally {
+                raf.close();
+            }
+            mapped.set(segment, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * @return El fichero de un segmento
+     */
+    private File segmentFile(int segment)
+    {
+        return new File(directory, String.format("segment-%05d.rpl", segment));
+    }
+
+    /**
+     * Lee el fichero de índice proyectándolo en memoria
+     */
+    private void readIndex() throws IOException
+    {
+        long size = index.size();
+        if(size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            header.putInt(INDEX_MAGIC).flip();
+            index.write(header, 0);
+            return;
+        }
+        MappedByteBuffer in = index.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if(in.getInt() != INDEX_MAGIC) {
+            throw new IOException("Formato de índice no reconocido en " + directory);
+        }
+        // una entrada incompleta al final (escritura cortada) se ignora y se
+        // corta, para que la siguiente entrada se escriba en su sitio
+        while(in.remaining() >= INDEX_ENTRY) {
+            addEntry(in.getLong(), in.getInt(), in.getLong(), in.getInt(), in.getLong(), in.getInt());
+        }
+        index.truncate(4 + (long) count * INDEX_ENTRY);
+    }
+
+    /**
+     * Añade una entrada al índice en memoria
+     */
+    private void addEntry(long id, int score, long date, int segment, long offset, int length)
+    {
+        if(count == ids.length) {
+            int capacity = Math.max(16, count * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            dates = Arrays.copyOf(dates, capacity);
+            segments = Arrays.copyOf(segments, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            byId = Arrays.copyOf(byId, capacity);
+            byScore = Arrays.copyOf(byScore, capacity);
+            byDate = Arrays.copyOf(byDate, capacity);
+        }
+        ids[count] = id;
+        scores[count] = score;
+        dates[count] = date;
+        segments[count] = segment;
+        offsets[count] = offset;
+        lengths[count] = length;
+        insert(byId, ID, count);
+        insert(byScore, SCORE, count);
+        insert(byDate, DATE, count);
+        count++;
+    }
+
+    /**
+     * Inserta una entrada en uno de los órdenes del índice, detrás de las
+     * que tienen la misma clave para conservar el orden de inserción
+     * @param order El orden, con las count entradas anteriores
+     * @param kind La clave del orden (ID, SCORE o DATE)
+     * @param entry La entrada nueva
+     */
+    private void insert(int[] order, int kind, int entry)
+    {
+        long value = key(kind, entry);
+        int slot = count;
+        if(count > 0 && key(kind, order[count - 1]) > value) {
+            int low = 0, high = count;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if(key(kind, order[mid]) <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            slot = low;
+            System.arraycopy(order, slot, order, slot + 1, count - slot);
+        }
+        order[slot] = entry;
+    }
+
+    /**
+     * @return La clave de una entrada en un orden del índice
+     */
+    private long key(int kind, int entry)
+    {
+        if(kind == ID) {
+            return ids[entry];
+        } else if(kind == SCORE) {
+            return scores[entry];
+        }
+        return dates[entry];
+    }
+
+    /**
+     * @return La primera posición del orden por fecha cuya fecha no es menor que date
+     */
+    private int lowerBound(long date)
+    {
+        int low = 0, high = count;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(dates[byDate[mid]] < date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
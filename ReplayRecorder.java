@@ -0,0 +1,166 @@
+import java.util.Arrays;
+
+/**
+ * Graba una partida sin interfaz para guardarla en un ReplayArchive.
+ * Cada paso guarda la pieza y la jugada elegida, y cada cierto número de
+ * pasos se guarda además una copia completa del tablero (fotograma clave)
+ * para que un visor pueda saltar a cualquier paso sin volver a simular
+ * la partida desde el principio.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class ReplayRecorder
+{
+    // pasos entre dos fotogramas clave por defecto
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+
+    // identificador y semilla de la partida grabada
+    private final long gameId, seed;
+    // pasos entre dos fotogramas clave
+    private final int keyframeInterval;
+    // filas del tablero de la partida
+    private int rows;
+    // pasos grabados: pieza en el byte alto y jugada en el resto
+    private int[] steps = new int[256];
+    private int ticks;
+    // fotogramas clave: todas las filas del tablero una tras otra
+    private int[] keyframes = new int[0];
+    private int keyframeCount;
+
+    /**
+     * Prepara la grabación de una partida
+     * @param gameId El identificador de la partida en el archivo
+     * @param seed La semilla de la secuencia de piezas
+     */
+    public ReplayRecorder(long gameId, long seed)
+    {
+        this(gameId, seed, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Prepara la grabación de una partida
+     * @param gameId El identificador de la partida en el archivo
+     * @param seed La semilla de la secuencia de piezas
+     * @param keyframeInterval Los pasos entre dos fotogramas clave
+     */
+    public ReplayRecorder(long gameId, long seed, int keyframeInterval)
+    {
+        this.gameId = gameId;
+        this.seed = seed;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Graba un paso de la partida
+     * @param before El tablero antes de colocar la pieza
+     * @param type La pieza colocada
+     * @param placement La jugada elegida
+     */
+    public void record(Board before, int type, int placement)
+    {
+        rows = before.getRows();
+        if(ticks % keyframeInterval == 0) {
+            if(keyframes.length < (keyframeCount + 1) * rows) {
+                keyframes = Arrays.copyOf(keyframes, Math.max(rows, keyframes.length * 2));
+            }
+            for(int row = 0; row < rows; row++) {
+                keyframes[keyframeCount * rows + row] = before.getRowMask(row);
+            }
+            keyframeCount++;
+        }
+        if(ticks == steps.length) {
+            steps = Arrays.copyOf(steps, ticks * 2);
+        }
+        steps[ticks++] = (type << 24) | (placement & 0xFFFFFF);
+    }
+
+    /**
+     * Juega y graba una partida completa
+     * @param game La partida
+     * @param bot El bot que juega
+     * @param maxPieces El límite de piezas
+     */
+    public void play(HeadlessGame game, Bot bot, int maxPieces)
+    {
+        Board before = new Board(game.getBoard().getRows(), game.getBoard().getCols());
+        while(!game.isOver() && game.getPieces() < maxPieces) {
+            before.copyFrom(game.getBoard());
+            int type = game.getCurrent();
+            int placed = game.getPieces();
+            game.step(bot);
+            // si el bot no pudo colocar la pieza la partida acabó sin jugada
+            if(game.getPieces() == placed) {
+                break;
+            }
+            record(before, type, game.getLastPlacement());
+        }
+    }
+
+    /**
+     * @return El identificador de la partida
+     */
+    public long getGameId()
+    {
+        return gameId;
+    }
+
+    /**
+     * @return La semilla de la partida
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return Los pasos grabados
+     */
+    public int getTicks()
+    {
+        return ticks;
+    }
+
+    /**
+     * @return Los pasos entre fotogramas clave
+     */
+    public int getKeyframeInterval()
+    {
+        return keyframeInterval;
+    }
+
+    /**
+     * @return Las filas del tablero grabado
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * @return El número de fotogramas clave
+     */
+    public int getKeyframeCount()
+    {
+        return keyframeCount;
+    }
+
+    /**
+     * @param tick El paso
+     * @return La pieza y la jugada del paso codificadas
+     */
+    public int getStep(int tick)
+    {
+        return steps[tick];
+    }
+
+    /**
+     * @param index El número de fotograma clave
+     * @param row La fila
+     * @return La máscara de esa fila en el fotograma
+     */
+    public int getKeyframeRow(int index, int row)
+    {
+        return keyframes[index * rows + row];
+    }
+}
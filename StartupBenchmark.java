@@ -0,0 +1,159 @@
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mide el tiempo hasta el primer fotograma del juego en arranques en frío:
+ * lanza cada medida en una máquina virtual nueva, que arranca el juego,
+ * espera a que GameView pinte el primer fotograma con el estado de la
+ * partida y escribe los milisegundos transcurridos desde el main y desde
+ * el arranque de la máquina virtual. Compara el arranque en paralelo de
+ * Tetris.launch con el arranque secuencial de new Tetris().
+ *
+ * Las medidas pueden repetirse con un archivo de clases compartidas (CDS)
+ * para ver cuánto ahorra cargar las clases ya preparadas. La máquina
+ * virtual de cada medida recibe las opciones que siguen a "--":
+ *
+ *   java -XX:ArchiveClassesAtExit=tetris.jsa StartupBenchmark --child paralelo
+ *   java StartupBenchmark 20 -- -XX:SharedArchiveFile=tetris.jsa
+ *
+ * La primera línea hace una sola medida en esa misma máquina virtual y
+ * deja en tetris.jsa las clases que carga un arranque
+ * (el juego no genera clases en tiempo de ejecución, así que todas pueden
+ * archivarse). Necesita una pantalla, que puede ser virtual (xvfb-run).
+ *
+ * Uso: java StartupBenchmark [arranques por modo] [-- opciones de la máquina virtual]
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class StartupBenchmark
+{
+    // argumento con el que se lanza cada medida y modos de arranque
+    private static final String CHILD = "--child";
+    private static final String PARALLEL = "paralelo", SEQUENTIAL = "secuencial";
+    // tiempo máximo de espera del primer fotograma
+    private static final long TIMEOUT_NANOS = 30000000000L;
+
+    /**
+     * Arranca el juego en esta máquina virtual y escribe en la salida los
+     * milisegundos hasta el primer fotograma desde el main y desde el
+     * arranque de la máquina virtual
+     * @param mode El modo de arranque
+     * @param mainStart El momento en que empezó el main, de System.nanoTime
+     */
+    private static void child(String mode, long mainStart) throws Exception
+    {
+        final Tetris tetris;
+        if(PARALLEL.equals(mode)) {
+            tetris = Tetris.launch();
+        } else {
+            // como el main original: todo en el hilo principal
+            tetris = new Tetris();
+        }
+        GameView view = tetris.getGameView();
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while(view.getFirstFrameNanos() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        long first = view.getFirstFrameNanos();
+        if(first == 0) {
+            System.out.println("-1 -1");
+        } else {
+            // la gestión de la máquina virtual se carga después de medir para no contarla
+            long now = System.nanoTime();
+            long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            double fromMain = (first - mainStart) / 1e6;
+            double fromJvm = uptimeMillis - (now - first) / 1e6;
+            System.out.println(fromMain + " " + fromJvm);
+        }
+        System.out.flush();
+        System.exit(0);
+    }
+
+    /**
+     * Lanza una medida en una máquina virtual nueva
+     * @param mode El modo de arranque
+     * @param jvmOptions Las opciones de la máquina virtual
+     * @return Los milisegundos desde el main y desde el arranque de la máquina virtual
+     */
+    private static double[] run(String mode, List<String> jvmOptions) throws Exception
+    {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StartupBenchmark.class.getName());
+        command.add(CHILD);
+        command.add(mode);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String result = null;
+        String line;
+        while((line = in.readLine()) != null) {
+            // la última línea es la medida; las anteriores son avisos de la máquina virtual
+            result = line;
+        }
+        process.waitFor();
+        String[] parts = result == null ? new String[0] : result.trim().split(" ");
+        if(parts.length != 2 || Double.parseDouble(parts[0]) < 0) {
+            throw new IllegalStateException("La medida no llegó al primer fotograma: " + result);
+        }
+        return new double[] {Double.parseDouble(parts[0]), Double.parseDouble(parts[1])};
+    }
+
+    /**
+     * @return El valor de un percentil de unas medidas ordenadas
+     */
+    private static double percentile(double[] sorted, double p)
+    {
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Rutina main que lanza las medidas de cada modo y muestra sus
+     * percentiles, o hace una medida si es una de las máquinas lanzadas
+     */
+    public static void main(String[] args) throws Exception
+    {
+        long mainStart = System.nanoTime();
+        if(args.length == 2 && CHILD.equals(args[0])) {
+            child(args[1], mainStart);
+            return;
+        }
+        if(GraphicsEnvironment.isHeadless()) {
+            System.err.println("Se necesita una pantalla; se puede usar una virtual: xvfb-run java StartupBenchmark");
+            System.exit(1);
+        }
+        int runs = 10;
+        List<String> jvmOptions = new ArrayList<String>();
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("--")) {
+                jvmOptions.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            }
+            runs = Integer.parseInt(args[i]);
+        }
+        System.out.println("modo        arranques  main p50  main mín  jvm p50   jvm mín   (ms)");
+        for(String mode : new String[] {SEQUENTIAL, PARALLEL}) {
+            double[] fromMain = new double[runs];
+            double[] fromJvm = new double[runs];
+            for(int i = 0; i < runs; i++) {
+                double[] result = run(mode, jvmOptions);
+                fromMain[i] = result[0];
+                fromJvm[i] = result[1];
+            }
+            Arrays.sort(fromMain);
+            Arrays.sort(fromJvm);
+            System.out.printf("%-11s %9d %9.1f %9.1f %9.1f %9.1f%n", mode, runs,
+                              percentile(fromMain, 50), fromMain[0], percentile(fromJvm, 50), fromJvm[0]);
+        }
+    }
+}
@@ -2,106 +2,241 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.awt.Color;
-import javax.swing.Timer;
 import java.awt.event.*;
 import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.awt.EventQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
 
 /**
- * Una simulacin del juego Tetris con las funcionalidades
- * bsicas del juego original
+ * Una simulación del juego Tetris con las funcionalidades
+ * básicas del juego original
  * 
- * @author Octavio Martnez
+ * @author Octavio Martínez
  * @version 17.05.2011
  */
 public class Tetris
 {
-    // Retraso preestablecido para el temporizador que controla la caida de las piezas.
-    private static final int TIME_DELAY = 1000;
+    // propiedad del sistema con el fichero donde se guardan las entradas al acabar
+    private static final String INPUT_LOG_PROPERTY = "tetris.inputlog";
+    // propiedad del sistema con el fichero donde se guarda la partida para continuarla
+    private static final String SAVE_GAME_PROPERTY = "tetris.savegame";
+    // tiempo real entre dos guardados automáticos de la partida, sea cual sea la velocidad
+    private static final long AUTOSAVE_NANOS = 5000000000L;
+    // propiedad del sistema con la velocidad inicial respecto al tiempo real ("Infinity" sin límite)
+    private static final String SPEED_PROPERTY = "tetris.speed";
+    // velocidades que recorren las teclas + y -
+    private static final double[] SPEEDS = {0.1, 0.25, 0.5, 1, 2, 4, 10, 100, GameEngine.UNBOUNDED};
+    // propiedades del sistema con el directorio de las puntuaciones y el nombre del jugador
+    private static final String SCORES_PROPERTY = "tetris.scores";
+    private static final String PLAYER_PROPERTY = "tetris.player";
+    // modo de juego con el que se guardan las puntuaciones
+    private static final String SCORE_MODE = "clásico";
+    // puntos por hacer 1, 2, 3 o 4 líneas a la vez, que se multiplican por el nivel + 1
+    private static final int[] LINE_POINTS = {0, 40, 100, 300, 1200};
     // la matriz 2D del juego
     private Grid grid;
-    // La interfaz grfica de la matriz del juego
+    // La interfaz gráfica de la matriz del juego
     private GameView gameView;
-    // Un temporizador para controlar la caida automtica de las piezas
-    private Timer timer;
+    // El motor que avanza el juego en su propio hilo, unos 60 fotogramas por segundo
+    private GameEngine engine;
+    // las entradas de la partida con la suma de comprobación de cada una
+    private InputLog inputLog;
+    // momento a partir del cual se vuelve a guardar la partida, de System.nanoTime
+    private long nextSave;
+    // el escritor en segundo plano de la partida guardada, o null si no se pidió
+    private GameStateFile.Writer saver;
+    // el almacén de puntuaciones, que se abre en segundo plano, o null si no se pidió
+    private FutureTask<HighScoreStore> scores;
+    // puntuación de la partida y fotograma en que empezó (solo en el hilo del
+    // motor); en una partida continuada el fotograma es negativo, para que
+    // cuente también lo jugado antes de guardarla
+    private int score;
+    private long startFrame;
+    // la semilla con la que empezó la partida, que se guarda con la puntuación
+    private long gameSeed;
     
     /**
-     * Crea un tetris con valores de matriz por defecto 25x12
+     * Crea un tetris con valores de matriz por defecto 25x12, preparando la
+     * partida y la ventana una detrás de otra en el hilo que lo llama
      */
     public Tetris()
     {
-        // crea una matriz y una vista grfica de la misma de dimensiones por defecto
-        grid = new Grid(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS);
+        // crea una matriz y una vista gráfica de la misma de dimensiones por defecto
+        prepareGame();
         gameView = new GameView(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS);
-        // aade el oyente de eventos por teclado para controlar las piezas
+        connect();
+    }
+
+    /**
+     * Crea un tetris preparando la partida en el hilo que lo llama mientras
+     * el hilo de eventos construye la ventana, y los une después en el hilo
+     * de eventos
+     * @param view La construcción de la ventana, ya encargada al hilo de eventos
+     */
+    private Tetris(FutureTask<GameView> view) throws Exception
+    {
+        prepareGame();
+        gameView = view.get();
+        EventQueue.invokeAndWait(new Runnable() {
+            public void run() {
+                connect();
+            }
+        });
+    }
+
+    /**
+     * Arranca el juego lo antes posible: la ventana se construye en el hilo
+     * de eventos a la vez que la partida (clases del juego, tablas de las
+     * piezas, partida guardada) se prepara en el hilo que llama
+     * @return El juego en marcha
+     */
+    public static Tetris launch() throws Exception
+    {
+        FutureTask<GameView> view = new FutureTask<GameView>(new Callable<GameView>() {
+            public GameView call() {
+                return new GameView(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS);
+            }
+        });
+        EventQueue.invokeLater(view);
+        return new Tetris(view);
+    }
+
+    /**
+     * Prepara la matriz, la primera pieza y el registro de entradas, que
+     * aún no dependen de la ventana
+     */
+    private void prepareGame()
+    {
+        long seed = System.nanoTime();
+        // si hay una partida guardada se continúa donde se dejó, con su
+        // puntuación, su duración y su semilla
+        GameStateFile.SavedGame saved = loadGame();
+        if(saved != null) {
+            grid = saved.getGrid();
+            score = saved.getScore();
+            startFrame = -saved.getFrames();
+            gameSeed = saved.getSeed();
+        } else {
+            grid = new Grid(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, seed);
+            gameSeed = seed;
+        }
+        inputLog = new InputLog(seed, Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS);
+        nextSave = System.nanoTime();
+        openSaver();
+        grid.addChangeListener(new ScoreListener());
+        openScores();
+        // crea una nueva pieza en su ubicación inicial en la matriz, salvo
+        // que la partida continuada ya tenga una
+        if(grid.allStacked()) {
+            grid.createTetrimino();
+        }
+    }
+
+    /**
+     * Une la partida con la ventana: crea el motor, engancha los oyentes
+     * del teclado y del menú, pinta el estado y pone en marcha el juego
+     */
+    private void connect()
+    {
+        engine = new GameEngine(grid, inputLog, new EngineListener(), gameView.getMonitor());
+        String speed = System.getProperty(SPEED_PROPERTY);
+        if(speed != null) {
+            try {
+                setSpeed(Double.parseDouble(speed));
+            } catch(NumberFormatException e) {
+                System.err.println("Velocidad no válida en " + SPEED_PROPERTY + ": " + speed);
+            }
+        }
+        // añade el oyente de eventos por teclado para controlar las piezas
         gameView.addKeyListener(new ArrowListener());
-        
-        // comienza el juego con el elemento del menu "Start"
-        gameView.getStart().addActionListener(new ActionListener() 
-            {public void actionPerformed(ActionEvent e) {startGame();} });
-        
-        // para el juego con el elemento del menu "Pause"
-        gameView.getStop().addActionListener(new ActionListener() 
-            {public void actionPerformed(ActionEvent e) {stopTimer();} });
-            
-        // continua el juego con el elemento del menu "Resume"
-        gameView.getResume().addActionListener(new ActionListener() 
-            {public void actionPerformed(ActionEvent e) {startGame();} });
-            
-        // resetea el juego con el elemento del menu "Reset"
-        gameView.getReset().addActionListener(new ActionListener() 
-            {public void actionPerformed(ActionEvent e) {reset();} });
-            
-        // sale del juego con el elemento del menu "Quit"
-        gameView.getQuit().addActionListener(new ActionListener() 
-            {public void actionPerformed(ActionEvent e) {System.exit(0);} });    
-            
+        // el menú empieza, para, continúa, resetea o sale del juego
+        gameView.setMenuListener(new MenuListener());
         // pinta la pantalla de juego
         gameView.showStatus(grid);
-        
-        // crea una nueva pieza en su ubicacin inicial en la matriz
-        newTetrimino();
-        // comienza la ejecucin del juego por medio del temporizador
+        // comienza la ejecución del juego en el hilo del motor
         startGame();
     }
         
     /**
-     * Reestablece el juego a un estado inicial, vaciando la matriz de bloques
+     * Acceso a la matriz del juego, para herramientas de medida. Una vez en
+     * marcha solo se puede tocar desde el hilo del motor (GameEngine.execute)
      */
-    private void reset()
+    Grid getGrid()
     {
-        grid.clear();
-        gameView.showStatus(grid);
+        return grid;
     }
-    
+
     /**
-     * Aparece la nueva pieza
+     * Acceso al motor del juego, para herramientas de medida
      */
-    private void newTetrimino()
+    GameEngine getEngine()
     {
-        grid.createTetrimino();
-        gameView.showStatus(grid);
+        return engine;
+    }
+
+    /**
+     * Acceso a la vista del juego, para herramientas de medida
+     */
+    GameView getGameView()
+    {
+        return gameView;
+    }
+
+    /**
+     * Reestablece el juego a un estado inicial, vaciando la matriz de bloques
+     */
+    private void reset()
+    {
+        // la tarea se ejecuta en el mismo fotograma, antes de vaciar el grid
+        engine.execute(new Runnable() {
+            public void run() {
+                score = 0;
+                startFrame = engine.getFrame();
+            }
+        });
+        handleInput(InputLog.RESET);
     }
     
     /**
      * Implementa el movimiento descendente de las piezas en la
-     * matriz de juego mediante un temporizador fijado con
-     * un retraso de 1000 milisegundos.
+     * matriz de juego poniendo en marcha la gravedad del motor
      */
     private void startGame()
     {
-        // crea el objeto temporizador
-        timer = new Timer(TIME_DELAY, new FallActionListener());
-        // inicia el proceso de temporizacin
-        timer.start();   
+        engine.start();
     }
     
     /**
-     * Detiene el temporizador.
+     * Detiene la gravedad del motor.
      */
     private void stopTimer()
     {
-        timer.stop();
+        engine.pause();
+        engine.execute(new Runnable() {
+            public void run() {
+                saveGame();
+            }
+        });
     }    
+
+    /**
+     * Guarda la partida y sale del juego
+     */
+    private void quit()
+    {
+        // el grid solo se puede leer desde el hilo del motor
+        engine.execute(new Runnable() {
+            public void run() {
+                saveGame();
+                closeSaver();
+                closeScores();
+                System.exit(0);
+            }
+        });
+    }
     
     /**
      * Moviemiento descendente de toda la pieza conjuntamente
@@ -109,8 +244,7 @@ public class Tetris
      */
     private void fall()
     {
-        grid.moveDown();
-        gameView.showStatus(grid);
+        handleInput(InputLog.DOWN);
     }
     
     /**
@@ -118,8 +252,7 @@ public class Tetris
      */
     private void moveRight()
     {
-        grid.moveRight(); 
-        gameView.showStatus(grid);
+        handleInput(InputLog.RIGHT);
     }
     
     /**
@@ -127,60 +260,308 @@ public class Tetris
      */
     private void moveLeft()
     {
-        grid.moveLeft();  
-        gameView.showStatus(grid);
+        handleInput(InputLog.LEFT);
     }
     
     /**
-     * Intenta girar 90 una pieza en la matriz si dicho giro es vlido
+     * Intenta girar 90º una pieza en la matriz si dicho giro es válido
      */
     private void turnTetrimino()
     {
-        grid.turnPiece();
-        gameView.showStatus(grid);
+        handleInput(InputLog.TURN);
+    }
+
+    /**
+     * Deja caer la pieza hasta el fondo y la fija
+     */
+    private void hardDrop()
+    {
+        handleInput(InputLog.HARD_DROP);
+    }
+
+    /**
+     * Cambia la velocidad del juego respecto al tiempo real y la muestra en
+     * el título de la ventana. La partida es la misma a cualquier velocidad.
+     * @param scale La velocidad, o GameEngine.UNBOUNDED para ir sin límite
+     */
+    private void setSpeed(double scale)
+    {
+        engine.setTimeScale(scale);
+        double applied = engine.getTimeScale();
+        if(applied == 1) {
+            gameView.setTitle("Tetris");
+        } else if(applied == GameEngine.UNBOUNDED) {
+            gameView.setTitle("Tetris (sin límite)");
+        } else {
+            String text = applied == Math.rint(applied) ? String.valueOf((long) applied) : String.valueOf(applied);
+            gameView.setTitle("Tetris (x" + text + ")");
+        }
+    }
+
+    /**
+     * Pasa a la velocidad siguiente o anterior de SPEEDS
+     * @param step 1 para ir más deprisa, -1 para ir más despacio
+     */
+    private void changeSpeed(int step)
+    {
+        double current = engine.getTimeScale();
+        int index = 0;
+        while(index < SPEEDS.length - 1 && SPEEDS[index] < current) {
+            index++;
+        }
+        index = Math.max(0, Math.min(SPEEDS.length - 1, index + step));
+        setSpeed(SPEEDS[index]);
+    }
+
+    /**
+     * Pasa una entrada al motor, que la aplica al grid y la registra
+     * junto con la suma de comprobación en su próximo fotograma
+     * @param input La entrada, una de las constantes de InputLog
+     */
+    private void handleInput(int input)
+    {
+        engine.input(input);
+    }
+
+    /**
+     * Guarda las entradas de la partida si se pidió con la propiedad
+     * del sistema tetris.inputlog
+     */
+    private void saveInputLog()
+    {
+        String path = System.getProperty(INPUT_LOG_PROPERTY);
+        if(path != null) {
+            try {
+                inputLog.save(new File(path));
+            } catch(IOException e) {
+                System.err.println("No se pudo guardar el registro de entradas: " + e.getMessage());
+            }
+        }
     }
      
     
     /**
-     * Clase interna que servir de oyente de eventos para
-     * la cada de los bloques. En cada paso del timer realiza su accin,
-     * que consiste en bajar una fila la pieza, poner a 0 el contador de giros
-     * y hacer "linea" si se dan las condiciones
+     * Lee la partida guardada si se pidió con la propiedad del sistema
+     * tetris.savegame y el fichero existe. El registro de entradas de una
+     * partida continuada empieza en el estado leído, así que no se puede
+     * verificar desde la semilla con DesyncDetector.
+     * @return La partida guardada, o null si no hay ninguna
      */
-    public class FallActionListener implements ActionListener
+    private GameStateFile.SavedGame loadGame()
     {
-        public void actionPerformed(ActionEvent event)
-        {
-            fall();
-            // reset del contador de giros para permitir 4 por segundo
-            grid.setTurns(0);
-            grid.searchLines();
-            // si toca fondo la pieza se crea una nueva
-            if(grid.allStacked()) {
-                newTetrimino();
+        String path = System.getProperty(SAVE_GAME_PROPERTY);
+        if(path == null || !new File(path).isFile()) {
+            return null;
+        }
+        try {
+            GameStateFile.SavedGame saved = GameStateFile.loadGame(new File(path));
+            if(saved.getGrid().getHeight() == Grid.DEFAULT_ROWS && saved.getGrid().getWidth() == Grid.DEFAULT_COLS) {
+                return saved;
             }
-            // si las piezas llegan arriba de la matriz paramos el timer y se acaba el juego
-            for(int col = grid.DEFAULT_COLS-1; col >= 0; col--) {
-                if(grid.getObjectAt(0,col) != null && grid.getObjectAt(0,col).isStacked()) {
-                    stopTimer();
-                    JOptionPane gameOver = new JOptionPane();
-                    gameOver.showMessageDialog(gameView, "GAME OVER!!", "Game Over", gameOver.INFORMATION_MESSAGE);
-                    
-                }    
+            System.err.println("La partida guardada tiene otras dimensiones y se ignora");
+        } catch(IOException e) {
+            System.err.println("No se pudo continuar la partida guardada: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Crea el escritor de la partida guardada si se pidió con la propiedad
+     * del sistema tetris.savegame
+     */
+    private void openSaver()
+    {
+        String path = System.getProperty(SAVE_GAME_PROPERTY);
+        if(path != null) {
+            saver = new GameStateFile.Writer(new File(path));
+        }
+    }
+
+    /**
+     * Guarda la partida si se pidió con la propiedad del sistema
+     * tetris.savegame. Se llama desde el hilo del motor, que solo codifica
+     * el estado: el disco lo espera el hilo del escritor.
+     */
+    private void saveGame()
+    {
+        if(saver != null) {
+            saver.save(new GameStateFile.SavedGame(grid, score, engine.getFrame() - startFrame, gameSeed));
+        }
+    }
+
+    /**
+     * Borra la partida guardada, que ya no se puede continuar, después de
+     * los guardados pendientes
+     */
+    private void deleteSavedGame()
+    {
+        if(saver != null) {
+            saver.delete();
+        }
+    }
+
+    /**
+     * Espera a que se escriba lo pendiente de la partida guardada y para su
+     * escritor
+     */
+    private void closeSaver()
+    {
+        if(saver == null) {
+            return;
+        }
+        try {
+            saver.close();
+        } catch(IOException e) {
+            System.err.println("No se pudo guardar la partida: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Abre en segundo plano el almacén de puntuaciones si se pidió con la
+     * propiedad del sistema tetris.scores, para no retrasar el arranque
+     */
+    private void openScores()
+    {
+        final String path = System.getProperty(SCORES_PROPERTY);
+        if(path == null) {
+            return;
+        }
+        scores = new FutureTask<HighScoreStore>(new Callable<HighScoreStore>() {
+            public HighScoreStore call() throws IOException {
+                return new HighScoreStore(new File(path));
             }
-        }   
-        
-          
+        });
+        Thread opener = new Thread(scores, "HighScoreStore-open");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
+    /**
+     * Añade la partida acabada al almacén de puntuaciones. Se llama desde el
+     * hilo del motor y no espera al disco. La puntuación y la duración de
+     * una partida continuada incluyen lo jugado antes de guardarla, y la
+     * semilla es la de la partida original.
+     */
+    private void recordGame()
+    {
+        if(scores == null) {
+            return;
+        }
+        try {
+            String player = System.getProperty(PLAYER_PROPERTY, System.getProperty("user.name", "jugador"));
+            long frames = engine.getFrame() - startFrame;
+            int durationMillis = (int) Math.min(Integer.MAX_VALUE, frames * GameEngine.FRAME_NANOS / 1000000);
+            scores.get().append(SCORE_MODE, player, score, grid.getLines(), grid.getLevel(),
+                                durationMillis, gameSeed, System.currentTimeMillis());
+        } catch(Exception e) {
+            System.err.println("No se pudo guardar la puntuación: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe las puntuaciones pendientes y cierra el almacén
+     */
+    private void closeScores()
+    {
+        if(scores == null) {
+            return;
+        }
+        try {
+            scores.get().close();
+        } catch(Exception e) {
+            System.err.println("No se pudieron guardar las puntuaciones: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Clase interna que suma los puntos de las líneas hechas. Sus métodos
+     * se llaman desde el hilo del motor.
+     */
+    public class ScoreListener implements Grid.ChangeListener
+    {
+        public void cellsChanged(int rows)
+        {
+        }
+
+        public void linesCleared(int count)
+        {
+            score += LINE_POINTS[Math.min(count, LINE_POINTS.length - 1)] * (grid.getLevel() + 1);
+        }
+
+        public void pieceSpawned(int type)
+        {
+        }
+    }
+
+    /**
+     * Clase interna que servirá de oyente de los sucesos del motor. En cada
+     * fotograma el motor baja la pieza según la gravedad del nivel, la fija
+     * cuando pasa el retardo de bloqueo, hace "linea" si se dan las
+     * condiciones y crea la siguiente pieza (ver Grid.tick); este oyente
+     * pasa cada copia del estado a la vista, guarda la partida cada
+     * AUTOSAVE_NANOS de tiempo real y avisa del final de la partida, guardando
+     * su puntuación.
+     * Sus métodos se llaman desde el hilo del motor.
+     */
+    public class EngineListener implements GameEngine.Listener
+    {
+        public void snapshotPublished(GameSnapshot snapshot)
+        {
+            gameView.publish(snapshot);
+            long now = System.nanoTime();
+            if(now - nextSave >= 0) {
+                nextSave = now + AUTOSAVE_NANOS;
+                saveGame();
+            }
+        }
+
+        public void gameOver()
+        {
+            // si las piezas llegan arriba de la matriz el motor para y se acaba el juego
+            saveInputLog();
+            deleteSavedGame();
+            recordGame();
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    JOptionPane.showMessageDialog(gameView, "GAME OVER!!", "Game Over",
+                                                  JOptionPane.INFORMATION_MESSAGE);
+                }
+            });
+        }
     }
     
+    /**
+     * Clase interna que atiende los elementos del menú del juego
+     */
+    public class MenuListener implements ActionListener
+    {
+        public void actionPerformed(ActionEvent e)
+        {
+            String command = e.getActionCommand();
+            if(GameView.START.equals(command) || GameView.RESUME.equals(command)) {
+                startGame();
+            } else if(GameView.PAUSE.equals(command)) {
+                stopTimer();
+            } else if(GameView.RESET.equals(command)) {
+                reset();
+            } else if(GameView.QUIT.equals(command)) {
+                quit();
+            }
+        }
+    }
+
     /**
      * Clase interna que implementa KeyListener usada para realizar las acciones
-     * de mover y girar al presionar las teclas de direccin apropiadas
+     * de mover y girar al presionar las teclas de dirección apropiadas, y
+     * de cambiar la velocidad del juego con + y -
      */
     public class ArrowListener implements KeyListener
     {
         public void keyPressed(KeyEvent e)
         {
+            if(e.getKeyCode() >= 37 && e.getKeyCode() <= 40 || e.getKeyCode() == 32) {
+                gameView.getMonitor().recordInput(e.getWhen());
+            }
             if(e.getKeyCode() == 39) {
                 moveRight();
             } else if (e.getKeyCode() == 37) {
@@ -189,6 +570,12 @@ public class Tetris
                 turnTetrimino();
             } else if (e.getKeyCode() == 40) {
                 fall();
+            } else if (e.getKeyCode() == 32) {
+                hardDrop();
+            } else if (e.getKeyCode() == KeyEvent.VK_PLUS || e.getKeyCode() == KeyEvent.VK_ADD) {
+                changeSpeed(1);
+            } else if (e.getKeyCode() == KeyEvent.VK_MINUS || e.getKeyCode() == KeyEvent.VK_SUBTRACT) {
+                changeSpeed(-1);
             }    
         }
         
@@ -206,9 +593,9 @@ public class Tetris
     /**
      * Rutina main para ejecutar el programa fuera de BlueJ
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws Exception
     {
-        Tetris tetris = new Tetris();
+        Tetris tetris = launch();
     }    
         
 }
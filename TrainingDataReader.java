@@ -0,0 +1,158 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lee los ficheros de TrainingDataWriter registro a registro sin copiar
+ * los datos: cada bloque se proyecta en memoria y los campos del registro
+ * actual se leen directamente de sus columnas. El lector es un cursor, así
+ * que recorrer el fichero no crea ningún objeto por registro y los ficheros
+ * pueden ser mayores de 2 GB.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class TrainingDataReader
+{
+    // el fichero y su canal
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    // filas de los tableros y tamaño de la cola de piezas
+    private final int rows, previewSize;
+    // posición del siguiente bloque en el fichero
+    private long nextBlock;
+    // el bloque actual y el comienzo de cada columna dentro de él
+    private MappedByteBuffer block;
+    private int boards, pieces, previews, placements, outcomes;
+    // registros del bloque actual y posición del cursor
+    private int blockRecords, record;
+
+    /**
+     * Abre un fichero de datos de entrenamiento
+     * @param path El fichero
+     */
+    public TrainingDataReader(File path) throws IOException
+    {
+        file = new RandomAccessFile(path, "r");
+        channel = file.getChannel();
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TrainingDataWriter.FILE_HEADER);
+        if(header.getInt() != TrainingDataWriter.MAGIC || header.getInt() != TrainingDataWriter.VERSION) {
+            throw new IOException("Formato de datos de entrenamiento no reconocido: " + path);
+        }
+        rows = header.getInt();
+        previewSize = header.getInt();
+        nextBlock = TrainingDataWriter.FILE_HEADER;
+        record = blockRecords = 0;
+    }
+
+    /**
+     * Avanza al siguiente registro
+     * @return True si hay registro, false si se llegó al final del fichero
+     */
+    public boolean next() throws IOException
+    {
+        if(++record < blockRecords) {
+            return true;
+        }
+        if(nextBlock + TrainingDataWriter.BLOCK_HEADER > channel.size()) {
+            return false;
+        }
+        ByteBuffer count = channel.map(FileChannel.MapMode.READ_ONLY, nextBlock, TrainingDataWriter.BLOCK_HEADER);
+        blockRecords = count.getInt(0);
+        long bytes = TrainingDataWriter.BLOCK_HEADER
+                   + (long) blockRecords * TrainingDataWriter.recordBytes(rows, previewSize);
+        if(blockRecords <= 0 || nextBlock + bytes > channel.size()) {
+            // un bloque incompleto al final (escritura cortada) se ignora
+            return false;
+        }
+        block = channel.map(FileChannel.MapMode.READ_ONLY, nextBlock, bytes);
+        boards = TrainingDataWriter.BLOCK_HEADER;
+        pieces = boards + blockRecords * rows * 4;
+        previews = pieces + blockRecords;
+        placements = previews + blockRecords * previewSize;
+        outcomes = placements + blockRecords * 4;
+        nextBlock += bytes;
+        record = 0;
+        return true;
+    }
+
+    /**
+     * @return Las filas de los tableros del fichero
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * @return El número de piezas siguientes de cada registro
+     */
+    public int getPreviewSize()
+    {
+        return previewSize;
+    }
+
+    /**
+     * @param row La fila
+     * @return La máscara de esa fila del tablero del registro actual
+     */
+    public int rowMask(int row)
+    {
+        return block.getInt(boards + (record * rows + row) * 4);
+    }
+
+    /**
+     * Copia el tablero del registro actual
+     * @param out El tablero donde se copia
+     */
+    public void copyBoard(Board out)
+    {
+        for(int row = 0; row < rows; row++) {
+            out.setRowMask(row, rowMask(row));
+        }
+    }
+
+    /**
+     * @return La pieza actual del registro
+     */
+    public int piece()
+    {
+        return block.get(pieces + record);
+    }
+
+    /**
+     * @param index La posición en la cola
+     * @return La pieza siguiente en esa posición
+     */
+    public int preview(int index)
+    {
+        return block.get(previews + record * previewSize + index);
+    }
+
+    /**
+     * @return La jugada elegida, codificada con Placement
+     */
+    public int placement()
+    {
+        return block.getInt(placements + record * 4);
+    }
+
+    /**
+     * @return El resultado asociado a la jugada
+     */
+    public float outcome()
+    {
+        return block.getFloat(outcomes + record * 4);
+    }
+
+    /**
+     * Cierra el fichero
+     */
+    public void close() throws IOException
+    {
+        file.close();
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Escribe en un fichero binario por columnas los estados de juego que se
+ * usan para entrenar modelos: filas del tablero, pieza actual, piezas
+ * siguientes, jugada elegida y resultado. Los registros se acumulan en
+ * buffers fijos, uno por columna, y cuando se llenan se escriben como un
+ * bloque con una sola escritura agrupada del FileChannel, por lo que la
+ * memoria usada no depende del número de registros y no se crea ningún
+ * objeto por registro.
+ *
+ * Formato: cabecera (MAGIC, VERSION, filas, tamaño de la cola) y bloques
+ * con el número de registros seguido de cada columna completa.
+ *
+ * Uso: java TrainingDataWriter [fichero] [partidas] [piezas por partida]
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class TrainingDataWriter
+{
+    // identificador y versión del formato
+    static final int MAGIC = 0x54444331;
+    static final int VERSION = 1;
+    // bytes de la cabecera del fichero y de la de cada bloque
+    static final int FILE_HEADER = 16, BLOCK_HEADER = 4;
+    // registros por bloque por defecto
+    public static final int DEFAULT_BLOCK_RECORDS = 1 << 16;
+
+    // el canal del fichero de salida
+    private final FileChannel channel;
+    // filas del tablero y tamaño de la cola de piezas
+    private final int rows, previewSize;
+    // registros por bloque
+    private final int blockRecords;
+    // cabecera del bloque y un buffer por columna
+    private final ByteBuffer header, boards, pieces, previews, placements, outcomes;
+    // todos los buffers en orden de escritura
+    private final ByteBuffer[] block;
+    // registros en el bloque actual y escritos en total
+    private int pending;
+    private long written;
+
+    /**
+     * Crea un fichero de datos de entrenamiento
+     * @param file El fichero de salida, que se sobrescribe
+     * @param rows Las filas de los tableros
+     * @param previewSize El número de piezas siguientes de cada registro
+     * @param blockRecords Los registros que se acumulan antes de escribir
+     */
+    public TrainingDataWriter(File file, int rows, int previewSize, int blockRecords) throws IOException
+    {
+        this.rows = rows;
+        this.previewSize = previewSize;
+        this.blockRecords = blockRecords;
+        channel = new FileOutputStream(file).getChannel();
+        header = ByteBuffer.allocateDirect(BLOCK_HEADER);
+        boards = ByteBuffer.allocateDirect(blockRecords * rows * 4);
+        pieces = ByteBuffer.allocateDirect(blockRecords);
+        previews = ByteBuffer.allocateDirect(blockRecords * previewSize);
+        placements = ByteBuffer.allocateDirect(blockRecords * 4);
+        outcomes = ByteBuffer.allocateDirect(blockRecords * 4);
+        block = new ByteBuffer[] {header, boards, pieces, previews, placements, outcomes};
+
+        ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER);
+        fileHeader.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(previewSize).flip();
+        while(fileHeader.hasRemaining()) {
+            channel.write(fileHeader);
+        }
+    }
+
+    /**
+     * Añade un registro
+     * @param board El tablero antes de colocar la pieza
+     * @param type La pieza actual
+     * @param preview Las piezas siguientes
+     * @param placement La jugada elegida
+     * @param outcome El resultado asociado a la jugada
+     */
+    public void add(Board board, int type, int[] preview, int placement, float outcome) throws IOException
+    {
+        for(int row = 0; row < rows; row++) {
+            boards.putInt(board.getRowMask(row));
+        }
+        pieces.put((byte) type);
+        for(int i = 0; i < previewSize; i++) {
+            previews.put((byte) preview[i]);
+        }
+        placements.putInt(placement);
+        outcomes.putFloat(outcome);
+        if(++pending == blockRecords) {
+            flush();
+        }
+    }
+
+    /**
+     * Escribe el bloque actual aunque no esté lleno
+     */
+    public void flush() throws IOException
+    {
+        if(pending == 0) {
+            return;
+        }
+        header.clear();
+        header.putInt(pending);
+        for(ByteBuffer buffer : block) {
+            buffer.flip();
+        }
+        long remaining = BLOCK_HEADER + (long) pending * recordBytes(rows, previewSize);
+        while(remaining > 0) {
+            remaining -= channel.write(block);
+        }
+        for(ByteBuffer buffer : block) {
+            buffer.clear();
+        }
+        written += pending;
+        pending = 0;
+    }
+
+    /**
+     * Escribe lo pendiente y cierra el fichero
+     */
+    public void close() throws IOException
+    {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * @return Los registros añadidos hasta ahora
+     */
+    public long getRecords()
+    {
+        return written + pending;
+    }
+
+    /**
+     * @return Los bytes que ocupa un registro sumando todas sus columnas
+     */
+    static int recordBytes(int rows, int previewSize)
+    {
+        return rows * 4 + 1 + previewSize + 4 + 4;
+    }
+
+    /**
+     * Rutina main que exporta partidas de un bot voraz. El resultado de
+     * cada registro son las líneas que hizo esa jugada.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        File file = new File(args.length > 0 ? args[0] : "training.tdc");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int maxPieces = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        TrainingDataWriter writer = new TrainingDataWriter(file, Grid.DEFAULT_ROWS, HeadlessGame.PREVIEW,
+                                                           DEFAULT_BLOCK_RECORDS);
+        Bot bot = new GreedyBot(new Heuristic());
+        Board before = new Board();
+        int[] preview = new int[HeadlessGame.PREVIEW];
+        for(int g = 0; g < games; g++) {
+            HeadlessGame game = new HeadlessGame(g);
+            while(!game.isOver() && game.getPieces() < maxPieces) {
+                before.copyFrom(game.getBoard());
+                int type = game.getCurrent();
+                for(int i = 0; i < preview.length; i++) {
+                    preview[i] = game.getPreview(i);
+                }
+                int placed = game.getPieces();
+                int lines = game.step(bot);
+                if(game.getPieces() == placed) {
+                    break;
+                }
+                writer.add(before, type, preview, game.getLastPlacement(), lines);
+            }
+        }
+        writer.close();
+        System.out.println(writer.getRecords() + " registros escritos en " + file);
+    }
+}
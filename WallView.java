@@ -0,0 +1,578 @@
+import java.awt.*;
+import java.awt.event.*;
+import javax.swing.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Vista gráfica de muchas partidas a la vez en una sola ventana, como un
+ * muro de matrices (por ejemplo cien partidas de bots), con las celdas
+ * pintadas igual que en la vista del juego (ver GameView y CellRenderer).
+ *
+ * Una ventana GameView por partida no pasa de unas pocas: cada ventana
+ * tiene su propio temporizador, su imagen y sus celdas ya pintadas, y el
+ * hilo de eventos se satura con sus pintados. Aquí todas las partidas
+ * comparten un solo ciclo de pintado (como mucho un pintado por fotograma
+ * de pantalla, según tetris.fps o el refresco de la pantalla), una sola
+ * imagen interna para todo el muro y un solo pintor de celdas, así que
+ * cada color se pinta una vez para todas las partidas.
+ *
+ * Cada partida publica sus copias del estado (GameSnapshot) en su propia
+ * casilla desde cualquier hilo, por ejemplo desde el oyente de su
+ * GameEngine, sin cerrojos, como en GameView. En cada pintado solo se
+ * dibujan las partidas con filas cambiadas, y de ellas solo esas filas;
+ * después se copia a pantalla la imagen del muro entera.
+ *
+ * Cuando las celdas son muy pequeñas el relieve ya no se distingue, así
+ * que se pintan sólidas, sin relieve ni separación, y cada tramo de una
+ * fila con celdas del mismo color se rellena de una vez.
+ *
+ * Uso: java WallView [partidas] [piezas por segundo] [hilos]
+ *
+ * muestra un muro de partidas jugadas por bots en la propia ventana.
+ *
+ * @author Octavio Martínez
+ * @version 19.10.2026
+ */
+public class WallView extends JFrame
+{
+    // separación en píxeles entre las matrices del muro
+    public static final int GAP = 2;
+    // por debajo de este tamaño de celda, en píxeles, se pintan celdas sólidas
+    public static final int SOLID_SCALE = 6;
+    // tamaño máximo de celda y del muro al abrir la ventana
+    private static final int MAX_SCALE = 15, MAX_WIDTH = 1200, MAX_HEIGHT = 900;
+    // color del fondo entre las matrices
+    private static final Color GAP_COLOR = Color.darkGray;
+
+    // número de partidas y dimensiones de sus matrices
+    private final int boards, gridRows, gridCols;
+    // matrices por fila del muro y filas del muro
+    private final int columns, wallRows;
+    // componente donde se pinta el muro
+    private final WallPanel wallPanel;
+    // las medidas de rendimiento de los pintados
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
+    // resumen del monitor que hay en el título, o -1 si aún no hay ninguno
+    private int titleWindow = -1;
+    // casillas con la última copia publicada de cada partida y sus filas
+    // cambiadas desde el último pintado, sin cerrojos
+    private final AtomicReferenceArray<GameSnapshot> latest;
+    private final AtomicIntegerArray pendingRows;
+    // duración mínima entre dos pintados y momento del último pintado
+    private volatile long frameNanos;
+    private volatile long lastPaintNanos;
+    // si ya hay un pintado pedido que aún no se ha hecho
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // temporizador que pide el pintado cuando llega el siguiente fotograma de pantalla
+    private final javax.swing.Timer frameTimer;
+
+    /**
+     * Construye un muro con las matrices repartidas para que la ventana
+     * quede aproximadamente cuadrada
+     * @param boards El número de partidas
+     * @param height La altura de la matriz de cada partida
+     * @param width La anchura de la matriz de cada partida
+     */
+    public WallView(int boards, int height, int width)
+    {
+        this(boards, height, width,
+             (int) Math.ceil(Math.sqrt(Math.max(1, boards) * (double) height / width)));
+    }
+
+    /**
+     * Construye un muro
+     * @param boards El número de partidas
+     * @param height La altura de la matriz de cada partida
+     * @param width La anchura de la matriz de cada partida
+     * @param columns Las matrices por fila del muro
+     * @throws IllegalArgumentException si algún número no es positivo
+     */
+    public WallView(int boards, int height, int width, int columns)
+    {
+        if(boards < 1 || height < 1 || width < 1 || columns < 1) {
+            throw new IllegalArgumentException("Muro de " + boards + " partidas de "
+                                               + height + "x" + width + " en " + columns + " columnas");
+        }
+        this.boards = boards;
+        gridRows = height;
+        gridCols = width;
+        this.columns = Math.min(columns, boards);
+        wallRows = (boards + this.columns - 1) / this.columns;
+        latest = new AtomicReferenceArray<GameSnapshot>(boards);
+        pendingRows = new AtomicIntegerArray(boards);
+
+        setTitle("Tetris - " + boards + " partidas");
+        wallPanel = new WallPanel();
+        setFrameCap(GameView.defaultFrameCap());
+        frameTimer = new javax.swing.Timer(0, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                wallPanel.repaint();
+            }
+        });
+        frameTimer.setRepeats(false);
+
+        getContentPane().add(wallPanel, BorderLayout.CENTER);
+        pack();
+        setVisible(true);
+    }
+
+    /**
+     * @return El número de partidas del muro
+     */
+    public int getBoards()
+    {
+        return boards;
+    }
+
+    /**
+     * Acceso a las medidas de rendimiento de los pintados del muro
+     */
+    public PerformanceMonitor getMonitor()
+    {
+        return monitor;
+    }
+
+    /**
+     * Deja una copia del estado de una partida en su casilla, sustituyendo
+     * la anterior si aún no se había pintado, y pide un repintado. Se puede
+     * llamar desde cualquier hilo.
+     * @param board La partida, de 0 a getBoards() - 1
+     * @param snapshot La copia del estado, con las dimensiones del muro
+     */
+    public void publish(int board, GameSnapshot snapshot)
+    {
+        // primero la copia y después sus filas, en el mismo orden que GameView.publish
+        latest.set(board, snapshot);
+        pendingRows.getAndAccumulate(board, snapshot.getChangedRows(), GameView.OR_ROWS);
+        // si ya hay un pintado pedido, recogerá también esta copia
+        requestPaint();
+    }
+
+    /**
+     * Pide un pintado para el siguiente fotograma de pantalla, si no hay
+     * ya uno pedido. Se puede llamar desde cualquier hilo.
+     */
+    private void requestPaint()
+    {
+        if(scheduled.compareAndSet(false, true)) {
+            long wait = lastPaintNanos + frameNanos - System.nanoTime();
+            if(wait <= 0) {
+                wallPanel.repaint();
+            } else {
+                frameTimer.setInitialDelay((int) ((wait + 999999) / 1000000));
+                frameTimer.restart();
+            }
+        }
+    }
+
+    /**
+     * Cambia el límite de fotogramas por segundo que se pintan
+     * @param fps Los fotogramas por segundo, como mucho
+     */
+    public void setFrameCap(int fps)
+    {
+        frameNanos = 1000000000L / Math.max(1, fps);
+    }
+
+    /**
+     * Dibuja en el muro las partidas con filas cambiadas desde el último
+     * pintado, recogiendo primero sus filas y después su última copia
+     * @param wall El muro
+     * @param all True para dibujar enteras todas las partidas con alguna
+     *        copia, porque la imagen del muro es nueva
+     */
+    private void drawBoards(Wall wall, boolean all)
+    {
+        for(int board = 0; board < boards; board++) {
+            int rows = pendingRows.getAndSet(board, 0);
+            if(rows != 0 || all) {
+                GameSnapshot snapshot = latest.get(board);
+                if(snapshot != null) {
+                    wall.draw(board, snapshot, all ? -1 : rows);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pone en el título las medidas de los pintados cuando el monitor
+     * cierra un resumen, una vez por segundo
+     */
+    private void updateTitle()
+    {
+        if(titleWindow != monitor.getWindows()) {
+            titleWindow = monitor.getWindows();
+            setTitle("Tetris - " + boards + " partidas - " + monitor.getFps() + " fps, "
+                     + (monitor.getFrameNanos() / 1000) / 1000.0 + " ms por fotograma");
+        }
+    }
+
+    /**
+     * Imagen del muro: dónde va cada matriz, a qué escala, y el dibujo de
+     * las filas de una copia en su sitio. No depende de la ventana, así que
+     * también sirve para pintar un muro fuera de pantalla. Se usa desde un
+     * solo hilo.
+     */
+    static class Wall
+    {
+        // número de partidas, dimensiones de sus matrices y matrices por fila del muro
+        private final int boards, gridRows, gridCols, columns;
+        // las proporciones horizontales y verticales de las celdas
+        private int xScale, yScale;
+        // si las celdas son tan pequeñas que se pintan sólidas
+        private boolean solid;
+        // el contexto gráfico de la imagen del muro
+        private Graphics g;
+        // pintor de las celdas al tamaño actual, compartido por todas las matrices
+        private CellRenderer cells;
+        // la copia dibujada de cada partida, o null si hay que dibujarla entera
+        private final GameSnapshot[] drawn;
+
+        /**
+         * Construye la imagen de un muro, que aún no tiene donde pintar
+         * @param boards El número de partidas
+         * @param gridRows La altura de la matriz de cada partida
+         * @param gridCols La anchura de la matriz de cada partida
+         * @param columns Las matrices por fila del muro
+         */
+        Wall(int boards, int gridRows, int gridCols, int columns)
+        {
+            this.boards = boards;
+            this.gridRows = gridRows;
+            this.gridCols = gridCols;
+            this.columns = columns;
+            drawn = new GameSnapshot[boards];
+        }
+
+        /**
+         * Prepara el muro para pintar en una imagen nueva, repartiendo su
+         * tamaño entre las matrices, y la rellena con el fondo. Todas las
+         * matrices quedan por dibujar.
+         * @param g El contexto gráfico de la imagen
+         * @param width La anchura de la imagen
+         * @param height La altura de la imagen
+         * @param config La configuración gráfica del componente donde se
+         *        muestra la imagen, o null si se pinta fuera de pantalla
+         */
+        void setImage(Graphics g, int width, int height, GraphicsConfiguration config)
+        {
+            this.g = g;
+            int wallRows = (boards + columns - 1) / columns;
+            // celdas cuadradas para que todas las matrices tengan su forma
+            xScale = Math.max(1, Math.min((width - GAP * (columns + 1)) / (columns * gridCols),
+                                          (height - GAP * (wallRows + 1)) / (wallRows * gridRows)));
+            yScale = xScale;
+            solid = xScale < SOLID_SCALE || yScale < SOLID_SCALE;
+            // con la misma escala se conservan las celdas ya pintadas
+            if(cells == null || cells.getXScale() != xScale || cells.getYScale() != yScale) {
+                cells = new CellRenderer(xScale, yScale, config);
+            }
+            g.setColor(GAP_COLOR);
+            g.fillRect(0, 0, width, height);
+            for(int board = 0; board < boards; board++) {
+                drawn[board] = null;
+            }
+        }
+
+        /**
+         * @return La anchura de una celda con el tamaño de imagen actual
+         */
+        int getXScale()
+        {
+            return xScale;
+        }
+
+        /**
+         * @return La altura de una celda con el tamaño de imagen actual
+         */
+        int getYScale()
+        {
+            return yScale;
+        }
+
+        /**
+         * @return True si las celdas se pintan sólidas, sin relieve
+         */
+        boolean isSolid()
+        {
+            return solid;
+        }
+
+        /**
+         * @param board La partida
+         * @return La copia de esa partida dibujada en la imagen, o null
+         */
+        GameSnapshot getDrawn(int board)
+        {
+            return drawn[board];
+        }
+
+        /**
+         * Dibuja filas de una copia del estado de una partida en su sitio
+         * del muro; la copia ya dibujada solo se vuelve a dibujar si se
+         * piden filas, que pueden haber llegado después que ella
+         * @param board La partida
+         * @param snapshot La copia
+         * @param rows Las filas que se dibujan (bit r = fila r); las demás
+         *        ya están dibujadas, salvo que la matriz aún no se haya
+         *        dibujado a este tamaño, que se dibuja entera
+         */
+        void draw(int board, GameSnapshot snapshot, int rows)
+        {
+            if(snapshot == drawn[board] && rows == 0) {
+                return;
+            }
+            if(drawn[board] == null) {
+                rows = -1;
+            }
+            int x = GAP + (board % columns) * (gridCols * xScale + GAP);
+            int y = GAP + (board / columns) * (gridRows * yScale + GAP);
+            g.translate(x, y);
+            int height = Math.min(gridRows, snapshot.getRows());
+            for(int row = 0; row < height; row++) {
+                if(row < 32 && (rows & (1 << row)) == 0) {
+                    continue;
+                }
+                if(solid) {
+                    drawSolidRow(snapshot, row);
+                } else {
+                    drawRow(snapshot, row);
+                }
+            }
+            g.translate(-x, -y);
+            drawn[board] = snapshot;
+        }
+
+        /**
+         * Dibuja una fila con las celdas en relieve, copiando las celdas ya
+         * pintadas de cada color
+         * @param snapshot La copia
+         * @param row La fila
+         */
+        private void drawRow(GameSnapshot snapshot, int row)
+        {
+            int width = Math.min(gridCols, snapshot.getCols());
+            for(int col = 0; col < width; col++) {
+                Color color = snapshot.getCellColor(row, col);
+                if(color != null) {
+                    cells.drawRaised(g, col, row, color);
+                } else {
+                    cells.drawFlat(g, col, row, CellRenderer.EMPTY_COLOR);
+                }
+            }
+        }
+
+        /**
+         * Dibuja una fila con las celdas sólidas, rellenando de una vez cada
+         * tramo de celdas seguidas del mismo color
+         * @param snapshot La copia
+         * @param row La fila
+         */
+        private void drawSolidRow(GameSnapshot snapshot, int row)
+        {
+            int width = Math.min(gridCols, snapshot.getCols());
+            int col = 0;
+            while(col < width) {
+                // los colores de la paleta son siempre los mismos objetos
+                Color color = snapshot.getCellColor(row, col);
+                int end = col + 1;
+                while(end < width && snapshot.getCellColor(row, end) == color) {
+                    end++;
+                }
+                g.setColor(color != null ? color : CellRenderer.EMPTY_COLOR);
+                g.fillRect(col * xScale, row * yScale, (end - col) * xScale, yScale);
+                col = end;
+            }
+        }
+    }
+
+    /**
+     * Clase interna de WallView que muestra el muro: dibuja en la imagen
+     * del muro las partidas recogidas y copia la imagen a pantalla.
+     */
+    private class WallPanel extends JPanel
+    {
+        // la imagen del muro y su dibujo
+        private final Wall wall = new Wall(boards, gridRows, gridCols, columns);
+        // las dimensiones de la imagen del muro
+        private Dimension size = new Dimension(0, 0);
+        // la imagen donde se dibuja el muro
+        private Image wallImage;
+
+        /**
+         * Dice al gestor de la interfaz gráfica el tamaño del muro, con las
+         * celdas lo más grandes posible sin pasar de MAX_WIDTH x MAX_HEIGHT
+         * @return El área total en 2D del muro
+         */
+        public Dimension getPreferredSize()
+        {
+            int scale = Math.min((MAX_WIDTH - GAP * (columns + 1)) / (columns * gridCols),
+                                 (MAX_HEIGHT - GAP * (wallRows + 1)) / (wallRows * gridRows));
+            scale = Math.max(1, Math.min(MAX_SCALE, scale));
+            return new Dimension(columns * (gridCols * scale + GAP) + GAP,
+                                 wallRows * (gridRows * scale + GAP) + GAP);
+        }
+
+        /**
+         * Crea la imagen del muro si el tamaño del componente ha cambiado
+         * @return True si la imagen es nueva y hay que dibujar todas las partidas
+         */
+        private boolean preparePaint()
+        {
+            if(size.equals(getSize()) && wallImage != null) {
+                return false;
+            }
+            size = getSize();
+            wallImage = createImage(Math.max(1, size.width), Math.max(1, size.height));
+            wall.setImage(wallImage.getGraphics(), size.width, size.height, getGraphicsConfiguration());
+            return true;
+        }
+
+        /**
+         * Dibuja las partidas con filas cambiadas en la imagen del muro y la
+         * copia a pantalla
+         * @param g El objeto de contexto gráfico que permite dibujar en los componentes
+         */
+        public void paintComponent(Graphics g)
+        {
+            long paintStart = System.nanoTime();
+            lastPaintNanos = paintStart;
+            // las copias que se publiquen desde ahora piden otro pintado
+            scheduled.set(false);
+            drawBoards(wall, preparePaint());
+            g.drawImage(wallImage, 0, 0, null);
+            monitor.recordFrame(System.nanoTime() - paintStart);
+            updateTitle();
+        }
+    }
+
+    /**
+     * Partida de la demostración jugada por un bot sobre un Grid: cada
+     * paso coloca una pieza entera girándola, moviéndola y dejándola caer
+     * donde la elige el bot, y publica una copia en el muro.
+     */
+    private static class BotGame
+    {
+        // la partida, su tablero para el bot y el bot
+        private final Grid grid;
+        private final Board board;
+        private final Bot bot = new GreedyBot(new Heuristic());
+        // la cola de piezas siguientes que ve el bot
+        private final int[] preview = new int[Grid.PREVIEW_SIZE];
+        // la última copia publicada y las filas cambiadas desde entonces
+        private GameSnapshot snapshot;
+        private int changedRows;
+        // piezas colocadas
+        private long pieces;
+
+        /**
+         * Prepara una partida
+         * @param seed La semilla de la secuencia de piezas
+         */
+        BotGame(long seed)
+        {
+            grid = new Grid(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, seed);
+            board = new Board(grid.getHeight(), grid.getWidth());
+            grid.addChangeListener(new Grid.ChangeListener() {
+                public void cellsChanged(int rows) {
+                    changedRows |= rows;
+                }
+                public void linesCleared(int count) {
+                }
+                public void pieceSpawned(int type) {
+                }
+            });
+            grid.tick();
+        }
+
+        /**
+         * Coloca la pieza actual donde la elige el bot y saca la siguiente;
+         * si la pila llega arriba, la partida vuelve a empezar
+         * @return La copia del estado tras el paso
+         */
+        GameSnapshot step()
+        {
+            int type = grid.getTetriminoType();
+            grid.copyStackedTo(board);
+            for(int i = 0; i < preview.length; i++) {
+                preview[i] = grid.getPreview(i);
+            }
+            int placement = bot.choose(board, type, preview, preview.length);
+            if(placement != Placement.NONE) {
+                for(int i = 0; i < PieceTable.rotations(type) && grid.getRotation() != Placement.rot(placement); i++) {
+                    grid.turnPiece();
+                }
+                // si algo lo impide la pieza cae donde se quede
+                int x = Placement.x(placement);
+                for(int col = grid.getPieceCol(); col != x; col = grid.getPieceCol()) {
+                    if(col < x) {
+                        grid.moveRight();
+                    } else {
+                        grid.moveLeft();
+                    }
+                    if(grid.getPieceCol() == col) {
+                        break;
+                    }
+                }
+            }
+            grid.hardDrop();
+            grid.tick();
+            pieces++;
+            if(placement == Placement.NONE || grid.isTopOut()) {
+                grid.clear();
+                grid.tick();
+            }
+            snapshot = new GameSnapshot(grid, snapshot, pieces, 0, changedRows);
+            changedRows = 0;
+            return snapshot;
+        }
+    }
+
+    /**
+     * Muestra un muro de partidas jugadas por bots. Cada hilo juega un
+     * grupo de partidas a un ritmo fijo de piezas por segundo.
+     * @param args [partidas] [piezas por segundo] [hilos]
+     */
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final double rate = args.length > 1 ? Double.parseDouble(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                                       : Runtime.getRuntime().availableProcessors();
+        threads = Math.max(1, Math.min(threads, count));
+
+        final WallView view = new WallView(count, Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS);
+        view.setDefaultCloseOperation(EXIT_ON_CLOSE);
+        final BotGame[] games = new BotGame[count];
+        for(int i = 0; i < count; i++) {
+            games[i] = new BotGame(i);
+        }
+        final long period = (long) (1000000000L / rate);
+        for(int t = 0; t < threads; t++) {
+            final int first = t, stride = threads;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    long next = System.nanoTime();
+                    while(true) {
+                        for(int i = first; i < games.length; i += stride) {
+                            view.publish(i, games[i].step());
+                        }
+                        next += period;
+                        long wait = next - System.nanoTime();
+                        if(wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        } else {
+                            // si no da tiempo se juega más despacio en vez de acumular retraso
+                            next = System.nanoTime();
+                        }
+                    }
+                }
+            }, "wall-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}